@@ -1,6 +1,8 @@
 package com.example.missingperson
 
 import android.Manifest
+import android.annotation.SuppressLint
+import android.content.Context
 import android.content.pm.PackageManager
 import android.os.Build
 import android.os.Bundle
@@ -26,6 +28,7 @@ import androidx.core.content.edit
 import androidx.lifecycle.LifecycleCoroutineScope
 import androidx.lifecycle.lifecycleScope
 import coil.compose.rememberAsyncImagePainter
+import com.google.android.gms.location.LocationServices
 import com.google.firebase.messaging.FirebaseMessaging
 import com.google.gson.Gson
 import com.google.gson.reflect.TypeToken
@@ -37,7 +40,9 @@ import okhttp3.MultipartBody
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.RequestBody.Companion.asRequestBody
+import okhttp3.RequestBody.Companion.toRequestBody
 import java.io.File
+import java.io.IOException
 
 data class Person(
     val id: Long,
@@ -56,8 +61,10 @@ class MainActivity : ComponentActivity() {
         if (permissions[Manifest.permission.ACCESS_FINE_LOCATION] == true ||
             permissions[Manifest.permission.ACCESS_COARSE_LOCATION] == true) {
             fetchUserLocation()
+            registerWithDeviceLocation()
         } else {
             Log.e("MainActivity", "Location permission denied")
+            syncAlertRegistration(null, null)
         }
     }
 
@@ -84,7 +91,11 @@ class MainActivity : ComponentActivity() {
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
-        FirebaseMessaging.getInstance().subscribeToTopic("Germany_Alerts")
+        // Every alert in Germany until the server knows this device, see registerForAlerts
+        val prefs = getSharedPreferences("MissingPersonPrefs", Context.MODE_PRIVATE)
+        if (!prefs.getBoolean("alertsRegistered", false)) {
+            FirebaseMessaging.getInstance().subscribeToTopic("Germany_Alerts")
+        }
 
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED ||
             ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
@@ -94,6 +105,7 @@ class MainActivity : ComponentActivity() {
             ))
         } else {
             fetchUserLocation()
+            registerWithDeviceLocation()
         }
 
         setContent {
@@ -108,6 +120,22 @@ class MainActivity : ComponentActivity() {
         // Mock location for simplicity
         userLocation = Pair(52.5200, 13.4050)
     }
+
+    // Alerts are chosen by where the device is, so this takes the real location, never the mock
+    @SuppressLint("MissingPermission")
+    private fun registerWithDeviceLocation() {
+        LocationServices.getFusedLocationProviderClient(this).lastLocation
+            .addOnSuccessListener { location -> syncAlertRegistration(location?.latitude, location?.longitude) }
+            .addOnFailureListener { syncAlertRegistration(null, null) }
+    }
+
+    private fun syncAlertRegistration(latitude: Double?, longitude: Double?) {
+        FirebaseMessaging.getInstance().token.addOnSuccessListener { token ->
+            lifecycleScope.launch {
+                registerForAlerts(this@MainActivity, token, latitude, longitude)
+            }
+        }
+    }
 }
 
 @Composable
@@ -316,4 +344,46 @@ suspend fun publishAlert(name: String, imageFile: File, lastSeenLatitude: Double
             "Fehler: ${response.body?.string() ?: "Unbekannter Fehler"}"
         }
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Registers the FCM token for alerts. With a location the server sends the device the alerts
+ * around it and those without a location; without, every alert. Once registered the app leaves
+ * Germany_Alerts, which only app versions without registration still need, so no alert comes
+ * twice. If registering fails, the app stays on (or goes back to) Germany_Alerts.
+ */
+suspend fun registerForAlerts(context: Context, token: String, latitude: Double?, longitude: Double?): Boolean {
+    return withContext(Dispatchers.IO) {
+        val payload = mutableMapOf("token" to token)
+        if (latitude != null && longitude != null) {
+            payload["latitude"] = latitude.toString()
+            payload["longitude"] = longitude.toString()
+        }
+        val request = Request.Builder()
+            .url("http://10.0.2.2:8080/api/notifications/register")
+            .post(Gson().toJson(payload).toRequestBody("application/json".toMediaType()))
+            .build()
+        val registered = try {
+            OkHttpClient().newCall(request).execute().use { it.isSuccessful }
+        } catch (e: IOException) {
+            Log.e("MainActivity", "Alert registration failed: ${e.message}")
+            false
+        }
+
+        val sharedPrefs = context.getSharedPreferences("MissingPersonPrefs", Context.MODE_PRIVATE)
+        if (registered) {
+            FirebaseMessaging.getInstance().unsubscribeFromTopic("Germany_Alerts")
+            sharedPrefs.edit {
+                putBoolean("alertsRegistered", true)
+                // For registering a refreshed token, see MyFirebaseMessagingService
+                if (latitude != null && longitude != null) {
+                    putString("alertLatitude", latitude.toString())
+                    putString("alertLongitude", longitude.toString())
+                }
+            }
+        } else if (!sharedPrefs.getBoolean("alertsRegistered", false)) {
+            FirebaseMessaging.getInstance().subscribeToTopic("Germany_Alerts")
+        }
+        registered
+    }
+}
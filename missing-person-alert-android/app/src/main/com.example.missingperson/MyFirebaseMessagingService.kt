@@ -7,8 +7,21 @@ import androidx.core.app.NotificationCompat
 import androidx.core.app.NotificationManagerCompat
 import com.google.firebase.messaging.FirebaseMessagingService
 import com.google.firebase.messaging.RemoteMessage
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 
 class MyFirebaseMessagingService : FirebaseMessagingService() {
+    override fun onNewToken(token: String) {
+        // The server only knows the old token, so register the new one where the old one was
+        val prefs = getSharedPreferences("MissingPersonPrefs", Context.MODE_PRIVATE)
+        val latitude = prefs.getString("alertLatitude", null)?.toDoubleOrNull()
+        val longitude = prefs.getString("alertLongitude", null)?.toDoubleOrNull()
+        CoroutineScope(Dispatchers.IO).launch {
+            registerForAlerts(applicationContext, token, latitude, longitude)
+        }
+    }
+
     override fun onMessageReceived(remoteMessage: RemoteMessage) {
         val title = remoteMessage.notification?.title ?: getString(R.string.notification_title)
         val body = remoteMessage.notification?.body ?: getString(R.string.notification_body_default)
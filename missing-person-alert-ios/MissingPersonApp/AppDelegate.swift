@@ -1,4 +1,5 @@
 import SwiftUI
+import CoreLocation
 import FirebaseCore
 import FirebaseMessaging
 import UserNotifications
@@ -24,13 +25,9 @@ class AppDelegate: NSObject, UIApplicationDelegate, MessagingDelegate, UNUserNot
             }
         }
 
-        // Subscribe to Firebase topic
-        Messaging.messaging().subscribe(toTopic: "Germany_Alerts") { error in
-            if let error = error {
-                print("Error subscribing to topic: \(error)")
-            } else {
-                print("Subscribed to Germany_Alerts topic")
-            }
+        // Every alert in Germany until the server knows this device, see AlertRegistration
+        if !UserDefaults.standard.bool(forKey: "alertsRegistered") {
+            AlertRegistration.subscribeNationwide()
         }
 
         return true
@@ -39,6 +36,9 @@ class AppDelegate: NSObject, UIApplicationDelegate, MessagingDelegate, UNUserNot
     // Handle FCM token
     func messaging(_ messaging: Messaging, didReceiveRegistrationToken fcmToken: String?) {
         print("FCM token: \(fcmToken ?? "none")")
+        if let fcmToken = fcmToken {
+            AlertRegistration.shared.update(token: fcmToken)
+        }
     }
 
     // Handle foreground notifications
@@ -71,6 +71,70 @@ class AppDelegate: NSObject, UIApplicationDelegate, MessagingDelegate, UNUserNot
     }
 }
 
+/// Registers the FCM token for alerts. With a location the server sends the device the alerts
+/// around it and those without a location; without, every alert. Once registered the app leaves
+/// Germany_Alerts, which only app versions without registration still need, so no alert comes
+/// twice. If registering fails, the app stays on (or goes back to) Germany_Alerts.
+final class AlertRegistration {
+    static let shared = AlertRegistration()
+
+    private var token: String?
+    private var location: CLLocationCoordinate2D?
+
+    func update(token: String) {
+        self.token = token
+        register()
+    }
+
+    // Only real device locations, never the fallback the alert list uses
+    func update(location: CLLocationCoordinate2D) {
+        self.location = location
+        register()
+    }
+
+    static func subscribeNationwide() {
+        Messaging.messaging().subscribe(toTopic: "Germany_Alerts") { error in
+            if let error = error {
+                print("Error subscribing to topic: \(error)")
+            } else {
+                print("Subscribed to Germany_Alerts topic")
+            }
+        }
+    }
+
+    private func register() {
+        guard let token = token,
+              let url = URL(string: "http://192.168.1.100:8080/api/notifications/register") else {
+            return
+        }
+        var payload = ["token": token]
+        if let location = location {
+            payload["latitude"] = "\(location.latitude)"
+            payload["longitude"] = "\(location.longitude)"
+        }
+        var request = URLRequest(url: url)
+        request.httpMethod = "POST"
+        request.setValue("application/json", forHTTPHeaderField: "Content-Type")
+        request.httpBody = try? JSONSerialization.data(withJSONObject: payload)
+
+        Task {
+            do {
+                let (_, response) = try await URLSession.shared.data(for: request)
+                if let httpResponse = response as? HTTPURLResponse, (200...299).contains(httpResponse.statusCode) {
+                    UserDefaults.standard.set(true, forKey: "alertsRegistered")
+                    Messaging.messaging().unsubscribe(fromTopic: "Germany_Alerts")
+                    return
+                }
+            } catch {
+                print("Alert registration failed: \(error)")
+            }
+            if !UserDefaults.standard.bool(forKey: "alertsRegistered") {
+                AlertRegistration.subscribeNationwide()
+            }
+        }
+    }
+}
+
 @main
 struct MissingPersonApp: App {
     @UIApplicationDelegateAdaptor(AppDelegate.self) var delegate
@@ -258,7 +258,7 @@ struct ContentView: View {
 
         do {
             let (data, response) = try await URLSession.shared.data(for: request)
-            if let httpResponse = response as? HTTPURLResponse, httpResponse.statusCode == 200 {
+            if let httpResponse = response as? HTTPURLResponse, (200...299).contains(httpResponse.statusCode) {
                 DispatchQueue.main.async {
                     message = "Meldung erfolgreich veröffentlicht!"
                     name = ""
@@ -321,6 +321,7 @@ class LocationManager: NSObject, ObservableObject, CLLocationManagerDelegate {
     func locationManager(_ manager: CLLocationManager, didUpdateLocations locations: [CLLocation]) {
         if let location = locations.last {
             userLocation = location.coordinate
+            AlertRegistration.shared.update(location: location.coordinate)
             completion?(location.coordinate)
         }
     }
@@ -1,12 +1,22 @@
 package com.example.missing_person_alert.controller;
 
+import com.example.missing_person_alert.firebase.FcmTokenRegistry;
+import com.example.missing_person_alert.firebase.FirebaseService;
+import com.example.missing_person_alert.firebase.GeofenceRegistry;
+import com.example.missing_person_alert.model.GeofenceSubscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -14,18 +24,89 @@ import java.util.Map;
 @RequestMapping("/api/notifications")
 public class NotificationController {
 
-    private final List<String> fcmTokens = new ArrayList<>();
+    private static final Logger logger = LoggerFactory.getLogger(NotificationController.class);
 
+    private final FcmTokenRegistry tokenRegistry;
+    private final GeofenceRegistry geofenceRegistry;
+    private final FirebaseService firebaseService;
+
+    public NotificationController(FcmTokenRegistry tokenRegistry, GeofenceRegistry geofenceRegistry,
+                                  FirebaseService firebaseService) {
+        this.tokenRegistry = tokenRegistry;
+        this.geofenceRegistry = geofenceRegistry;
+        this.firebaseService = firebaseService;
+    }
+
+    /**
+     * Registers a token for alert notifications. With a {@code latitude} and {@code longitude} the
+     * token is subscribed to alerts around that location and alerts without a location; without,
+     * it keeps the alerts it gets already (every alert, for a new token).
+     */
     @PostMapping("/register")
     public ResponseEntity<Void> registerToken(@RequestBody Map<String, String> payload) {
         String token = payload.get("token");
-        if (token != null && !fcmTokens.contains(token)) {
-            fcmTokens.add(token);
+        String latitude = payload.get("latitude");
+        String longitude = payload.get("longitude");
+        double lat = 0;
+        double lon = 0;
+        boolean located = latitude != null && longitude != null;
+        if (located) {
+            try {
+                lat = Double.parseDouble(latitude);
+                lon = Double.parseDouble(longitude);
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+            if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        tokenRegistry.register(token);
+        if (located && tokenRegistry.contains(token)) {
+            firebaseService.subscribeToRegion(token, lat, lon);
         }
         return ResponseEntity.ok().build();
     }
 
-    public List<String> getFcmTokens() {
-        return fcmTokens;
+    /**
+     * Subscribes the token to alerts within {@code radiusKm} of a location, e.g. home or school.
+     * A token with subscriptions gets alerts for its areas only. Answers 409 if the token has as
+     * many subscriptions as it may.
+     */
+    @PostMapping("/subscriptions")
+    public ResponseEntity<GeofenceSubscription> subscribe(@RequestBody Map<String, String> payload) {
+        String token = payload.get("token");
+        if (payload.get("latitude") == null || payload.get("longitude") == null || payload.get("radiusKm") == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            double latitude = Double.parseDouble(payload.get("latitude"));
+            double longitude = Double.parseDouble(payload.get("longitude"));
+            double radiusKm = Double.parseDouble(payload.get("radiusKm"));
+            tokenRegistry.register(token);
+            GeofenceSubscription subscription =
+                    geofenceRegistry.subscribe(token, payload.get("label"), latitude, longitude, radiusKm);
+            if (subscription == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            // Its areas replace the region topic, which would notify it twice
+            firebaseService.leaveRegion(token);
+            return ResponseEntity.status(HttpStatus.CREATED).body(subscription);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected geofence subscription: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/subscriptions")
+    public List<GeofenceSubscription> getSubscriptions(@RequestParam String token) {
+        return geofenceRegistry.subscriptionsOf(token);
+    }
+
+    @DeleteMapping("/subscriptions/{id}")
+    public ResponseEntity<Void> unsubscribe(@PathVariable long id, @RequestParam String token) {
+        return geofenceRegistry.unsubscribe(token, id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
     }
-}
\ No newline at end of file
+}
@@ -1,123 +1,101 @@
 package com.example.missing_person_alert.controller;
 
 import com.example.missing_person_alert.entity.Person;
-import com.example.missing_person_alert.firebase.FirebaseService;
 import com.example.missing_person_alert.model.EmergencyAlert;
+import com.example.missing_person_alert.model.PageCursor;
+import com.example.missing_person_alert.model.PersonChanges;
+import com.example.missing_person_alert.model.PersonSummary;
+import com.example.missing_person_alert.model.PossibleDuplicate;
+import com.example.missing_person_alert.model.PublishResponse;
+import com.example.missing_person_alert.model.PublishStatus;
+import com.example.missing_person_alert.service.AlertStreamService;
 import com.example.missing_person_alert.service.EmergencyAlertService;
+import com.example.missing_person_alert.service.GeocodingService;
+import com.example.missing_person_alert.service.ImageDeliveryService;
+import com.example.missing_person_alert.service.ImageDerivativeService;
+import com.example.missing_person_alert.service.ImageStore;
 import com.example.missing_person_alert.service.PersonService;
+import com.example.missing_person_alert.service.PublishPipeline;
+import com.example.missing_person_alert.service.ResumableUploadService;
 import com.example.missing_person_alert.util.DistanceCalculator;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.NotBlank;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.MessageSource;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.Locale;
-import java.util.stream.Collectors;
-import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Controller
 @RequestMapping
 public class PersonController {
 
     private static final Logger logger = LoggerFactory.getLogger(PersonController.class);
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final double MAX_RADIUS_KM = 500.0;
+    private static final int MAX_POSSIBLE_DUPLICATES = 5;
+    private static final int PUBLISH_RETRY_AFTER_SECONDS = 5;
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+    static final String UPLOAD_LENGTH_HEADER = "Upload-Length";
+    // Photos are published alerts and content-addressed URLs cannot be guessed, so shared caches may keep them too
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
 
     private final PersonService service;
-    private final FirebaseService firebaseService;
     private final EmergencyAlertService emergencyAlertService;
+    private final AlertStreamService alertStreamService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ImageStore imageStore;
+    private final ImageDeliveryService imageDeliveryService;
     private final MessageSource messageSource;
-    private final RestTemplate restTemplate;
+    private final GeocodingService geocodingService;
+    private final PublishPipeline publishPipeline;
+    private final ResumableUploadService resumableUploadService;
+    private final ObjectMapper objectMapper;
 
-    public PersonController(PersonService service, FirebaseService firebaseService,
-                            EmergencyAlertService emergencyAlertService, MessageSource messageSource) {
+    public PersonController(PersonService service,
+                            EmergencyAlertService emergencyAlertService, AlertStreamService alertStreamService,
+                            ImageDerivativeService imageDerivativeService, ImageStore imageStore,
+                            ImageDeliveryService imageDeliveryService, GeocodingService geocodingService,
+                            PublishPipeline publishPipeline, ResumableUploadService resumableUploadService,
+                            MessageSource messageSource, ObjectMapper objectMapper) {
         this.service = service;
-        this.firebaseService = firebaseService;
         this.emergencyAlertService = emergencyAlertService;
+        this.alertStreamService = alertStreamService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.imageStore = imageStore;
+        this.imageDeliveryService = imageDeliveryService;
         this.messageSource = messageSource;
-        this.restTemplate = new RestTemplate();
-    }
-
-    private String getLocationName(Double latitude, Double longitude) {
-        if (latitude == null || longitude == null) {
-            logger.debug("No coordinates provided: lat={}, lon={}", latitude, longitude);
-            return null;
-        }
-        if (latitude < 47.3 || latitude > 55.1 || longitude < 5.9 || longitude > 15.0) {
-            logger.warn("Coordinates outside Germany: lat={}, lon={}", latitude, longitude);
-            return "Coordinates outside Germany";
-        }
-        int retries = 2;
-        long delay = 1000;
-        for (int attempt = 1; attempt <= retries; attempt++) {
-            try {
-                String url = String.format("https://nominatim.openstreetmap.org/reverse?format=json&lat=%f&lon=%f&zoom=10&addressdetails=1", latitude, longitude);
-                String userAgent = "MissingPersonAlertSystem/1.0 (contact: mamocool3@gmail.com)";
-                restTemplate.getInterceptors().add((request, body, execution) -> {
-                    request.getHeaders().set("User-Agent", userAgent);
-                    return execution.execute(request, body);
-                });
-                NominatimResponse response = restTemplate.getForObject(url, NominatimResponse.class);
-                logger.debug("Nominatim response for lat={}, lon={}: {}", latitude, longitude, response);
-                if (response != null && response.getDisplayName() != null && !response.getDisplayName().isEmpty()) {
-                    String displayName = response.getDisplayName();
-                    logger.info("Parsed display_name: {}", displayName);
-                    String[] parts = displayName.split(", ");
-                    if (parts.length >= 2) {
-                        String city = parts[0];
-                        String country = parts[parts.length - 1];
-                        String state = "";
-                        for (int i = 1; i < parts.length - 1; i++) {
-                            if (parts[i].matches(".*(Land|Bayern|Berlin|Hamburg).*")) {
-                                state = parts[i];
-                                break;
-                            }
-                        }
-                        if (!state.isEmpty()) {
-                            return String.format("%s, %s, %s", city, state, country);
-                        }
-                        return String.format("%s, %s", city, country);
-                    }
-                    return displayName;
-                }
-                logger.warn("No valid display_name in response for lat={}, lon={}", latitude, longitude);
-                return String.format("Lat: %f, Lon: %f", latitude, longitude);
-            } catch (HttpClientErrorException.TooManyRequests e) {
-                if (attempt < retries) {
-                    logger.warn("Rate limit hit, retrying after {}ms: lat={}, lon={}", delay, latitude, longitude);
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                    delay *= 2;
-                } else {
-                    logger.error("Max retries reached for lat={}, lon={}: {}", latitude, longitude, e.getMessage());
-                    return String.format("Lat: %f, Lon: %f", latitude, longitude);
-                }
-            } catch (Exception e) {
-                logger.error("Failed to fetch location name for lat={}, lon={}: {}", latitude, longitude, e.getMessage());
-                return String.format("Lat: %f, Lon: %f", latitude, longitude);
-            }
-        }
-        return String.format("Lat: %f, Lon: %f", latitude, longitude);
+        this.geocodingService = geocodingService;
+        this.publishPipeline = publishPipeline;
+        this.resumableUploadService = resumableUploadService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/publish")
@@ -130,17 +108,14 @@ public class PersonController {
 
     @PostMapping("/api/persons/publish")
     @ResponseBody
-    public ResponseEntity<Person> publishAlert(
+    public ResponseEntity<PublishResponse> publishAlert(
             @RequestParam("name") @NotBlank String name,
             @RequestParam("image") MultipartFile image,
             @RequestParam(value = "lastSeenLatitude", required = false) Double lastSeenLatitude,
             @RequestParam(value = "lastSeenLongitude", required = false) Double lastSeenLongitude) {
         try {
             logger.debug("Publishing request: name={}, lat={}, lon={}", name, lastSeenLatitude, lastSeenLongitude);
-            Person saved = service.savePerson(name, image, lastSeenLatitude, lastSeenLongitude);
-            firebaseService.sendNotification(saved, Locale.GERMAN);
-            logger.info("Successfully published alert for person id={}", saved.getId());
-            return ResponseEntity.ok(saved);
+            return publish(() -> service.savePerson(name, image, lastSeenLatitude, lastSeenLongitude));
         } catch (IOException e) {
             logger.error("Failed to publish alert: {}", e.getMessage());
             return ResponseEntity.status(500).body(null);
@@ -150,13 +125,154 @@ public class PersonController {
         }
     }
 
+    /**
+     * Starts a resumable photo upload for a new alert (tus-like). The photo's bytes are then sent
+     * with PATCH requests to the returned location, and the alert published once they are all there.
+     */
+    @PostMapping("/api/persons/publish/uploads")
+    @ResponseBody
+    public ResponseEntity<Void> createUpload(
+            @RequestHeader(UPLOAD_LENGTH_HEADER) long length,
+            @RequestParam("name") @NotBlank String name,
+            @RequestParam("contentType") String contentType,
+            @RequestParam(value = "lastSeenLatitude", required = false) Double lastSeenLatitude,
+            @RequestParam(value = "lastSeenLongitude", required = false) Double lastSeenLongitude) {
+        try {
+            ResumableUploadService.Upload upload = resumableUploadService.create(length, contentType, name,
+                    lastSeenLatitude, lastSeenLongitude);
+            if (upload == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(PUBLISH_RETRY_AFTER_SECONDS))
+                        .build();
+            }
+            return ResponseEntity.created(URI.create("/api/persons/publish/uploads/" + upload.getId()))
+                    .header(UPLOAD_OFFSET_HEADER, "0")
+                    .build();
+        } catch (IOException e) {
+            logger.error("Failed to create upload: {}", e.getMessage());
+            return ResponseEntity.status(500).build();
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid upload request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * How much of the upload has arrived: a client resumes by sending from {@code Upload-Offset}.
+     */
+    @RequestMapping(value = "/api/persons/publish/uploads/{id}", method = RequestMethod.HEAD)
+    @ResponseBody
+    public ResponseEntity<Void> getUploadOffset(@PathVariable("id") String id) {
+        ResumableUploadService.Upload upload = resumableUploadService.get(id);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .header(UPLOAD_OFFSET_HEADER, String.valueOf(upload.getOffset()))
+                .header(UPLOAD_LENGTH_HEADER, String.valueOf(upload.getLength()))
+                .build();
+    }
+
+    @PatchMapping("/api/persons/publish/uploads/{id}")
+    @ResponseBody
+    public ResponseEntity<Void> appendToUpload(@PathVariable("id") String id,
+                                               @RequestHeader(UPLOAD_OFFSET_HEADER) long offset,
+                                               HttpServletRequest request) {
+        ResumableUploadService.Upload upload = resumableUploadService.get(id);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            long received = resumableUploadService.write(upload, offset, request.getInputStream());
+            return ResponseEntity.noContent()
+                    .header(UPLOAD_OFFSET_HEADER, String.valueOf(received))
+                    .build();
+        } catch (IOException e) {
+            // Typically the connection dropped; what arrived is kept and the client resumes from HEAD
+            logger.warn("Chunk of upload {} broke off at offset {}: {}", id, upload.getOffset(), e.getMessage());
+            return ResponseEntity.status(500).build();
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid chunk for upload {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/api/persons/publish/uploads/{id}/publish")
+    @ResponseBody
+    public ResponseEntity<PublishResponse> publishUpload(@PathVariable("id") String id) {
+        ResumableUploadService.Upload upload = resumableUploadService.get(id);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return publish(() -> resumableUploadService.publish(upload));
+        } catch (IllegalStateException e) {
+            logger.warn("Cannot publish upload {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IOException e) {
+            logger.error("Failed to publish upload {}: {}", id, e.getMessage());
+            return ResponseEntity.status(500).body(null);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid upload {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
+    /**
+     * Saves the alert through the publish pipeline and answers {@code 202 Accepted}. Only the save
+     * runs here; images, geocoding and notifications follow on the pipeline.
+     */
+    private ResponseEntity<PublishResponse> publish(PublishPipeline.PersistStep persist) throws IOException {
+        AtomicReference<Person> persisted = new AtomicReference<>();
+        PublishStatus status = publishPipeline.submit(() -> {
+            persisted.set(persist.persist());
+            return persisted.get();
+        });
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(PUBLISH_RETRY_AFTER_SECONDS))
+                    .build();
+        }
+        Person saved = persisted.get();
+        List<PossibleDuplicate> duplicates = service.findPossibleDuplicates(saved, MAX_POSSIBLE_DUPLICATES);
+        if (!duplicates.isEmpty()) {
+            logger.info("Alert id={} may duplicate {} active alert(s), closest id={}", saved.getId(),
+                    duplicates.size(), duplicates.get(0).getPerson().getId());
+        }
+        String statusUrl = "/api/persons/publish/" + saved.getId() + "/status";
+        logger.info("Accepted alert for person id={}, publishing continues in the background", saved.getId());
+        return ResponseEntity.accepted()
+                .location(URI.create(statusUrl))
+                .body(new PublishResponse(saved, duplicates, statusUrl));
+    }
+
+    @GetMapping("/api/persons/publish/{id}/status")
+    @ResponseBody
+    public ResponseEntity<PublishStatus> getPublishStatus(@PathVariable("id") Long id) {
+        PublishStatus status = publishPipeline.getStatus(id);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(status);
+    }
+
     @GetMapping("/alert-confirmation")
     public String showAlertConfirmation(@RequestParam("id") Long id, Model model) {
         Person person = service.getPersonById(id).orElseThrow(() -> new IllegalArgumentException("Person not found"));
         String filename = person.getImagePath().contains("/")
                 ? person.getImagePath().substring(person.getImagePath().lastIndexOf("/") + 1)
                 : person.getImagePath();
-        String locationName = getLocationName(person.getLastSeenLatitude(), person.getLastSeenLongitude());
+        // Stored by the publish pipeline; looked up and stored here if that did not succeed (yet)
+        String locationName = person.getLocationName();
+        if (locationName == null) {
+            locationName = geocodingService.getLocationName(person.getLastSeenLatitude(), person.getLastSeenLongitude());
+            if (locationName != null) {
+                service.updateLocationName(id, locationName);
+            } else if (person.getLastSeenLatitude() != null && person.getLastSeenLongitude() != null) {
+                locationName = String.format("Lat: %f, Lon: %f", person.getLastSeenLatitude(), person.getLastSeenLongitude());
+            }
+        }
         logger.debug("Alert confirmation for id={}: locationName={}", id, locationName);
         model.addAttribute("person", person);
         model.addAttribute("imageFilename", filename);
@@ -166,73 +282,192 @@ public class PersonController {
 
     @GetMapping("/api/persons")
     @ResponseBody
-    public ResponseEntity<List<Person>> getAllPersons(
+    public ResponseEntity<List<PersonSummary>> getAllPersons(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(value = "cursor", required = false) String cursor,
             @RequestParam(value = "userLatitude", required = false) Double userLatitude,
-            @RequestParam(value = "userLongitude", required = false) Double userLongitude) {
-        logger.info("Received request for /api/persons: page={}, size={}, userLatitude={}, userLongitude={}",
-                page, size, userLatitude, userLongitude);
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "publishedAt"));
-        Page<Person> personPage = service.getAll(pageable);
-        List<Person> persons = personPage.getContent();
-        /*
+            @RequestParam(value = "userLongitude", required = false) Double userLongitude,
+            @RequestParam(value = "radiusKm", defaultValue = "50") double radiusKm) {
+        logger.info("Received request for /api/persons: page={}, size={}, cursor={}, userLatitude={}, userLongitude={}, radiusKm={}",
+                page, size, cursor, userLatitude, userLongitude, radiusKm);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<Person> persons;
         if (userLatitude != null && userLongitude != null) {
-            final double MAX_DISTANCE_KM = 50.0;
-            persons = persons.stream()
-                    .filter(person -> person.getLastSeenLatitude() != null && person.getLastSeenLongitude() != null)
-                    .filter(person -> {
-                        double distance = DistanceCalculator.calculateDistance(
-                                userLatitude, userLongitude,
-                                person.getLastSeenLatitude(), person.getLastSeenLongitude()
-                        );
-                        return distance <= MAX_DISTANCE_KM;
-                    })
-                    .collect(Collectors.toList());
+            if (radiusKm <= 0 || Math.abs(userLatitude) > 90 || Math.abs(userLongitude) > 180) {
+                logger.warn("Invalid nearby request: lat={}, lon={}, radiusKm={}", userLatitude, userLongitude, radiusKm);
+                return ResponseEntity.badRequest().build();
+            }
+            // Read before the query so a concurrent publish can only make the ETag too old, never too new
+            long version = service.getActiveAlertsVersion();
+            persons = service.findNearby(userLatitude, userLongitude, Math.min(radiusKm, MAX_RADIUS_KM),
+                    Math.max(page, 0), pageSize);
+            logger.info("Returning {} nearby persons for page {}, size={}", persons.size(), page, pageSize);
+            return ResponseEntity.ok()
+                    .eTag(listETag(version, persons))
+                    .cacheControl(CacheControl.noCache())
+                    .body(summaries(persons));
+        }
+        PageCursor pageCursor = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                pageCursor = PageCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Invalid cursor for /api/persons: {}", cursor);
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        long version = service.getActiveAlertsVersion();
+        if (pageCursor != null) {
+            persons = service.getAllAfter(pageCursor, pageSize);
+        } else {
+            Pageable pageable = PageRequest.of(page, pageSize, Sort.by(Sort.Direction.DESC, "publishedAt", "id"));
+            persons = service.getAll(pageable).getContent();
         }
-        */
 
-        logger.info("Returning {} persons for page {}, size={}", persons.size(), page, size);
-        return ResponseEntity.ok(persons);
+        logger.info("Returning {} persons for page {}, size={}", persons.size(), page, pageSize);
+        // Spring answers a matching If-None-Match with 304 and skips serializing the body
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(listETag(version, persons))
+                .cacheControl(CacheControl.noCache());
+        if (persons.size() == pageSize) {
+            Person last = persons.get(persons.size() - 1);
+            response.header(NEXT_CURSOR_HEADER, new PageCursor(last.getPublishedAt(), last.getId()).encode());
+        }
+        return response.body(summaries(persons));
     }
 
-    @GetMapping("/api/persons/image/{filename:.+}")
-    public ResponseEntity<Resource> serveImage(@PathVariable String filename) {
-        try {
-            Path file = Paths.get("uploads").resolve(filename);
-            logger.debug("Serving image from path: {}", file);
-            Resource resource = new UrlResource(file.toUri());
-            if (resource.exists() && resource.isReadable()) {
-                String contentType = Files.probeContentType(file);
-                logger.info("Serving image: {} with content-type: {}", filename, contentType);
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType != null ? contentType : "application/octet-stream"))
-                        .body(resource);
-            } else {
-                logger.warn("Image not found or not readable: {}", filename);
-                return ResponseEntity.notFound().build();
+    /**
+     * Every active alert as one JSON array, written row by row from a database cursor, so memory
+     * use stays flat however many alerts there are.
+     */
+    @GetMapping(value = "/api/persons/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<StreamingResponseBody> exportPersons() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                // The servlet container owns the response stream
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                int count = service.writeActiveSummaries(generator);
+                generator.writeEndArray();
+                logger.info("Exported {} active persons", count);
             }
-        } catch (IOException e) {
-            logger.error("Error serving image {}: {}", filename, e.getMessage());
-            return ResponseEntity.status(500).body(null);
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noStore())
+                .body(body);
+    }
+
+    @GetMapping("/api/persons/changes")
+    @ResponseBody
+    public ResponseEntity<PersonChanges> getChanges(@RequestParam(value = "since", required = false) String since) {
+        PersonChanges changes = service.getChangesSince(since);
+        logger.info("Returning changes since {}: reset={}, added={}, expired={}", since, changes.isReset(),
+                changes.getAdded().size(), changes.getExpired().size());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(changes);
+    }
+
+    @GetMapping(value = "/api/persons/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> streamAlerts(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = alertStreamService.subscribe(lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                // Stops reverse proxies such as nginx from buffering the stream
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
     }
 
-    private static class NominatimResponse {
-        @JsonProperty("display_name")
-        private String displayName;
+    @GetMapping("/api/persons/nearest")
+    @ResponseBody
+    public ResponseEntity<List<PersonSummary>> getNearestPersons(
+            @RequestParam("userLatitude") double userLatitude,
+            @RequestParam("userLongitude") double userLongitude,
+            @RequestParam(value = "k", defaultValue = "10") int k) {
+        if (Math.abs(userLatitude) > 90 || Math.abs(userLongitude) > 180) {
+            logger.warn("Invalid nearest request: lat={}, lon={}", userLatitude, userLongitude);
+            return ResponseEntity.badRequest().build();
+        }
+        List<Person> persons = service.findNearest(userLatitude, userLongitude, Math.max(1, Math.min(k, MAX_PAGE_SIZE)));
+        logger.info("Returning {} nearest persons to lat={}, lon={}", persons.size(), userLatitude, userLongitude);
+        return ResponseEntity.ok(summaries(persons));
+    }
 
-        public String getDisplayName() {
-            return displayName;
+    @GetMapping("/api/persons/area")
+    @ResponseBody
+    public ResponseEntity<List<PersonSummary>> getPersonsInArea(
+            @RequestParam("minLatitude") double minLatitude,
+            @RequestParam("maxLatitude") double maxLatitude,
+            @RequestParam("minLongitude") double minLongitude,
+            @RequestParam("maxLongitude") double maxLongitude,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        if (minLatitude > maxLatitude || minLongitude > maxLongitude) {
+            logger.warn("Invalid area request: lat=[{}, {}], lon=[{}, {}]", minLatitude, maxLatitude, minLongitude, maxLongitude);
+            return ResponseEntity.badRequest().build();
         }
+        DistanceCalculator.BoundingBox box = new DistanceCalculator.BoundingBox(
+                Math.max(minLatitude, -90), Math.min(maxLatitude, 90),
+                Math.max(minLongitude, -180), Math.min(maxLongitude, 180));
+        List<Person> persons = service.findInBox(box, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+        logger.info("Returning {} persons in area lat=[{}, {}], lon=[{}, {}]",
+                persons.size(), minLatitude, maxLatitude, minLongitude, maxLongitude);
+        return ResponseEntity.ok(summaries(persons));
+    }
 
-        public void setDisplayName(String displayName) {
-            this.displayName = displayName;
+    @GetMapping("/api/persons/image/{filename:.+}")
+    public void serveImage(@PathVariable String filename,
+                           @RequestParam(value = "size", required = false) String size,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = imageStore.resolve(filename);
+        String hash = ImageStore.contentHash(filename);
+        // Content-addressed URLs never change what they point to; legacy ones are revalidated
+        CacheControl cacheControl = hash != null ? IMMUTABLE : CacheControl.noCache();
+        String etag = hash != null ? "\"" + hash + "\"" : null;
+        if (size != null) {
+            ImageDerivativeService.Size derivativeSize = ImageDerivativeService.Size.fromKey(size);
+            if (derivativeSize == null) {
+                logger.warn("Unknown image size requested: {}", size);
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            Path derivative = imageDerivativeService.findDerivative(filename, derivativeSize);
+            if (derivative != null) {
+                logger.debug("Serving {} derivative of {}", size, filename);
+                imageDeliveryService.serve(derivative, hash != null ? "\"" + hash + "-" + size.toLowerCase(Locale.ROOT) + "\"" : null,
+                        cacheControl, request, response);
+                return;
+            }
+            // Not rendered yet, or lost: fall back to the original and render it for next time. This
+            // URL will serve the derivative later, so the original must not be cached under it.
+            if (Files.isRegularFile(file)) {
+                imageDerivativeService.generate(filename);
+            }
+            cacheControl = CacheControl.noCache();
+        }
+        logger.debug("Serving image from path: {}", file);
+        if (!imageDeliveryService.serve(file, etag, cacheControl, request, response)) {
+            logger.warn("Image not found or not readable: {}", filename);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
         }
+    }
+
+    private static List<PersonSummary> summaries(List<Person> persons) {
+        return persons.stream().map(PersonSummary::from).toList();
+    }
 
-        @Override
-        public String toString() {
-            return "NominatimResponse{displayName='" + displayName + "'}";
+    private static String listETag(long version, List<Person> persons) {
+        long hash = 17;
+        for (Person person : persons) {
+            hash = 31 * hash + Objects.hashCode(person.getId());
         }
+        return Long.toHexString(version) + "-" + Long.toHexString(hash);
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,11 @@
 package com.example.missing_person_alert.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+// Partitioned by expires_at month; the table, its indexes and partitions are defined by the migrations in db/migration
 @Table(name = "person")
 public class Person {
     @Id
@@ -16,15 +18,31 @@ public class Person {
     @Column(nullable = false)
     private String imagePath;
 
-    @Column(nullable = false)
+    // Placeholder clients paint until the photo arrives; null for alerts published before it existed
+    @Column(name = "blur_hash", length = 64)
+    private String blurHash;
+
+    // dHash of the photo, for spotting duplicate reports; null for alerts published before it existed
+    @JsonIgnore
+    @Column(name = "photo_hash")
+    private Long photoHash;
+
+    @Column(name = "published_at", nullable = false)
     private LocalDateTime publishedAt;
 
+    @Column(name = "last_seen_latitude")
     private Double lastSeenLatitude;
+
+    @Column(name = "last_seen_longitude")
     private Double lastSeenLongitude;
 
-    @Column(nullable = false)
+    @Column(name = "expires_at", nullable = false)
     private LocalDateTime expiresAt;
 
+    // Reverse-geocoded last-seen place; null until the publish pipeline has looked it up
+    @Column(name = "location_name")
+    private String locationName;
+
     // Getters and setters
     public Long getId() {
         return id;
@@ -44,6 +62,18 @@ public class Person {
     public void setImagePath(String imagePath) {
         this.imagePath = imagePath;
     }
+    public String getBlurHash() {
+        return blurHash;
+    }
+    public void setBlurHash(String blurHash) {
+        this.blurHash = blurHash;
+    }
+    public Long getPhotoHash() {
+        return photoHash;
+    }
+    public void setPhotoHash(Long photoHash) {
+        this.photoHash = photoHash;
+    }
     public LocalDateTime getPublishedAt() {
         return publishedAt;
     }
@@ -68,4 +98,10 @@ public class Person {
     public void setExpiresAt(LocalDateTime expiresAt) {
         this.expiresAt = expiresAt;
     }
-}
\ No newline at end of file
+    public String getLocationName() {
+        return locationName;
+    }
+    public void setLocationName(String locationName) {
+        this.locationName = locationName;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.missing_person_alert.firebase;
+
+/**
+ * Totals of one notification's fan-out to the registered web tokens.
+ */
+public class FanoutResult {
+
+    private final int batches;
+    private final int failedBatches;
+    private final int delivered;
+    private final int failed;
+    private final long elapsedMillis;
+
+    public FanoutResult(int batches, int failedBatches, int delivered, int failed, long elapsedMillis) {
+        this.batches = batches;
+        this.failedBatches = failedBatches;
+        this.delivered = delivered;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public static FanoutResult empty() {
+        return new FanoutResult(0, 0, 0, 0, 0);
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    // Batches whose request failed as a whole, so none of their tokens were reached
+    public int getFailedBatches() {
+        return failedBatches;
+    }
+
+    public int getDelivered() {
+        return delivered;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.missing_person_alert.firebase;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+
+/**
+ * What an FCM error says about the token it was sent to.
+ */
+public enum FcmErrorKind {
+    /**
+     * The token will never work again: the app was uninstalled, the token expired or was never
+     * valid. It is removed.
+     */
+    DEAD_TOKEN,
+    /**
+     * The device or FCM could not be reached this time; worth trying again later.
+     */
+    TRANSIENT,
+    /**
+     * Our credentials or project are at fault, not the token; the token is left alone.
+     */
+    SENDER;
+
+    public static FcmErrorKind of(MessagingErrorCode errorCode) {
+        if (errorCode == null) {
+            return TRANSIENT;
+        }
+        return switch (errorCode) {
+            // The notification payload is fixed, so an invalid argument is the token itself
+            case UNREGISTERED, INVALID_ARGUMENT, SENDER_ID_MISMATCH -> DEAD_TOKEN;
+            case THIRD_PARTY_AUTH_ERROR -> SENDER;
+            case UNAVAILABLE, INTERNAL, QUOTA_EXCEEDED -> TRANSIENT;
+        };
+    }
+}
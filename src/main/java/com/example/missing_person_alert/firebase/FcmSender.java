@@ -0,0 +1,40 @@
+package com.example.missing_person_alert.firebase;
+
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.Notification;
+
+import java.util.List;
+
+/**
+ * The calls {@link FirebaseService} makes to Firebase Cloud Messaging, so the fan-out can be
+ * exercised and measured against a local stub.
+ */
+public interface FcmSender {
+
+    // FCM's limit for one multicast request
+    int MAX_MULTICAST_TOKENS = 500;
+
+    /**
+     * Sends a single message and returns its message id.
+     */
+    String send(Message message) throws FirebaseMessagingException;
+
+    /**
+     * Sends {@code notification} to each of at most {@link #MAX_MULTICAST_TOKENS} tokens in one
+     * request. Throws if the request as a whole failed; failures of single tokens are reported in
+     * the result.
+     */
+    MulticastResult sendMulticast(List<String> tokens, Notification notification) throws FirebaseMessagingException;
+
+    /**
+     * Subscribes the token to {@code topic}. Returns whether FCM accepted the token; throws if
+     * the request as a whole failed.
+     */
+    boolean subscribeToTopic(String token, String topic) throws FirebaseMessagingException;
+
+    /**
+     * Unsubscribes the token from {@code topic}, like {@link #subscribeToTopic}.
+     */
+    boolean unsubscribeFromTopic(String token, String topic) throws FirebaseMessagingException;
+}
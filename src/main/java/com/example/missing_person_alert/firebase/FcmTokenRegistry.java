@@ -0,0 +1,443 @@
+package com.example.missing_person_alert.firebase;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The web push tokens that receive alert notifications, kept in the {@code fcm_token} table and
+ * indexed in memory. Registering checks and updates the in-memory index only; the database write
+ * is queued and flushed in batches of upserts, so an app-launch storm of registrations costs a
+ * few statements per second instead of one transaction per request. The fan-out reads the index,
+ * never the table.
+ * <p>
+ * A token registered again is only written again once a day, to keep {@code last_seen_at} useful
+ * without writing on every launch. If too many writes are pending, a flush is started at once in
+ * the background rather than waiting for the next interval.
+ * <p>
+ * Several instances can share the table: every {@code fcm.tokens.reload-interval-ms} each reads
+ * the rows written since its last look (by {@code updated_at}), so tokens registered elsewhere
+ * join its fan-out. Tokens removed elsewhere are not read back; they are removed here too the
+ * first time FCM declares them dead.
+ * <p>
+ * The fan-out reports every token's outcome back. Tokens FCM declares dead are removed at once.
+ * Tokens that fail transiently {@code fcm.tokens.quarantine-after-failures} times in a row are
+ * left out of fan-outs for {@code fcm.tokens.quarantine-ms}, twice as long after every further
+ * failure, and removed after {@code fcm.tokens.max-failures}; a single success clears the count.
+ * So the cost of a fan-out follows the devices that are alive, not every device ever registered.
+ * <p>
+ * A token registered with a location is subscribed to the topic of its region (a coarse geohash
+ * cell, see {@link FirebaseService#subscribeToRegion}) and gets alerts through that topic only,
+ * so it is left out of the nationwide fan-out.
+ */
+@Service
+public class FcmTokenRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(FcmTokenRegistry.class);
+    private static final int MAX_TOKEN_LENGTH = 1024;
+    private static final int WRITE_BATCH_SIZE = 500;
+    private static final long LAST_SEEN_REFRESH_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long MAX_QUARANTINE_MS = TimeUnit.DAYS.toMillis(7);
+    private static final String UPSERT = "INSERT INTO fcm_token " +
+            "(token, registered_at, last_seen_at, failure_count, last_success_at, quarantined_until, region, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) ON CONFLICT (token) DO UPDATE SET " +
+            "last_seen_at = EXCLUDED.last_seen_at, failure_count = EXCLUDED.failure_count, " +
+            "last_success_at = EXCLUDED.last_success_at, quarantined_until = EXCLUDED.quarantined_until, " +
+            "region = EXCLUDED.region, updated_at = EXCLUDED.updated_at";
+    private static final String SELECT = "SELECT token, last_seen_at, failure_count, last_success_at, " +
+            "quarantined_until, region, updated_at FROM fcm_token";
+    // Rows are stamped when their transaction started, so one committing late may carry an older time
+    private static final long RELOAD_OVERLAP_MS = TimeUnit.MINUTES.toMillis(1);
+
+    @Value("${fcm.tokens.quarantine-after-failures:3}")
+    private int quarantineAfterFailures = 3;
+
+    @Value("${fcm.tokens.quarantine-ms:3600000}")
+    private long quarantineMs = 3600000;
+
+    @Value("${fcm.tokens.max-failures:10}")
+    private int maxFailures = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxPendingWrites;
+    private final Map<String, TokenState> tokens = new ConcurrentHashMap<>();
+    // Tokens whose row is out of date, and removed tokens whose row is still there
+    private final Set<String> pendingWrites = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+    private final Object flushLock = new Object();
+    // Runs flushes started because too many writes were pending; one at a time, one waiting at most
+    private final ThreadPoolExecutor flushExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), runnable -> {
+                Thread thread = new Thread(runnable, "fcm-token-flush-1");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+    // The newest updated_at read from the table, on the database clock
+    private volatile long lastUpdatedAt;
+
+    private final Counter prunedCounter = Metrics.counter("notification.tokens.pruned");
+    private final Counter quarantinedCounter = Metrics.counter("notification.tokens.quarantined");
+
+    public FcmTokenRegistry(JdbcTemplate jdbcTemplate,
+                            @Value("${fcm.tokens.max-pending-writes:10000}") int maxPendingWrites) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxPendingWrites = maxPendingWrites;
+        Metrics.gaugeMapSize("notification.tokens.registered", Tags.empty(), tokens);
+        Metrics.gaugeCollectionSize("notification.tokens.pending-writes", Tags.empty(), pendingWrites);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.nanoTime();
+        // Streamed row by row; registrations made meanwhile are kept
+        jdbcTemplate.query(SELECT, this::apply);
+        logger.info("Loaded {} FCM tokens in {} ms", tokens.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Reads the rows written since the last load or reload, e.g. by other instances.
+     */
+    @Scheduled(fixedDelayString = "${fcm.tokens.reload-interval-ms:30000}",
+            initialDelayString = "${fcm.tokens.reload-interval-ms:30000}")
+    public void reload() {
+        int before = tokens.size();
+        try {
+            jdbcTemplate.query(SELECT + " WHERE updated_at > ?", this::apply,
+                    new Timestamp(lastUpdatedAt - RELOAD_OVERLAP_MS));
+        } catch (DataAccessException e) {
+            logger.warn("Failed to reload FCM tokens: {}", e.getMessage());
+            return;
+        }
+        if (tokens.size() != before) {
+            logger.info("Reloaded FCM tokens, {} now registered", tokens.size());
+        }
+    }
+
+    /**
+     * Adds a token, or refreshes a known one. Returns whether it was new; blank or oversized
+     * tokens are ignored.
+     */
+    public boolean register(String token) {
+        if (token == null || token.isBlank() || token.length() > MAX_TOKEN_LENGTH) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        TokenState known = tokens.get(token);
+        if (known != null && now - known.lastSeenAt < LAST_SEEN_REFRESH_MS) {
+            return false;
+        }
+        boolean added = false;
+        if (known != null) {
+            known.lastSeenAt = now;
+        } else {
+            // Two threads racing here both queue the token, which the upsert makes harmless
+            added = tokens.putIfAbsent(token, new TokenState(now)) == null;
+            pendingDeletes.remove(token);
+        }
+        markDirty(token);
+        return added;
+    }
+
+    public boolean contains(String token) {
+        return tokens.containsKey(token);
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Whether the token is registered and not in quarantine, for sends that pick their tokens
+     * elsewhere.
+     */
+    public boolean isSendable(String token) {
+        TokenState state = tokens.get(token);
+        return state != null && state.quarantinedUntil <= System.currentTimeMillis();
+    }
+
+    /**
+     * The region cell the token's alerts come through, or {@code null} if it gets every alert.
+     */
+    public String regionOf(String token) {
+        TokenState state = tokens.get(token);
+        return state != null ? state.region : null;
+    }
+
+    /**
+     * Records the region topic the token has been subscribed to. Unknown tokens are ignored.
+     */
+    public void setRegion(String token, String region) {
+        TokenState state = tokens.get(token);
+        if (state != null) {
+            state.region = region;
+            markDirty(token);
+        }
+    }
+
+    /**
+     * The tokens to send to: every registered token without a region and not in quarantine. A
+     * live view, iterated without copying or locking the registry; tokens registered meanwhile
+     * may or may not be included.
+     */
+    public Iterable<String> tokens() {
+        return () -> new Iterator<>() {
+            private final Iterator<Map.Entry<String, TokenState>> entries = tokens.entrySet().iterator();
+            private final long now = System.currentTimeMillis();
+            private String next = advance();
+
+            private String advance() {
+                while (entries.hasNext()) {
+                    Map.Entry<String, TokenState> entry = entries.next();
+                    TokenState state = entry.getValue();
+                    if (state.region == null && state.quarantinedUntil <= now) {
+                        return entry.getKey();
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                String current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Records the outcome of one multicast batch: every token of {@code batch} not in
+     * {@code failures} was delivered to.
+     */
+    public void recordResults(List<String> batch, List<MulticastResult.Failure> failures) {
+        long now = System.currentTimeMillis();
+        Set<String> failed = new HashSet<>();
+        for (MulticastResult.Failure failure : failures) {
+            failed.add(failure.getToken());
+            recordFailure(failure.getToken(), FcmErrorKind.of(failure.getErrorCode()), now);
+        }
+        for (String token : batch) {
+            if (!failed.contains(token)) {
+                recordSuccess(token, now);
+            }
+        }
+    }
+
+    public boolean remove(String token) {
+        if (tokens.remove(token) == null) {
+            return false;
+        }
+        pendingWrites.remove(token);
+        pendingDeletes.add(token);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${fcm.tokens.flush-interval-ms:1000}")
+    public void flush() {
+        synchronized (flushLock) {
+            drain(pendingDeletes, this::delete);
+            drain(pendingWrites, this::write);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+    // A token with changes still to write, or to delete, is newer here than in its row
+    private void apply(ResultSet rs) throws SQLException {
+        String token = rs.getString(1);
+        Timestamp updatedAt = rs.getTimestamp(7);
+        if (updatedAt != null && updatedAt.getTime() > lastUpdatedAt) {
+            lastUpdatedAt = updatedAt.getTime();
+        }
+        if (pendingWrites.contains(token) || pendingDeletes.contains(token)) {
+            return;
+        }
+        TokenState stored = new TokenState(millis(rs.getTimestamp(2)));
+        stored.failures = rs.getInt(3);
+        stored.lastSuccessAt = millis(rs.getTimestamp(4));
+        stored.quarantinedUntil = millis(rs.getTimestamp(5));
+        stored.region = rs.getString(6);
+        TokenState known = tokens.putIfAbsent(token, stored);
+        if (known != null) {
+            synchronized (known) {
+                known.lastSeenAt = Math.max(known.lastSeenAt, stored.lastSeenAt);
+                known.failures = stored.failures;
+                known.lastSuccessAt = stored.lastSuccessAt;
+                known.quarantinedUntil = stored.quarantinedUntil;
+                known.region = stored.region;
+            }
+        }
+    }
+
+    private void recordSuccess(String token, long now) {
+        TokenState state = tokens.get(token);
+        if (state == null) {
+            return;
+        }
+        boolean changed;
+        synchronized (state) {
+            // Only written when it matters: after failures, or once a day for last_success_at
+            changed = state.failures > 0 || now - state.lastSuccessAt >= LAST_SEEN_REFRESH_MS;
+            state.failures = 0;
+            state.quarantinedUntil = 0;
+            state.lastSuccessAt = now;
+        }
+        if (changed) {
+            markDirty(token);
+        }
+    }
+
+    private void recordFailure(String token, FcmErrorKind kind, long now) {
+        TokenState state = tokens.get(token);
+        if (state == null || kind == FcmErrorKind.SENDER) {
+            return;
+        }
+        int failures;
+        synchronized (state) {
+            failures = ++state.failures;
+            if (kind == FcmErrorKind.TRANSIENT && failures >= quarantineAfterFailures) {
+                int doublings = Math.min(failures - quarantineAfterFailures, 20);
+                state.quarantinedUntil = now + Math.min(quarantineMs << doublings, MAX_QUARANTINE_MS);
+            }
+        }
+        if (kind == FcmErrorKind.DEAD_TOKEN || failures >= maxFailures) {
+            if (remove(token)) {
+                prunedCounter.increment();
+                logger.debug("Removed FCM token after {} failure(s), the last one {}", failures, kind);
+            }
+            return;
+        }
+        if (failures >= quarantineAfterFailures) {
+            quarantinedCounter.increment();
+        }
+        markDirty(token);
+    }
+
+    private void markDirty(String token) {
+        pendingWrites.add(token);
+        if (pendingWrites.size() >= maxPendingWrites) {
+            // Not on this thread, which is usually serving a registration
+            flushExecutor.execute(this::flush);
+        }
+    }
+
+    private static void drain(Set<String> pending, Consumer<List<String>> writer) {
+        List<String> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        Iterator<String> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            iterator.remove();
+            if (batch.size() == WRITE_BATCH_SIZE) {
+                writer.accept(batch);
+                batch = new ArrayList<>(WRITE_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writer.accept(batch);
+        }
+    }
+
+    private void write(List<String> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (String token : batch) {
+            TokenState state = tokens.get(token);
+            if (state != null) {
+                synchronized (state) {
+                    rows.add(new Object[]{token, timestamp(state.lastSeenAt), state.failures,
+                            timestamp(state.lastSuccessAt), timestamp(state.quarantinedUntil), state.region});
+                }
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT, rows, rows.size(), (statement, row) -> {
+                statement.setString(1, (String) row[0]);
+                // registered_at only counts for new rows
+                statement.setTimestamp(2, (Timestamp) row[1]);
+                statement.setTimestamp(3, (Timestamp) row[1]);
+                statement.setInt(4, (Integer) row[2]);
+                statement.setTimestamp(5, (Timestamp) row[3]);
+                statement.setTimestamp(6, (Timestamp) row[4]);
+                statement.setString(7, (String) row[5]);
+            });
+            logger.debug("Stored {} FCM tokens", rows.size());
+        } catch (DataAccessException e) {
+            // Kept pending, so the next flush tries again
+            pendingWrites.addAll(batch);
+            logger.error("Failed to store {} FCM tokens: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private void delete(List<String> batch) {
+        try {
+            jdbcTemplate.batchUpdate("DELETE FROM fcm_token WHERE token = ?", batch, batch.size(),
+                    (statement, token) -> statement.setString(1, token));
+            logger.info("Deleted {} dead FCM tokens", batch.size());
+        } catch (DataAccessException e) {
+            pendingDeletes.addAll(batch);
+            logger.error("Failed to delete {} FCM tokens: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private static long millis(Timestamp timestamp) {
+        return timestamp != null ? timestamp.getTime() : 0;
+    }
+
+    private static Timestamp timestamp(long millis) {
+        return millis > 0 ? new Timestamp(millis) : null;
+    }
+
+    /**
+     * What is known about one token. Times are epoch millis, 0 for never.
+     */
+    private static final class TokenState {
+        // When the token was last registered, as far as it was written
+        private volatile long lastSeenAt;
+        private int failures;
+        private long lastSuccessAt;
+        private volatile long quarantinedUntil;
+        private volatile String region;
+
+        private TokenState(long lastSeenAt) {
+            this.lastSeenAt = lastSeenAt;
+        }
+    }
+}
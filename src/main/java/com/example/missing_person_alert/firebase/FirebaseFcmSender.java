@@ -0,0 +1,57 @@
+package com.example.missing_person_alert.firebase;
+
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MulticastMessage;
+import com.google.firebase.messaging.Notification;
+import com.google.firebase.messaging.SendResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link FcmSender} backed by the default Firebase app.
+ */
+@Component
+public class FirebaseFcmSender implements FcmSender {
+
+    @Override
+    public String send(Message message) throws FirebaseMessagingException {
+        return FirebaseMessaging.getInstance().send(message);
+    }
+
+    @Override
+    public MulticastResult sendMulticast(List<String> tokens, Notification notification) throws FirebaseMessagingException {
+        MulticastMessage message = MulticastMessage.builder()
+                .setNotification(notification)
+                .addAllTokens(tokens)
+                .build();
+        BatchResponse response = FirebaseMessaging.getInstance().sendEachForMulticast(message);
+        // Responses are in the order of the tokens
+        List<MulticastResult.Failure> failures = new ArrayList<>();
+        List<SendResponse> responses = response.getResponses();
+        for (int i = 0; i < responses.size(); i++) {
+            SendResponse sent = responses.get(i);
+            if (!sent.isSuccessful()) {
+                FirebaseMessagingException error = sent.getException();
+                failures.add(new MulticastResult.Failure(tokens.get(i),
+                        error != null ? error.getMessagingErrorCode() : null,
+                        error != null ? error.getMessage() : null));
+            }
+        }
+        return new MulticastResult(tokens.size(), failures);
+    }
+
+    @Override
+    public boolean subscribeToTopic(String token, String topic) throws FirebaseMessagingException {
+        return FirebaseMessaging.getInstance().subscribeToTopic(List.of(token), topic).getFailureCount() == 0;
+    }
+
+    @Override
+    public boolean unsubscribeFromTopic(String token, String topic) throws FirebaseMessagingException {
+        return FirebaseMessaging.getInstance().unsubscribeFromTopic(List.of(token), topic).getFailureCount() == 0;
+    }
+}
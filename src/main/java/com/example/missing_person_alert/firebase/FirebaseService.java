@@ -1,14 +1,16 @@
 package com.example.missing_person_alert.firebase;
 
-import com.example.missing_person_alert.controller.NotificationController;
 import com.example.missing_person_alert.entity.Person;
+import com.example.missing_person_alert.util.Geohash;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
-import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.messaging.FirebaseMessagingException;
 import com.google.firebase.messaging.Message;
 import com.google.firebase.messaging.Notification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PreDestroy;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
@@ -19,23 +21,77 @@ import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class FirebaseService {
 
     private static final Logger logger = LoggerFactory.getLogger(FirebaseService.class);
+    // What app versions without regions listen to; gets every alert until firebase.region.legacy-topic-until
+    private static final String NATIONWIDE_TOPIC = "Germany_Alerts";
+    private static final String REGION_TOPIC_PREFIX = "region_";
+    // Alerts without a last-seen location, for tokens in a region
+    private static final String UNLOCATED_TOPIC = "alerts_without_location";
+    // FCM's limit for the topics of one condition
+    private static final int MAX_CONDITION_TOPICS = 5;
 
     @Value("${firebase.service-account-key-path}")
     private Resource serviceAccountResource;
 
-    private final NotificationController notificationController;
+    @Value("${firebase.region.precision:4}")
+    private int regionPrecision = 4;
+
+    @Value("${firebase.region.radius-km:25}")
+    private double regionRadiusKm = 25;
+
+    @Value("${firebase.region.legacy-topic-until:2027-01-31}")
+    private String legacyTopicUntil = "2027-01-31";
+
+    private final FcmTokenRegistry tokenRegistry;
+    private final GeofenceRegistry geofenceRegistry;
     private final MessageSource messageSource;
+    private final FcmSender fcmSender;
+    private final ThreadPoolExecutor fanoutExecutor;
     private boolean firebaseInitialized = false;
 
-    public FirebaseService(NotificationController notificationController, MessageSource messageSource) {
-        this.notificationController = notificationController;
+    private final Counter deliveredCounter = Metrics.counter("notification.tokens", "result", "delivered");
+    private final Counter failedCounter = Metrics.counter("notification.tokens", "result", "failed");
+    private final Counter batchCounter = Metrics.counter("notification.batches", "result", "sent");
+    private final Counter failedBatchCounter = Metrics.counter("notification.batches", "result", "failed");
+    private final Timer fanoutTimer = Metrics.timer("notification.fanout.duration");
+
+    public FirebaseService(FcmTokenRegistry tokenRegistry, GeofenceRegistry geofenceRegistry,
+                           MessageSource messageSource, FcmSender fcmSender, @Value("${firebase.fanout.threads:8}") int fanoutThreads) {
+        this.tokenRegistry = tokenRegistry;
+        this.geofenceRegistry = geofenceRegistry;
         this.messageSource = messageSource;
+        this.fcmSender = fcmSender;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // A short queue; when it is full the notifying thread sends the batch itself, which paces it
+        this.fanoutExecutor = new ThreadPoolExecutor(fanoutThreads, fanoutThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(fanoutThreads * 2), runnable -> {
+                    Thread thread = new Thread(runnable, "fcm-fanout-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // For tests, which have no service account
+    void setFirebaseInitialized(boolean firebaseInitialized) {
+        this.firebaseInitialized = firebaseInitialized;
     }
 
     @PostConstruct
@@ -64,6 +120,7 @@ public class FirebaseService {
 
     @PreDestroy
     public void shutdown() {
+        fanoutExecutor.shutdownNow();
         if (firebaseInitialized) {
             logger.info("Shutting down FirebaseApp");
             FirebaseApp.getApps().forEach(app -> {
@@ -74,50 +131,236 @@ public class FirebaseService {
         }
     }
 
-    public void sendNotification(Person person, Locale locale) {
+    /**
+     * Sends the alert to the topics of the regions around where the person was last seen (or the
+     * nationwide topic if that is unknown), to every token with a geofence subscription containing
+     * that location and to every other token without a region. Tokens go out in multicast batches of up to {@value FcmSender#MAX_MULTICAST_TOKENS}, several
+     * batches at a time; this returns once all of them have been answered.
+     */
+    public FanoutResult sendNotification(Person person, Locale locale) {
         if (!firebaseInitialized) {
             logger.warn("Firebase is not initialized. Skipping notification for: {}", person.getFullName());
-            return;
+            return FanoutResult.empty();
         }
 
         String title = messageSource.getMessage("notification.title", null, locale);
         String body = messageSource.getMessage("notification.body", new Object[]{person.getFullName()}, locale);
-
-        // Send to topic (mobile apps)
-        Message topicMessage = Message.builder()
-                .setNotification(Notification.builder()
-                        .setTitle(title)
-                        .setBody(body)
-                        .build())
-                .setTopic("Germany_Alerts")
+        Notification notification = Notification.builder()
+                .setTitle(title)
+                .setBody(body)
                 .build();
 
-        try {
-            String topicResponse = FirebaseMessaging.getInstance().send(topicMessage);
-            logger.info("Successfully sent topic message: {}", topicResponse);
-        } catch (FirebaseMessagingException e) {
-            logger.error("Failed to send topic notification: {}", e.getMessage(), e);
+        // Send to topics (mobile apps, and web users who registered with a location)
+        List<String> topics = alertTopics(person);
+        logger.info("Sending alert for person {} to {} topics", person.getId(), topics.size());
+        for (Message topicMessage : topicMessages(topics, notification)) {
+            try {
+                String topicResponse = fcmSender.send(topicMessage);
+                logger.info("Successfully sent topic message: {}", topicResponse);
+            } catch (FirebaseMessagingException e) {
+                logger.error("Failed to send topic notification: {}", e.getMessage(), e);
+            }
         }
 
         // Send to registered web users
-        for (String token : notificationController.getFcmTokens()) {
-            Message webMessage = Message.builder()
-                    .setNotification(Notification.builder()
-                            .setTitle(title)
-                            .setBody(body)
-                            .build())
-                    .setToken(token)
-                    .build();
+        FanoutResult result = sendToTokens(recipients(person), notification);
+        logger.info("Sent web notification for person {} to {} of {} tokens in {} batches ({} failed) in {} ms",
+                person.getId(), result.getDelivered(), result.getDelivered() + result.getFailed(),
+                result.getBatches(), result.getFailedBatches(), result.getElapsedMillis());
+
+        // Placeholder for Cell Broadcast integration
+        logger.info("Placeholder: Send Cell Broadcast message for person: {}", person.getFullName());
+        return result;
+    }
 
+    /**
+     * Subscribes the token to the topic of the region containing the given location, moving it
+     * out of the region it was in before and out of the nationwide fan-out. A token entering its
+     * first region is also subscribed to the topic of alerts without a location, which the region
+     * topics do not get. Returns whether it is subscribed; if not, it keeps receiving alerts the
+     * way it did. Tokens with geofence subscriptions get alerts for their areas only and are not
+     * subscribed.
+     */
+    public boolean subscribeToRegion(String token, double latitude, double longitude) {
+        if (geofenceRegistry.hasSubscriptions(token)) {
+            return false;
+        }
+        String region = Geohash.encode(latitude, longitude, regionPrecision);
+        String previous = tokenRegistry.regionOf(token);
+        if (region.equals(previous)) {
+            return true;
+        }
+        if (!firebaseInitialized) {
+            logger.warn("Firebase is not initialized. Skipping region subscription");
+            return false;
+        }
+        try {
+            if (previous == null && !fcmSender.subscribeToTopic(token, UNLOCATED_TOPIC)) {
+                logger.warn("FCM refused to subscribe a token to {}", UNLOCATED_TOPIC);
+                return false;
+            }
+            if (!fcmSender.subscribeToTopic(token, REGION_TOPIC_PREFIX + region)) {
+                logger.warn("FCM refused to subscribe a token to region {}", region);
+                return false;
+            }
+        } catch (FirebaseMessagingException e) {
+            logger.error("Failed to subscribe a token to region {}: {}", region, e.getMessage());
+            return false;
+        }
+        tokenRegistry.setRegion(token, region);
+        if (previous != null) {
             try {
-                String webResponse = FirebaseMessaging.getInstance().send(webMessage);
-                logger.info("Successfully sent web notification to token {}: {}", token, webResponse);
+                fcmSender.unsubscribeFromTopic(token, REGION_TOPIC_PREFIX + previous);
             } catch (FirebaseMessagingException e) {
-                logger.error("Failed to send web notification to token {}: {}", token, e.getMessage(), e);
+                // Worst case the device also hears about alerts near where it was before
+                logger.warn("Failed to unsubscribe a token from region {}: {}", previous, e.getMessage());
             }
         }
+        return true;
+    }
 
-        // Placeholder for Cell Broadcast integration
-        logger.info("Placeholder: Send Cell Broadcast message for person: {}", person.getFullName());
+    /**
+     * Unsubscribes the token from its region topic and the topic of alerts without a location,
+     * once it has geofence subscriptions that replace them. Returns whether the token is no longer
+     * in a region.
+     */
+    public boolean leaveRegion(String token) {
+        String region = tokenRegistry.regionOf(token);
+        if (region == null) {
+            return true;
+        }
+        if (!firebaseInitialized) {
+            logger.warn("Firebase is not initialized. Skipping region unsubscription");
+            return false;
+        }
+        try {
+            if (!fcmSender.unsubscribeFromTopic(token, REGION_TOPIC_PREFIX + region)) {
+                logger.warn("FCM refused to unsubscribe a token from region {}", region);
+                return false;
+            }
+        } catch (FirebaseMessagingException e) {
+            logger.error("Failed to unsubscribe a token from region {}: {}", region, e.getMessage());
+            return false;
+        }
+        tokenRegistry.setRegion(token, null);
+        try {
+            fcmSender.unsubscribeFromTopic(token, UNLOCATED_TOPIC);
+        } catch (FirebaseMessagingException e) {
+            // Worst case the device also hears about alerts without a location
+            logger.warn("Failed to unsubscribe a token from {}: {}", UNLOCATED_TOPIC, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * The web tokens an alert is sent to directly: those with a geofence subscription containing
+     * the last-seen location, then those with neither subscriptions nor a region. The two never
+     * overlap, and neither is copied.
+     */
+    Iterable<String> recipients(Person person) {
+        Set<String> matched = person.getLastSeenLatitude() != null && person.getLastSeenLongitude() != null
+                ? geofenceRegistry.tokensContaining(person.getLastSeenLatitude(), person.getLastSeenLongitude())
+                : Set.of();
+        logger.info("Alert for person {} matches the geofences of {} tokens", person.getId(), matched.size());
+        return () -> Stream.concat(matched.stream(),
+                StreamSupport.stream(tokenRegistry.tokens().spliterator(), false)
+                        .filter(token -> !geofenceRegistry.hasSubscriptions(token))).iterator();
+    }
+
+    /**
+     * The topics of an alert: the region topics covering {@code firebase.region.radius-km} around
+     * the last-seen location, or the topic of alerts without a location if it is unknown. Until
+     * {@code firebase.region.legacy-topic-until} the nationwide topic comes first, for app
+     * versions that listen to nothing else. No token is in more than one of these topics, so no
+     * device gets an alert twice.
+     */
+    List<String> alertTopics(Person person) {
+        List<String> topics = new ArrayList<>();
+        boolean located = person.getLastSeenLatitude() != null && person.getLastSeenLongitude() != null;
+        if (!located || !LocalDate.now().isAfter(LocalDate.parse(legacyTopicUntil))) {
+            topics.add(NATIONWIDE_TOPIC);
+        }
+        if (located) {
+            Geohash.coveringCells(person.getLastSeenLatitude(), person.getLastSeenLongitude(),
+                            regionRadiusKm, regionPrecision)
+                    .forEach(cell -> topics.add(REGION_TOPIC_PREFIX + cell));
+        } else {
+            topics.add(UNLOCATED_TOPIC);
+        }
+        return topics;
+    }
+
+    // One message per topic would notify no one twice too, but a condition reaches up to five at once
+    private static List<Message> topicMessages(List<String> topics, Notification notification) {
+        List<Message> messages = new ArrayList<>();
+        for (int from = 0; from < topics.size(); from += MAX_CONDITION_TOPICS) {
+            List<String> group = topics.subList(from, Math.min(from + MAX_CONDITION_TOPICS, topics.size()));
+            Message.Builder message = Message.builder().setNotification(notification);
+            if (group.size() == 1) {
+                message.setTopic(group.get(0));
+            } else {
+                message.setCondition(group.stream()
+                        .map(topic -> "'" + topic + "' in topics")
+                        .collect(Collectors.joining(" || ")));
+            }
+            messages.add(message.build());
+        }
+        return messages;
+    }
+
+    FanoutResult sendToTokens(Iterable<String> tokens, Notification notification) {
+        long started = System.nanoTime();
+        // Batches are cut while iterating, so the tokens are never copied as a whole
+        List<Future<MulticastResult>> batches = new ArrayList<>();
+        List<List<String>> batchTokens = new ArrayList<>();
+        List<String> batch = new ArrayList<>(FcmSender.MAX_MULTICAST_TOKENS);
+        for (String token : tokens) {
+            batch.add(token);
+            if (batch.size() == FcmSender.MAX_MULTICAST_TOKENS) {
+                submitBatch(batch, notification, batches, batchTokens);
+                batch = new ArrayList<>(FcmSender.MAX_MULTICAST_TOKENS);
+            }
+        }
+        if (!batch.isEmpty()) {
+            submitBatch(batch, notification, batches, batchTokens);
+        }
+        int failedBatches = 0;
+        int delivered = 0;
+        int failed = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            int batchSize = batchTokens.get(i).size();
+            try {
+                MulticastResult answered = batches.get(i).get();
+                delivered += answered.getSuccessCount();
+                failed += answered.getFailures().size();
+                deliveredCounter.increment(answered.getSuccessCount());
+                failedCounter.increment(answered.getFailures().size());
+                batchCounter.increment();
+                // Dead tokens are pruned and failing ones quarantined, so later fan-outs skip them
+                tokenRegistry.recordResults(batchTokens.get(i), answered.getFailures());
+                logger.debug("Batch {}: {} delivered, {} failed", i, answered.getSuccessCount(), answered.getFailures().size());
+            } catch (ExecutionException e) {
+                // Says nothing about the tokens themselves, so their health is left as it is
+                failedBatches++;
+                failed += batchSize;
+                failedCounter.increment(batchSize);
+                failedBatchCounter.increment();
+                logger.error("Batch {} of {} tokens failed: {}", i, batchSize, e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batches.forEach(future -> future.cancel(true));
+                logger.warn("Interrupted while sending notifications, {} batches left", batches.size() - i);
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        fanoutTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        return new FanoutResult(batches.size(), failedBatches, delivered, failed, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private void submitBatch(List<String> batch, Notification notification,
+                             List<Future<MulticastResult>> batches, List<List<String>> batchTokens) {
+        batchTokens.add(batch);
+        batches.add(fanoutExecutor.submit(() -> fcmSender.sendMulticast(batch, notification)));
     }
-}
\ No newline at end of file
+}
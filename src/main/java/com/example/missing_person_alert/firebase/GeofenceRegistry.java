@@ -0,0 +1,272 @@
+package com.example.missing_person_alert.firebase;
+
+import com.example.missing_person_alert.model.GeofenceSubscription;
+import com.example.missing_person_alert.util.CircleIndex;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The geofence subscriptions of devices: circles such as home, school or a commute, each with
+ * its own radius, linked to an FCM token. They are kept in the {@code geofence_subscription}
+ * table and in a {@link CircleIndex}, which finds the subscriptions containing an alert's
+ * last-seen point by reading a single geohash cell, so matching stays well under a second with
+ * millions of subscriptions.
+ * <p>
+ * Subscriptions change rarely and are written through. A token with subscriptions gets alerts
+ * for its areas only; see {@link FirebaseService#sendNotification}.
+ * <p>
+ * Several instances can share the table: every {@code notification.geofence.reload-interval-ms}
+ * each reads the rows changed since its last look (by {@code updated_at}). Removing a
+ * subscription only marks its row with {@code removed_at}, so the others see the removal too;
+ * marked rows are deleted a day later.
+ */
+@Service
+public class GeofenceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeofenceRegistry.class);
+    private static final int MAX_LABEL_LENGTH = 100;
+    private static final double MIN_RADIUS_KM = 0.1;
+    private static final String SELECT = "SELECT id, token, label, latitude, longitude, radius_km, removed_at, " +
+            "updated_at FROM geofence_subscription";
+    private static final String REMOVE = "UPDATE geofence_subscription " +
+            "SET removed_at = CURRENT_TIMESTAMP, updated_at = CURRENT_TIMESTAMP";
+    // Rows are stamped when their transaction started, so one committing late may carry an older time
+    private static final long RELOAD_OVERLAP_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long REMOVED_RETENTION_MS = TimeUnit.DAYS.toMillis(1);
+
+    @Value("${notification.geofence.max-radius-km:50}")
+    private double maxRadiusKm = 50;
+
+    @Value("${notification.geofence.max-per-token:10}")
+    private int maxPerToken = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FcmTokenRegistry tokenRegistry;
+    private final CircleIndex index;
+    private final Map<Long, GeofenceSubscription> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> idsByToken = new ConcurrentHashMap<>();
+    private final Timer matchTimer = Metrics.timer("notification.geofence.match");
+    private final AtomicInteger skipped = new AtomicInteger();
+    private volatile long lastUpdatedAt;
+
+    public GeofenceRegistry(JdbcTemplate jdbcTemplate, FcmTokenRegistry tokenRegistry,
+                            @Value("${notification.geofence.precision:4}") int precision) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tokenRegistry = tokenRegistry;
+        this.index = new CircleIndex(precision);
+        Metrics.gaugeMapSize("notification.geofence.subscriptions", Tags.empty(), subscriptions);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.nanoTime();
+        skipped.set(0);
+        jdbcTemplate.query(SELECT, this::apply);
+        logger.info("Loaded {} geofence subscriptions in {} ms, skipped {}", subscriptions.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), skipped.get());
+    }
+
+    /**
+     * Reads the rows added or removed since the last load or reload, e.g. by other instances.
+     */
+    @Scheduled(fixedDelayString = "${notification.geofence.reload-interval-ms:30000}",
+            initialDelayString = "${notification.geofence.reload-interval-ms:30000}")
+    public void reload() {
+        int before = subscriptions.size();
+        try {
+            jdbcTemplate.query(SELECT + " WHERE updated_at > ?", this::apply,
+                    new Timestamp(lastUpdatedAt - RELOAD_OVERLAP_MS));
+        } catch (DataAccessException e) {
+            logger.warn("Failed to reload geofence subscriptions: {}", e.getMessage());
+            return;
+        }
+        if (subscriptions.size() != before) {
+            logger.info("Reloaded geofence subscriptions, now {}", subscriptions.size());
+        }
+    }
+
+    /**
+     * Subscribes the token to alerts within {@code radiusKm} of the given center. Returns
+     * {@code null} if the token has as many subscriptions as it may. Throws
+     * {@link IllegalArgumentException} if the token is not registered or the area is invalid.
+     */
+    public GeofenceSubscription subscribe(String token, String label, double latitude, double longitude, double radiusKm) {
+        if (!tokenRegistry.contains(token)) {
+            throw new IllegalArgumentException("Token is not registered");
+        }
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Invalid location");
+        }
+        if (!(radiusKm >= MIN_RADIUS_KM && radiusKm <= maxRadiusKm)) {
+            throw new IllegalArgumentException("Radius must be between " + MIN_RADIUS_KM + " and " + maxRadiusKm + " km");
+        }
+        if (label != null && label.length() > MAX_LABEL_LENGTH) {
+            throw new IllegalArgumentException("Label must not exceed " + MAX_LABEL_LENGTH + " characters");
+        }
+        // Before inserting, so a circle the index refuses never leaves a row behind
+        index.checkIndexable(latitude, longitude, radiusKm);
+        // Serialized per token, so concurrent requests cannot exceed the limit together
+        Set<Long> ids = idsByToken.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet());
+        synchronized (ids) {
+            if (ids.size() >= maxPerToken) {
+                return null;
+            }
+            Long id = jdbcTemplate.queryForObject("INSERT INTO geofence_subscription " +
+                            "(token, label, latitude, longitude, radius_km, created_at) VALUES (?, ?, ?, ?, ?, ?) RETURNING id",
+                    Long.class, token, label, latitude, longitude, radiusKm, new Timestamp(System.currentTimeMillis()));
+            GeofenceSubscription subscription = new GeofenceSubscription(id, token, label, latitude, longitude, radiusKm);
+            index(subscription);
+            logger.info("Added geofence subscription {} of {} km", id, radiusKm);
+            return subscription;
+        }
+    }
+
+    /**
+     * Removes the subscription if it belongs to the token. Returns whether it did. One made on
+     * another instance and not reloaded here yet is removed as well.
+     */
+    public boolean unsubscribe(String token, long id) {
+        GeofenceSubscription subscription = subscriptions.get(id);
+        if (subscription != null && !subscription.getToken().equals(token)) {
+            return false;
+        }
+        int removed = jdbcTemplate.update(REMOVE + " WHERE id = ? AND token = ? AND removed_at IS NULL", id, token);
+        if (subscription == null && removed == 0) {
+            return false;
+        }
+        if (subscription != null) {
+            unindex(subscription);
+        }
+        logger.info("Removed geofence subscription {}", id);
+        return true;
+    }
+
+    public List<GeofenceSubscription> subscriptionsOf(String token) {
+        List<GeofenceSubscription> result = new ArrayList<>();
+        for (Long id : idsByToken.getOrDefault(token, Set.of())) {
+            GeofenceSubscription subscription = subscriptions.get(id);
+            if (subscription != null) {
+                result.add(subscription);
+            }
+        }
+        result.sort(Comparator.comparingLong(GeofenceSubscription::getId));
+        return result;
+    }
+
+    public boolean hasSubscriptions(String token) {
+        Set<Long> ids = idsByToken.get(token);
+        return ids != null && !ids.isEmpty();
+    }
+
+    public int size() {
+        return subscriptions.size();
+    }
+
+    /**
+     * The sendable tokens with a subscription containing the point, each once, however many of
+     * its areas contain it.
+     */
+    public Set<String> tokensContaining(double latitude, double longitude) {
+        long started = System.nanoTime();
+        Set<String> tokens = new LinkedHashSet<>();
+        index.forEachContaining(latitude, longitude, id -> {
+            GeofenceSubscription subscription = subscriptions.get(id);
+            if (subscription != null && tokenRegistry.isSendable(subscription.getToken())) {
+                tokens.add(subscription.getToken());
+            }
+        });
+        matchTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return tokens;
+    }
+
+    /**
+     * Removes the subscriptions of tokens that are no longer registered, e.g. because FCM
+     * declared them dead, and deletes the rows removed more than a day ago. Runs after the
+     * token registry has been loaded.
+     */
+    @Scheduled(fixedDelayString = "${notification.geofence.prune-interval-ms:3600000}",
+            initialDelayString = "${notification.geofence.prune-interval-ms:3600000}")
+    public void pruneOrphans() {
+        int pruned = 0;
+        for (String token : idsByToken.keySet()) {
+            if (!tokenRegistry.contains(token)) {
+                for (GeofenceSubscription subscription : subscriptionsOf(token)) {
+                    unindex(subscription);
+                    pruned++;
+                }
+                jdbcTemplate.update(REMOVE + " WHERE token = ? AND removed_at IS NULL", token);
+                idsByToken.remove(token);
+            }
+        }
+        if (pruned > 0) {
+            logger.info("Pruned {} geofence subscriptions of removed tokens", pruned);
+        }
+        jdbcTemplate.update("DELETE FROM geofence_subscription WHERE removed_at < ?",
+                new Timestamp(System.currentTimeMillis() - REMOVED_RETENTION_MS));
+    }
+
+    private void apply(ResultSet rs) throws SQLException {
+        long id = rs.getLong(1);
+        Timestamp updatedAt = rs.getTimestamp(8);
+        if (updatedAt != null && updatedAt.getTime() > lastUpdatedAt) {
+            lastUpdatedAt = updatedAt.getTime();
+        }
+        GeofenceSubscription known = subscriptions.get(id);
+        if (rs.getTimestamp(7) != null) {
+            if (known != null) {
+                unindex(known);
+            }
+            return;
+        }
+        if (known != null) {
+            return;
+        }
+        GeofenceSubscription subscription = new GeofenceSubscription(id, rs.getString(2),
+                rs.getString(3), rs.getDouble(4), rs.getDouble(5), rs.getDouble(6));
+        try {
+            index(subscription);
+        } catch (IllegalArgumentException e) {
+            // E.g. stored before the precision was raised; one bad row must not stop the startup
+            skipped.incrementAndGet();
+            logger.warn("Skipped geofence subscription {}: {}", id, e.getMessage());
+        }
+    }
+
+    private void index(GeofenceSubscription subscription) {
+        index.put(subscription.getId(), subscription.getLatitude(), subscription.getLongitude(), subscription.getRadiusKm());
+        subscriptions.put(subscription.getId(), subscription);
+        idsByToken.computeIfAbsent(subscription.getToken(), key -> ConcurrentHashMap.newKeySet()).add(subscription.getId());
+    }
+
+    private void unindex(GeofenceSubscription subscription) {
+        index.remove(subscription.getId());
+        subscriptions.remove(subscription.getId());
+        Set<Long> ids = idsByToken.get(subscription.getToken());
+        if (ids != null) {
+            ids.remove(subscription.getId());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.missing_person_alert.firebase;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+
+import java.util.List;
+
+/**
+ * Outcome of one multicast request: how many tokens it addressed and which of them failed.
+ */
+public class MulticastResult {
+
+    private final int tokenCount;
+    private final List<Failure> failures;
+
+    public MulticastResult(int tokenCount, List<Failure> failures) {
+        this.tokenCount = tokenCount;
+        this.failures = List.copyOf(failures);
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public int getSuccessCount() {
+        return tokenCount - failures.size();
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * A token the message could not be delivered to. {@code errorCode} is {@code null} if FCM
+     * did not give one.
+     */
+    public static class Failure {
+        private final String token;
+        private final MessagingErrorCode errorCode;
+        private final String message;
+
+        public Failure(String token, MessagingErrorCode errorCode, String message) {
+            this.token = token;
+            this.errorCode = errorCode;
+            this.message = message;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public MessagingErrorCode getErrorCode() {
+            return errorCode;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
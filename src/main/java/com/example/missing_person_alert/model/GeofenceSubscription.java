@@ -0,0 +1,54 @@
+package com.example.missing_person_alert.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * An area a device wants to hear about: every alert last seen within {@code radiusKm} of the
+ * center is sent to the subscription's token. {@code label} is the user's own name for it, such
+ * as "Home" or "School".
+ */
+public class GeofenceSubscription {
+    private final long id;
+    private final String token;
+    private final String label;
+    private final double latitude;
+    private final double longitude;
+    private final double radiusKm;
+
+    public GeofenceSubscription(long id, String token, String label, double latitude, double longitude, double radiusKm) {
+        this.id = id;
+        this.token = token;
+        this.label = label;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radiusKm = radiusKm;
+    }
+
+    // Getters
+
+    public long getId() {
+        return id;
+    }
+
+    // The client knows its own token; it is not echoed back
+    @JsonIgnore
+    public String getToken() {
+        return token;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getRadiusKm() {
+        return radiusKm;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.missing_person_alert.model;
+
+import com.example.missing_person_alert.entity.Person;
+
+import java.util.List;
+
+/**
+ * Delta of active alerts since a change cursor. When {@code reset} is set the client's cursor
+ * could not be honored: it should drop its local copy, reload the list, and continue from
+ * {@code cursor}. Changes are delivered at least once, so they should be applied idempotently.
+ */
+public class PersonChanges {
+    private String cursor;
+    private boolean reset;
+    private boolean hasMore;
+    private List<Person> added;
+    private List<Long> expired;
+
+    public PersonChanges(String cursor, boolean reset, boolean hasMore, List<Person> added, List<Long> expired) {
+        this.cursor = cursor;
+        this.reset = reset;
+        this.hasMore = hasMore;
+        this.added = added;
+        this.expired = expired;
+    }
+
+    // Getters and setters
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public List<Person> getAdded() {
+        return added;
+    }
+
+    public void setAdded(List<Person> added) {
+        this.added = added;
+    }
+
+    public List<Long> getExpired() {
+        return expired;
+    }
+
+    public void setExpired(List<Long> expired) {
+        this.expired = expired;
+    }
+}
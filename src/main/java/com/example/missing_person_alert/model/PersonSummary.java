@@ -0,0 +1,72 @@
+package com.example.missing_person_alert.model;
+
+import com.example.missing_person_alert.entity.Person;
+
+import java.time.LocalDateTime;
+
+/**
+ * The fields the alert lists actually show, fetched as a read-only projection instead of a managed
+ * {@link Person} entity.
+ */
+public class PersonSummary {
+    private final Long id;
+    private final String fullName;
+    private final String imagePath;
+    private final String blurHash;
+    private final LocalDateTime publishedAt;
+    private final Double lastSeenLatitude;
+    private final Double lastSeenLongitude;
+    private final String locationName;
+
+    public PersonSummary(Long id, String fullName, String imagePath, String blurHash, LocalDateTime publishedAt,
+                         Double lastSeenLatitude, Double lastSeenLongitude, String locationName) {
+        this.id = id;
+        this.fullName = fullName;
+        this.imagePath = imagePath;
+        this.blurHash = blurHash;
+        this.publishedAt = publishedAt;
+        this.lastSeenLatitude = lastSeenLatitude;
+        this.lastSeenLongitude = lastSeenLongitude;
+        this.locationName = locationName;
+    }
+
+    public static PersonSummary from(Person person) {
+        return new PersonSummary(person.getId(), person.getFullName(), person.getImagePath(),
+                person.getBlurHash(), person.getPublishedAt(), person.getLastSeenLatitude(), person.getLastSeenLongitude(),
+                person.getLocationName());
+    }
+
+    // Getters
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getImagePath() {
+        return imagePath;
+    }
+
+    public String getBlurHash() {
+        return blurHash;
+    }
+
+    public LocalDateTime getPublishedAt() {
+        return publishedAt;
+    }
+
+    public Double getLastSeenLatitude() {
+        return lastSeenLatitude;
+    }
+
+    public Double getLastSeenLongitude() {
+        return lastSeenLongitude;
+    }
+
+    public String getLocationName() {
+        return locationName;
+    }
+}
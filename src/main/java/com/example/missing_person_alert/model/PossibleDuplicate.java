@@ -0,0 +1,28 @@
+package com.example.missing_person_alert.model;
+
+import com.example.missing_person_alert.entity.Person;
+
+/**
+ * An active alert whose photo looks like that of a newly published one. {@code distance} is the
+ * number of differing perceptual-hash bits: 0 is the same picture, a few bits a re-encoded,
+ * resized or lightly edited copy.
+ */
+public class PossibleDuplicate {
+    private final PersonSummary person;
+    private final int distance;
+
+    public PossibleDuplicate(Person person, int distance) {
+        this.person = PersonSummary.from(person);
+        this.distance = distance;
+    }
+
+    // Getters
+
+    public PersonSummary getPerson() {
+        return person;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.missing_person_alert.model;
+
+import com.example.missing_person_alert.entity.Person;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+import java.util.List;
+
+/**
+ * Answer to a publish: the saved alert, with its fields at the top level as before, plus active
+ * alerts that appear to show the same photo so the officer can check for a duplicate report, and
+ * where to follow the rest of the publish (images, geocoding, notifications).
+ */
+public class PublishResponse {
+    @JsonUnwrapped
+    private final Person person;
+    private final List<PossibleDuplicate> possibleDuplicates;
+    private final String statusUrl;
+
+    public PublishResponse(Person person, List<PossibleDuplicate> possibleDuplicates, String statusUrl) {
+        this.person = person;
+        this.possibleDuplicates = possibleDuplicates;
+        this.statusUrl = statusUrl;
+    }
+
+    // Getters
+
+    public Person getPerson() {
+        return person;
+    }
+
+    public List<PossibleDuplicate> getPossibleDuplicates() {
+        return possibleDuplicates;
+    }
+
+    public String getStatusUrl() {
+        return statusUrl;
+    }
+}
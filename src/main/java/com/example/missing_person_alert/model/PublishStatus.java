@@ -0,0 +1,70 @@
+package com.example.missing_person_alert.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Progress of one publish through the pipeline, as reported by the status URL returned with
+ * {@code 202 Accepted}. The alert itself is already saved; this tracks the work that follows.
+ * Updated by the pipeline's threads while being read by requests, hence synchronized.
+ */
+public class PublishStatus {
+
+    public enum State {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+
+    private final Long personId;
+    private State state = State.PENDING;
+    // Stages after persisting run side by side
+    private final Set<String> runningStages = new LinkedHashSet<>();
+    private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+    private final List<String> errors = new ArrayList<>();
+
+    public PublishStatus(Long personId) {
+        this.personId = personId;
+    }
+
+    public synchronized void stageStarted(String stage) {
+        state = State.RUNNING;
+        runningStages.add(stage);
+    }
+
+    public synchronized void stageFinished(String stage, long millis, String error) {
+        runningStages.remove(stage);
+        stageMillis.put(stage, millis);
+        if (error != null) {
+            errors.add(stage + ": " + error);
+        }
+    }
+
+    public synchronized void finish(boolean succeeded) {
+        state = succeeded ? State.COMPLETED : State.FAILED;
+    }
+
+    // Getters
+
+    public Long getPersonId() {
+        return personId;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized List<String> getRunningStages() {
+        return new ArrayList<>(runningStages);
+    }
+
+    public synchronized Map<String, Long> getStageMillis() {
+        return new LinkedHashMap<>(stageMillis);
+    }
+
+    public synchronized List<String> getErrors() {
+        return new ArrayList<>(errors);
+    }
+}
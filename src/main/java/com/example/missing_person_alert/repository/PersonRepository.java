@@ -1,14 +1,89 @@
 package com.example.missing_person_alert.repository;
 
 import com.example.missing_person_alert.entity.Person;
+import com.example.missing_person_alert.model.PersonSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface PersonRepository extends JpaRepository<Person, Long> {
     @Query("SELECT p FROM Person p WHERE p.expiresAt > CURRENT_TIMESTAMP")
     List<Person> findNonExpired();
-}
\ No newline at end of file
+
+    @Query(value = "SELECT p FROM Person p WHERE p.expiresAt > CURRENT_TIMESTAMP",
+            countQuery = "SELECT COUNT(p) FROM Person p WHERE p.expiresAt > CURRENT_TIMESTAMP")
+    Page<Person> findNonExpired(Pageable pageable);
+
+    // Keyset pagination on (publishedAt, id): only the requested slice is read, however deep the cursor is
+    @Query("SELECT p FROM Person p WHERE p.expiresAt > CURRENT_TIMESTAMP " +
+            "ORDER BY p.publishedAt DESC, p.id DESC")
+    List<Person> findNonExpiredNewest(Pageable pageable);
+
+    @Query("SELECT p FROM Person p WHERE p.expiresAt > CURRENT_TIMESTAMP " +
+            "AND (p.publishedAt < :publishedAt OR (p.publishedAt = :publishedAt AND p.id < :id)) " +
+            "ORDER BY p.publishedAt DESC, p.id DESC")
+    List<Person> findNonExpiredBefore(@Param("publishedAt") LocalDateTime publishedAt,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+
+    // Constructor projection: rows become plain DTOs, with no persistence context entries or dirty-checking
+    // snapshots, and are fetched from the cursor in chunks so the stream runs in constant memory
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.example.missing_person_alert.model.PersonSummary(p.id, p.fullName, p.imagePath, " +
+            "p.blurHash, p.publishedAt, p.lastSeenLatitude, p.lastSeenLongitude, p.locationName) FROM Person p " +
+            "WHERE p.expiresAt > CURRENT_TIMESTAMP ORDER BY p.publishedAt DESC, p.id DESC")
+    Stream<PersonSummary> streamNonExpiredSummaries();
+
+    // Bounding-box prefilter on the indexed coordinates, then an exact haversine check, nearest first
+    @Query(value = "SELECT p.* FROM person p " +
+            "CROSS JOIN LATERAL (SELECT 2 * 6371.0 * asin(least(1.0, sqrt(" +
+            "power(sin(radians(p.last_seen_latitude - :latitude) / 2), 2) + " +
+            "cos(radians(:latitude)) * cos(radians(p.last_seen_latitude)) * " +
+            "power(sin(radians(p.last_seen_longitude - :longitude) / 2), 2)))) AS distance_km) d " +
+            "WHERE p.expires_at > CURRENT_TIMESTAMP " +
+            "AND p.last_seen_latitude BETWEEN :minLatitude AND :maxLatitude " +
+            "AND p.last_seen_longitude BETWEEN :minLongitude AND :maxLongitude " +
+            "AND d.distance_km <= :radiusKm " +
+            "ORDER BY d.distance_km, p.id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Person> findNonExpiredWithinRadius(@Param("latitude") double latitude,
+                                            @Param("longitude") double longitude,
+                                            @Param("radiusKm") double radiusKm,
+                                            @Param("minLatitude") double minLatitude,
+                                            @Param("maxLatitude") double maxLatitude,
+                                            @Param("minLongitude") double minLongitude,
+                                            @Param("maxLongitude") double maxLongitude,
+                                            @Param("limit") int limit,
+                                            @Param("offset") long offset);
+
+    // Filled in after the insert by the publish pipeline, without reloading the row
+    @Transactional
+    @Modifying
+    @Query("UPDATE Person p SET p.locationName = :locationName WHERE p.id = :id")
+    int updateLocationName(@Param("id") Long id, @Param("locationName") String locationName);
+
+    // Alerts using a stored photo; content-addressed photos may be shared, so a photo is only deleted at zero
+    long countByImagePath(String imagePath);
+
+    // Deletes up to :limit expired rows, oldest first, in one statement and returns {id, image_path} for
+    // each. SKIP LOCKED lets overlapping purges (e.g. from several instances) split the work instead of waiting.
+    @Transactional
+    @Query(value = "DELETE FROM person WHERE id IN (" +
+            "SELECT id FROM person WHERE expires_at < CURRENT_TIMESTAMP " +
+            "ORDER BY expires_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, image_path", nativeQuery = true)
+    List<Object[]> deleteExpiredBatch(@Param("limit") int limit);
+}
@@ -0,0 +1,226 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.entity.Person;
+import com.example.missing_person_alert.model.PersonChanges;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes alert changes to connected browsers as Server-Sent Events.
+ * <p>
+ * Connections are held by the servlet container's async support, so an idle subscriber costs a
+ * socket and a small queue, not a thread. Events are queued per subscriber and written by a
+ * small shared pool; a subscriber whose queue fills up is too slow to keep up and is closed, and
+ * its browser reconnects with {@code Last-Event-ID} to pick up what it missed. Event ids are
+ * change cursors, so a resume replays exactly the changes after the last event it received. A
+ * client that missed more than fits its queue gets a single {@code reset} instead, as the replay
+ * would close it before it reached an event id and it would reconnect the same way forever.
+ */
+@Service
+public class AlertStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertStreamService.class);
+    private static final int BUFFER_CAPACITY = 64;
+    // Half the queue, leaving the rest for live events published during the replay
+    private static final int MAX_REPLAYED_EVENTS = BUFFER_CAPACITY / 2;
+    private static final int DISPATCH_THREADS = 4;
+    static final String ADDED_EVENT = "added";
+    static final String EXPIRED_EVENT = "expired";
+    static final String RESET_EVENT = "reset";
+
+    @Value("${person.stream.max-connections:20000}")
+    private int maxConnections = 20000;
+
+    @Value("${person.stream.timeout-ms:1800000}")
+    private long timeoutMs = 1800000;
+
+    private final PersonService personService;
+    private final Map<Long, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong nextSubscriberId = new AtomicLong();
+    private final ExecutorService dispatcher;
+
+    public AlertStreamService(PersonService personService) {
+        this.personService = personService;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(DISPATCH_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "alert-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        personService.addChangeListener(this::broadcast);
+    }
+
+    /**
+     * Opens a stream, first replaying the changes after {@code lastEventId} when the client is
+     * resuming. Returns {@code null} when the connection limit has been reached.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (subscribers.size() >= maxConnections) {
+            logger.warn("Rejecting alert stream subscriber: {} connections open", subscribers.size());
+            return null;
+        }
+        long id = nextSubscriberId.incrementAndGet();
+        SseEmitter emitter = createEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(id, emitter);
+        emitter.onCompletion(() -> subscribers.remove(id));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(error -> close(subscriber));
+        // Register before reading the replay so nothing published in between is lost; at worst
+        // an event arrives twice, which clients already tolerate
+        subscribers.put(id, subscriber);
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            replay(subscriber, lastEventId);
+        }
+        logger.debug("Alert stream subscriber {} connected, {} open", id, subscribers.size());
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Scheduled(fixedRateString = "${person.stream.heartbeat-ms:15000}")
+    public void sendHeartbeats() {
+        // Keeps proxies from closing idle connections and surfaces dead ones through a failed write
+        for (Subscriber subscriber : subscribers.values()) {
+            enqueue(subscriber, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.values().forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    protected SseEmitter createEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    private void broadcast(String cursor, PersonChangeLog.Change change) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers.values()) {
+            enqueue(subscriber, toEvent(cursor, change.getType(), change.getPersonId(), change.getPerson()));
+        }
+    }
+
+    private void replay(Subscriber subscriber, String lastEventId) {
+        List<SseEmitter.SseEventBuilder> events = new ArrayList<>();
+        String cursor = lastEventId;
+        PersonChanges changes;
+        do {
+            changes = personService.getChangesSince(cursor);
+            cursor = changes.getCursor();
+            if (changes.isReset()) {
+                events.add(SseEmitter.event().id(cursor).name(RESET_EVENT).data(cursor));
+                break;
+            }
+            for (Person person : changes.getAdded()) {
+                events.add(toEvent(null, PersonChangeLog.Type.ADDED, person.getId(), person));
+            }
+            for (Long personId : changes.getExpired()) {
+                events.add(toEvent(null, PersonChangeLog.Type.EXPIRED, personId, null));
+            }
+            if (events.size() > MAX_REPLAYED_EVENTS) {
+                logger.info("Alert stream subscriber {} missed more than {} changes, resetting it",
+                        subscriber.id, MAX_REPLAYED_EVENTS);
+                String latest = personService.getChangesSince(null).getCursor();
+                enqueue(subscriber, SseEmitter.event().id(latest).name(RESET_EVENT).data(latest));
+                return;
+            }
+        } while (changes.isHasMore());
+        if (!events.isEmpty() && !changes.isReset()) {
+            // Only the last replayed event carries the cursor: a client cut off mid-replay resumes from the start
+            events.set(events.size() - 1, events.get(events.size() - 1).id(cursor));
+        }
+        events.forEach(event -> enqueue(subscriber, event));
+    }
+
+    private SseEmitter.SseEventBuilder toEvent(String cursor, PersonChangeLog.Type type, Long personId, Person person) {
+        SseEmitter.SseEventBuilder event = SseEmitter.event();
+        if (cursor != null) {
+            event.id(cursor);
+        }
+        return type == PersonChangeLog.Type.ADDED
+                ? event.name(ADDED_EVENT).data(person)
+                : event.name(EXPIRED_EVENT).data(personId);
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (!subscriber.queue.offer(event)) {
+            logger.info("Alert stream subscriber {} fell behind, closing it", subscriber.id);
+            close(subscriber);
+            return;
+        }
+        scheduleDrain(subscriber);
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        SseEmitter.SseEventBuilder event;
+        while ((event = subscriber.queue.poll()) != null) {
+            try {
+                subscriber.emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Alert stream subscriber {} disconnected: {}", subscriber.id, e.getMessage());
+                close(subscriber);
+                return;
+            }
+        }
+        subscriber.draining.set(false);
+        // An event may have been queued after the last poll but before the flag was cleared
+        if (!subscriber.queue.isEmpty()) {
+            scheduleDrain(subscriber);
+        }
+    }
+
+    private void close(Subscriber subscriber) {
+        if (subscribers.remove(subscriber.id) != null) {
+            subscriber.queue.clear();
+            subscriber.emitter.complete();
+        }
+    }
+
+    private static final class Subscriber {
+        private final long id;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(BUFFER_CAPACITY);
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(long id, SseEmitter emitter) {
+            this.id = id;
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.missing_person_alert.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Turns last-seen coordinates into a readable place name through Nominatim (OpenStreetMap). The
+ * public instance allows about one request per second, so lookups are made once per alert by the
+ * publish pipeline and stored, not repeated on every page view. Requests from all callers are
+ * spaced at least {@value #MIN_INTERVAL_MILLIS} ms apart; a lookup that would have to wait longer
+ * than {@value #MAX_WAIT_MILLIS} ms for its turn, or that Nominatim answers slowly, gets the
+ * fallback text instead of holding its caller.
+ */
+@Service
+public class GeocodingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeocodingService.class);
+    private static final String USER_AGENT = "MissingPersonAlertSystem/1.0 (contact: mamocool3@gmail.com)";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+    private static final long MIN_INTERVAL_MILLIS = 1000;
+    private static final long MAX_WAIT_MILLIS = 3000;
+    // How long to leave Nominatim alone after it answered 429
+    private static final long BACKOFF_MILLIS = 10000;
+
+    private final RestTemplate restTemplate;
+    // The earliest time the next request may be sent
+    private long nextSlot;
+
+    public GeocodingService() {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        requestFactory.setReadTimeout(READ_TIMEOUT_MILLIS);
+        this.restTemplate = new RestTemplate(requestFactory);
+        // Nominatim's usage policy requires an identifying User-Agent
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            request.getHeaders().set("User-Agent", USER_AGENT);
+            return execution.execute(request, body);
+        });
+    }
+
+    /**
+     * The place name for the given coordinates, or {@code null} if there are no coordinates or the
+     * name cannot be looked up right now (Nominatim busy, rate-limited or failing). A {@code null}
+     * is not an answer and must not be stored in place of a name; it is worth asking again later.
+     */
+    public String getLocationName(Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) {
+            logger.debug("No coordinates provided: lat={}, lon={}", latitude, longitude);
+            return null;
+        }
+        if (latitude < 47.3 || latitude > 55.1 || longitude < 5.9 || longitude > 15.0) {
+            logger.warn("Coordinates outside Germany: lat={}, lon={}", latitude, longitude);
+            return "Coordinates outside Germany";
+        }
+        if (!awaitSlot()) {
+            logger.warn("Nominatim busy, not looking up lat={}, lon={}", latitude, longitude);
+            return null;
+        }
+        try {
+            String url = String.format("https://nominatim.openstreetmap.org/reverse?format=json&lat=%f&lon=%f&zoom=10&addressdetails=1", latitude, longitude);
+            NominatimResponse response = restTemplate.getForObject(url, NominatimResponse.class);
+            logger.debug("Nominatim response for lat={}, lon={}: {}", latitude, longitude, response);
+            if (response != null && response.getDisplayName() != null && !response.getDisplayName().isEmpty()) {
+                String displayName = response.getDisplayName();
+                logger.info("Parsed display_name: {}", displayName);
+                String[] parts = displayName.split(", ");
+                if (parts.length >= 2) {
+                    String city = parts[0];
+                    String country = parts[parts.length - 1];
+                    String state = "";
+                    for (int i = 1; i < parts.length - 1; i++) {
+                        if (parts[i].matches(".*(Land|Bayern|Berlin|Hamburg).*")) {
+                            state = parts[i];
+                            break;
+                        }
+                    }
+                    if (!state.isEmpty()) {
+                        return String.format("%s, %s, %s", city, state, country);
+                    }
+                    return String.format("%s, %s", city, country);
+                }
+                return displayName;
+            }
+            logger.warn("No valid display_name in response for lat={}, lon={}", latitude, longitude);
+        } catch (HttpClientErrorException.TooManyRequests e) {
+            logger.error("Rate limit hit for lat={}, lon={}, backing off {}ms", latitude, longitude, BACKOFF_MILLIS);
+            backOff();
+        } catch (Exception e) {
+            logger.error("Failed to fetch location name for lat={}, lon={}: {}", latitude, longitude, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Takes the next request slot and waits for it. Returns false, without taking a slot, if the
+     * wait would exceed {@value #MAX_WAIT_MILLIS} ms or is interrupted.
+     */
+    private boolean awaitSlot() {
+        long wait;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long slot = Math.max(now, nextSlot);
+            wait = slot - now;
+            if (wait > MAX_WAIT_MILLIS) {
+                return false;
+            }
+            nextSlot = slot + MIN_INTERVAL_MILLIS;
+        }
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void backOff() {
+        nextSlot = Math.max(nextSlot, System.currentTimeMillis() + BACKOFF_MILLIS);
+    }
+
+    private static class NominatimResponse {
+        @JsonProperty("display_name")
+        private String displayName;
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public void setDisplayName(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return "NominatimResponse{displayName='" + displayName + "'}";
+        }
+    }
+}
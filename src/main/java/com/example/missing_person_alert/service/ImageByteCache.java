@@ -0,0 +1,158 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.util.FrequencySketch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the bytes of the most requested photos in direct buffers, outside the Java heap, so a
+ * viral alert is served from memory instead of opening the same file hundreds of times a second
+ * and without adding to GC pressure. Bounded by total size; files above a per-entry limit are
+ * never cached and keep going through sendfile.
+ * <p>
+ * Admission is TinyLFU: when the cache is full, a newcomer only gets in if it has been requested
+ * more often recently than every entry it would push out (least recently used first). A one-off
+ * request for an old photo therefore cannot flush the photos of a running alert. Entries are
+ * dropped when {@link ImageStore} deletes their file, i.e. when the last alert using the photo
+ * expires.
+ * <p>
+ * Direct buffers count against {@code -XX:MaxDirectMemorySize} (by default the maximum heap size),
+ * which must leave room for {@code person.image-cache.max-bytes}.
+ */
+@Service
+public class ImageByteCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageByteCache.class);
+    // Sizes the frequency sketch; list and thumbnail derivatives are mostly well below this
+    private static final long TYPICAL_ENTRY_BYTES = 32 * 1024;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final FrequencySketch sketch;
+    // Access order: iteration starts at the least recently used entry
+    private final LinkedHashMap<Path, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes = 0;
+    private long invalidations = 0;
+
+    private final Counter hitCounter = Metrics.counter("person.image.cache.requests", "result", "hit");
+    private final Counter missCounter = Metrics.counter("person.image.cache.requests", "result", "miss");
+    private final Counter evictionCounter = Metrics.counter("person.image.cache.evictions");
+    private final Counter rejectionCounter = Metrics.counter("person.image.cache.rejections");
+
+    public ImageByteCache(ImageStore imageStore,
+                          @Value("${person.image-cache.max-bytes:67108864}") long maxBytes,
+                          @Value("${person.image-cache.max-entry-bytes:1048576}") long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1, maxBytes / TYPICAL_ENTRY_BYTES)));
+        Metrics.gauge("person.image.cache.bytes", this, ImageByteCache::getUsedBytes);
+        imageStore.addDeletionListener(this::invalidate);
+    }
+
+    /**
+     * The cached content of {@code file}, loading it if it is small enough and admitted, or
+     * {@code null} if it must be served from disk. The returned buffer is a read-only view
+     * positioned at the start of the file.
+     */
+    public ByteBuffer getOrLoad(Path file, long size) {
+        long invalidationsBeforeLoad;
+        synchronized (this) {
+            sketch.increment(file);
+            ByteBuffer cached = entries.get(file);
+            if (cached != null) {
+                hitCounter.increment();
+                return cached.asReadOnlyBuffer();
+            }
+            missCounter.increment();
+            if (size > maxEntryBytes || victimsFor(file, size) == null) {
+                return null;
+            }
+            invalidationsBeforeLoad = invalidations;
+        }
+        // Read outside the lock so hits are never stuck behind disk I/O
+        ByteBuffer loaded = read(file, size);
+        if (loaded == null) {
+            return null;
+        }
+        synchronized (this) {
+            ByteBuffer raced = entries.get(file);
+            if (raced != null) {
+                return raced.asReadOnlyBuffer();
+            }
+            // Re-checked: the cache may have changed, or files been deleted, while the file was being read
+            List<Path> victims = invalidations == invalidationsBeforeLoad ? victimsFor(file, size) : null;
+            if (victims == null) {
+                return loaded.asReadOnlyBuffer();
+            }
+            for (Path victim : victims) {
+                usedBytes -= entries.remove(victim).capacity();
+                evictionCounter.increment();
+            }
+            entries.put(file, loaded);
+            usedBytes += size;
+        }
+        return loaded.asReadOnlyBuffer();
+    }
+
+    public synchronized void invalidate(Path file) {
+        invalidations++;
+        ByteBuffer removed = entries.remove(file);
+        if (removed != null) {
+            usedBytes -= removed.capacity();
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * The entries to evict to make room for {@code file}, or {@code null} if TinyLFU rejects it.
+     */
+    private List<Path> victimsFor(Path file, long size) {
+        List<Path> victims = new ArrayList<>();
+        long free = maxBytes - usedBytes;
+        int candidateFrequency = sketch.frequency(file);
+        for (Map.Entry<Path, ByteBuffer> entry : entries.entrySet()) {
+            if (free >= size) {
+                break;
+            }
+            if (sketch.frequency(entry.getKey()) >= candidateFrequency) {
+                rejectionCounter.increment();
+                return null;
+            }
+            victims.add(entry.getKey());
+            free += entry.getValue().capacity();
+        }
+        return free >= size ? victims : null;
+    }
+
+    private static ByteBuffer read(Path file, long size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(file)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    logger.warn("Photo {} is shorter than {} bytes, not caching it", file, size);
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not cache photo {}: {}", file, e.getMessage());
+            return null;
+        }
+        return buffer.flip();
+    }
+}
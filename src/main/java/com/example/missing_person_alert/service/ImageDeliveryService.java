@@ -0,0 +1,235 @@
+package com.example.missing_person_alert.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes stored photos to the response without copying them through the heap. Hot photos come
+ * from the off-heap {@link ImageByteCache}; other large files are handed to the container's
+ * sendfile support (Tomcat hands the file descriptor to the kernel), and the rest are transferred
+ * straight from the file channel to the response. Content type, size and
+ * validators are computed once per file and cached, since stored photos never change in place.
+ * <p>
+ * Handles {@code If-None-Match} / {@code If-Modified-Since} (304), a single byte {@code Range}
+ * (206, 416) guarded by {@code If-Range}, and {@code HEAD}. Requests for several ranges get the
+ * whole file, which the HTTP spec allows.
+ */
+@Service
+public class ImageDeliveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDeliveryService.class);
+    private static final int METADATA_CACHE_MAX_ENTRIES = 10_000;
+    // Below this, sendfile's hand-off to the poller costs more than it saves; Tomcat's DefaultServlet uses the same threshold
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ImageByteCache imageByteCache;
+    private final Map<Path, Metadata> metadataCache = new ConcurrentHashMap<>();
+
+    public ImageDeliveryService(ImageStore imageStore, ImageByteCache imageByteCache) {
+        this.imageByteCache = imageByteCache;
+        imageStore.addDeletionListener(this::evict);
+    }
+
+    /**
+     * Serves {@code file} with the given cache policy. {@code etag} is the quoted entity tag, or
+     * {@code null} to derive one from the file's size and modification time. Returns {@code false},
+     * without touching the response, if the file does not exist.
+     */
+    public boolean serve(Path file, String etag, CacheControl cacheControl,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Metadata metadata = metadata(file, etag);
+        if (metadata == null) {
+            return false;
+        }
+        response.setHeader(HttpHeaders.ETAG, metadata.etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, metadata.lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (notModified(request, metadata)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+
+        long start = 0;
+        long end = metadata.size;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && "GET".equals(request.getMethod()) && rangeStillValid(request, metadata)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            if (ranges.isEmpty() || ranges.stream().anyMatch(candidate -> candidate.getRangeStart(metadata.size) >= metadata.size)) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + metadata.size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return true;
+            }
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(metadata.size);
+                end = ranges.get(0).getRangeEnd(metadata.size) + 1;
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + metadata.size);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            }
+        }
+
+        response.setContentType(metadata.contentType);
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        ByteBuffer cached = imageByteCache.getOrLoad(file, metadata.size);
+        if (cached != null) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            cached.position((int) start).limit((int) end);
+            while (cached.hasRemaining()) {
+                out.write(cached);
+            }
+            return true;
+        }
+        if (end - start >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+        } catch (NoSuchFileException e) {
+            // Deleted since its metadata was cached; only possible before anything was written
+            evict(file);
+            response.reset();
+            return false;
+        }
+        return true;
+    }
+
+    public void evict(Path file) {
+        metadataCache.remove(file);
+    }
+
+    private Metadata metadata(Path file, String etag) throws IOException {
+        Metadata cached = metadataCache.get(file);
+        if (cached != null) {
+            return cached;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+        // HTTP dates have whole seconds; truncating keeps If-Modified-Since comparisons exact
+        long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+        Metadata metadata = new Metadata(contentTypeOf(file), attributes.size(), lastModified,
+                etag != null ? etag : "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(lastModified) + "\"");
+        if (metadataCache.size() >= METADATA_CACHE_MAX_ENTRIES) {
+            metadataCache.clear();
+        }
+        metadataCache.put(file, metadata);
+        return metadata;
+    }
+
+    private static String contentTypeOf(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        String probed = Files.probeContentType(file);
+        return probed != null ? probed : "application/octet-stream";
+    }
+
+    private static boolean notModified(HttpServletRequest request, Metadata metadata) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // Weak comparison, as required for If-None-Match
+            String etag = stripWeak(metadata.etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || stripWeak(tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && metadata.lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * Whether a {@code Range} may be honoured: without {@code If-Range}, or when it still names
+     * this representation. A client resuming a download of a file that changed gets it whole.
+     */
+    private static boolean rangeStillValid(HttpServletRequest request, Metadata metadata) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Strong comparison: a weak tag never matches
+            return ifRange.equals(metadata.etag);
+        }
+        return dateHeader(request, HttpHeaders.IF_RANGE) == metadata.lastModified;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            logger.debug("Ignoring malformed {} header: {}", name, request.getHeader(name));
+            return -1;
+        }
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static final class Metadata {
+        private final String contentType;
+        private final long size;
+        private final long lastModified;
+        private final String etag;
+
+        private Metadata(String contentType, long size, long lastModified, String etag) {
+            this.contentType = contentType;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.util.ImageScaling;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders downscaled JPEG copies of uploaded photos in the background, so lists and phones can
+ * fetch a few dozen kilobytes instead of the multi-megabyte original. Derivatives are stored next
+ * to the original as {@code <original>.<size>.jpg}, so they are shared and deleted with it. Work
+ * runs on a small, bounded pool: when it is saturated, new work is dropped and the original keeps
+ * being served until the derivative is requested again.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+    private static final int WORKER_THREADS = 2;
+    private static final int QUEUE_CAPACITY = 200;
+    private static final float JPEG_QUALITY = 0.8f;
+
+    public enum Size {
+        THUMBNAIL("thumb", 160),
+        LIST("list", 480),
+        DETAIL("detail", 1080);
+
+        private final String key;
+        private final int maxEdge;
+
+        Size(String key, int maxEdge) {
+            this.key = key;
+            this.maxEdge = maxEdge;
+        }
+
+        public String fileNameFor(String original) {
+            return original + "." + key + ".jpg";
+        }
+
+        public int getMaxEdge() {
+            return maxEdge;
+        }
+
+        /**
+         * The size named by a request parameter such as {@code thumb}, or {@code null} if there
+         * is no such size.
+         */
+        public static Size fromKey(String key) {
+            for (Size size : values()) {
+                if (size.key.equals(key.toLowerCase(Locale.ROOT))) {
+                    return size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ImageStore imageStore;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public ImageDerivativeService(ImageStore imageStore) {
+        this.imageStore = imageStore;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues rendering of every size for the given upload. Returns {@code false} if the pool is
+     * saturated and the work was dropped.
+     */
+    public boolean generate(String filename) {
+        if (!inFlight.add(filename)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generateNow(filename);
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Failed to render derivatives of {}: {}", filename, e.getMessage());
+                } finally {
+                    inFlight.remove(filename);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(filename);
+            logger.warn("Image derivative queue full, skipping {}", filename);
+            return false;
+        }
+    }
+
+    /**
+     * The stored derivative of the given upload, or {@code null} if it has not been rendered (yet).
+     */
+    public Path findDerivative(String filename, Size size) {
+        Path derivative = derivativePath(filename, size);
+        return Files.isRegularFile(derivative) ? derivative : null;
+    }
+
+    void generateNow(String filename) throws IOException {
+        Path original = imageStore.resolve(filename);
+        BufferedImage source = ImageIO.read(original.toFile());
+        if (source == null) {
+            logger.warn("Cannot decode {}, no derivatives rendered", original);
+            return;
+        }
+        long started = System.nanoTime();
+        // Largest first, each rendered from the previous one: cheaper and smoother than scaling the original every time
+        BufferedImage current = source;
+        Size[] sizes = Size.values();
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            current = ImageScaling.scaleDown(current, sizes[i].maxEdge);
+            write(current, derivativePath(filename, sizes[i]));
+        }
+        logger.info("Rendered derivatives of {} in {} ms", filename,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private Path derivativePath(String filename, Size size) {
+        Path original = imageStore.resolve(filename);
+        return original.resolveSibling(size.fileNameFor(original.getFileName().toString()));
+    }
+
+    private static void write(BufferedImage image, Path target) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), ".derivative", ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (OutputStream out = Files.newOutputStream(temp);
+                 ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                writer.setOutput(imageOut);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            // Readers only ever see a complete file
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
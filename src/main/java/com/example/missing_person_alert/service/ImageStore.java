@@ -0,0 +1,170 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.util.ImageStreamWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed photo storage. A photo is stored once under its SHA-256, as
+ * {@code ab/cd/<hash>.<ext>}, however many alerts use it; the two levels of 256 shards keep every
+ * directory small. The key {@code <hash>.<ext>} is what {@code Person.imagePath} holds. Files
+ * stored before content addressing keep their flat {@code UUID_name} keys and still resolve.
+ * <p>
+ * A blob may only be deleted when no alert references it. References are counted in the
+ * database, plus in memory for uploads that are stored but whose alert is not committed yet;
+ * both are checked under a per-key lock that storing also takes.
+ */
+@Service
+public class ImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStore.class);
+    private static final Pattern CONTENT_KEY = Pattern.compile("[0-9a-f]{64}\\.(jpg|png)");
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path root;
+    private final Map<String, Integer> pendingReferences = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final List<Consumer<Path>> deletionListeners = new CopyOnWriteArrayList<>();
+
+    public ImageStore(@Value("${upload.dir:uploads}") String uploadDir) {
+        this.root = Paths.get(uploadDir);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Where the photo with the given key lives. Only the last path segment of legacy keys is used,
+     * which also covers paths stored with an "/uploads/" prefix.
+     */
+    public Path resolve(String key) {
+        String name = Paths.get(key).getFileName().toString();
+        if (CONTENT_KEY.matcher(name).matches()) {
+            return root.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name);
+        }
+        return root.resolve(name);
+    }
+
+    /**
+     * The SHA-256 of the photo with the given key, or {@code null} for a legacy key that does not
+     * name its content.
+     */
+    public static String contentHash(String key) {
+        String name = Paths.get(key).getFileName().toString();
+        return CONTENT_KEY.matcher(name).matches() ? name.substring(0, 64) : null;
+    }
+
+    /**
+     * Registers a callback invoked with every file removed by {@link #deleteIfUnreferenced}.
+     */
+    public void addDeletionListener(Consumer<Path> listener) {
+        deletionListeners.add(listener);
+    }
+
+    /**
+     * Stores an upload as it is and returns its key; see {@link #put(InputStream, long, Transformer)}.
+     */
+    public String put(InputStream in, long maxBytes) throws IOException {
+        return put(in, maxBytes, upload -> upload);
+    }
+
+    /**
+     * Stores an upload, after passing it through {@code transformer}, and returns the key of the
+     * stored result. The key counts as referenced until {@link #release} is called, which must
+     * happen once the alert referencing it has been committed (or has failed to be).
+     */
+    public String put(InputStream in, long maxBytes, Transformer transformer) throws IOException {
+        Files.createDirectories(root);
+        ImageStreamWriter.Result upload = ImageStreamWriter.write(in, root, maxBytes);
+        ImageStreamWriter.Result written = upload;
+        try {
+            written = transformer.transform(upload);
+            String key = written.getSha256() + ("image/png".equals(written.getContentType()) ? ".png" : ".jpg");
+            Path target = resolve(key);
+            synchronized (lockFor(key)) {
+                pendingReferences.merge(key, 1, Integer::sum);
+                if (Files.exists(target)) {
+                    logger.debug("Photo {} already stored, reusing it", key);
+                } else {
+                    try {
+                        Files.createDirectories(target.getParent());
+                        Files.move(written.getPath(), target, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException e) {
+                        release(key);
+                        throw e;
+                    }
+                }
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(upload.getPath());
+            Files.deleteIfExists(written.getPath());
+        }
+    }
+
+    public void release(String key) {
+        pendingReferences.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Deletes the photo and its derivatives if neither a pending upload nor, according to
+     * {@code references}, any stored alert still uses it. Returns whether it was deleted.
+     */
+    public boolean deleteIfUnreferenced(String key, ToLongFunction<String> references) {
+        String name = Paths.get(key).getFileName().toString();
+        synchronized (lockFor(name)) {
+            if (pendingReferences.containsKey(name) || references.applyAsLong(name) > 0) {
+                return false;
+            }
+            Path blob = resolve(name);
+            if (!Files.isDirectory(blob.getParent())) {
+                return false;
+            }
+            // The blob plus every derivative rendered next to it
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(blob.getParent(), escapeGlob(name) + "*")) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                    deletionListeners.forEach(listener -> listener.accept(file));
+                }
+            } catch (IOException e) {
+                logger.warn("Could not delete photo {}: {}", blob, e.getMessage());
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Turns a freshly written upload into what gets stored, e.g. by re-encoding it. Returns the
+     * upload itself or a new temp file in the same directory.
+     */
+    @FunctionalInterface
+    public interface Transformer {
+        ImageStreamWriter.Result transform(ImageStreamWriter.Result upload) throws IOException;
+    }
+
+    private Object lockFor(String key) {
+        return locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static String escapeGlob(String name) {
+        return name.replaceAll("([\\\\*?\\[\\]{}])", "\\\\$1");
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.entity.Person;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, in-order log of alerts that became active or expired. Every change gets the next
+ * sequence number, so a client that remembers the last sequence it applied can ask for exactly
+ * what it missed. Sequences are only meaningful within one epoch (one process lifetime); once a
+ * client's position has been trimmed from the log or belongs to another epoch it must resync.
+ */
+public class PersonChangeLog {
+
+    public enum Type { ADDED, EXPIRED }
+
+    private final long epoch;
+    private final int capacity;
+    private final Deque<Change> changes = new ArrayDeque<>();
+    private final List<Consumer<Change>> listeners = new CopyOnWriteArrayList<>();
+    private long lastSequence = 0;
+
+    public PersonChangeLog(long epoch, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.epoch = epoch;
+        this.capacity = capacity;
+    }
+
+    public synchronized long append(Type type, Long personId, Person person) {
+        Change change = new Change(++lastSequence, type, personId, person);
+        changes.addLast(change);
+        if (changes.size() > capacity) {
+            changes.removeFirst();
+        }
+        // Called under the log's lock so listeners observe changes in sequence order; they must not block
+        listeners.forEach(listener -> listener.accept(change));
+        return change.sequence;
+    }
+
+    public void addListener(Consumer<Change> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Up to {@code limit} changes after {@code sequence}, oldest first, or {@code null} when the
+     * log no longer holds every change after that position.
+     */
+    public synchronized List<Change> since(long sequence, int limit) {
+        if (sequence > lastSequence) {
+            return null;
+        }
+        long oldestRetained = changes.isEmpty() ? lastSequence + 1 : changes.peekFirst().sequence;
+        if (sequence + 1 < oldestRetained) {
+            return null;
+        }
+        List<Change> result = new ArrayList<>();
+        for (Change change : changes) {
+            if (change.sequence > sequence) {
+                result.add(change);
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public static class Change {
+        private final long sequence;
+        private final Type type;
+        private final Long personId;
+        private final Person person;
+
+        private Change(long sequence, Type type, Long personId, Person person) {
+            this.sequence = sequence;
+            this.type = type;
+            this.personId = personId;
+            this.person = person;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Long getPersonId() {
+            return personId;
+        }
+
+        public Person getPerson() {
+            return person;
+        }
+    }
+}
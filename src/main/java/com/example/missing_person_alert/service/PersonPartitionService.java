@@ -0,0 +1,101 @@
+package com.example.missing_person_alert.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of the {@code person} table in shape: partitions for the coming
+ * months are created before any alert can expire into them, and a partition is dropped once its
+ * whole month lies in the past, i.e. once every alert in it has expired.
+ */
+@Service
+public class PersonPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersonPartitionService.class);
+    private static final Pattern PARTITION_NAME = Pattern.compile("person_y(\\d{4})m(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PersonService personService;
+
+    @Value("${person.partition.months-ahead:3}")
+    private int monthsAhead = 3;
+
+    public PersonPartitionService(JdbcTemplate jdbcTemplate, PersonService personService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.personService = personService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 15 0 * * ?")
+    public void maintainPartitions() {
+        maintainPartitions(YearMonth.now());
+    }
+
+    void maintainPartitions(YearMonth currentMonth) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(currentMonth.plusMonths(i));
+        }
+        List<String> partitions;
+        try {
+            partitions = jdbcTemplate.queryForList(
+                    "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                            "WHERE i.inhparent = 'person'::regclass", String.class);
+        } catch (DataAccessException e) {
+            // Runs on startup too, which a failed maintenance run must not abort; the next run retries
+            logger.warn("Could not list partitions of person: {}", e.getMessage());
+            return;
+        }
+        for (String partition : partitions) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (matcher.matches()) {
+                YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                if (month.isBefore(currentMonth)) {
+                    dropPartition(partition);
+                }
+            }
+        }
+    }
+
+    private void createPartition(YearMonth month) {
+        String sql = String.format("CREATE TABLE IF NOT EXISTS %s PARTITION OF person FOR VALUES FROM ('%s') TO ('%s')",
+                partitionName(month), month.atDay(1), month.plusMonths(1).atDay(1));
+        try {
+            jdbcTemplate.execute(sql);
+        } catch (DataAccessException e) {
+            // Typically rows for that month already sit in the default partition
+            logger.warn("Could not create partition for {}: {}", month, e.getMessage());
+        }
+    }
+
+    private void dropPartition(String partition) {
+        // Normally the scheduled purge has emptied the month already; anything it missed is cleaned up here
+        List<Object[]> leftovers;
+        try {
+            leftovers = jdbcTemplate.query("SELECT id, image_path FROM " + partition,
+                    (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2)});
+            // Another instance may be dropping the same partition
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+        } catch (DataAccessException e) {
+            logger.warn("Could not drop partition {}: {}", partition, e.getMessage());
+            return;
+        }
+        personService.discardExpired(leftovers);
+        logger.info("Dropped expired partition {} with {} remaining rows", partition, leftovers.size());
+    }
+
+    static String partitionName(YearMonth month) {
+        return String.format("person_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+}
@@ -1,99 +1,511 @@
 package com.example.missing_person_alert.service;
 
 import com.example.missing_person_alert.entity.Person;
+import com.example.missing_person_alert.model.PageCursor;
+import com.example.missing_person_alert.model.PersonChanges;
+import com.example.missing_person_alert.model.PersonSummary;
+import com.example.missing_person_alert.model.PossibleDuplicate;
 import com.example.missing_person_alert.repository.PersonRepository;
+import com.example.missing_person_alert.util.BkTree;
+import com.example.missing_person_alert.util.DistanceCalculator;
+import com.example.missing_person_alert.util.GeoGridIndex;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class PersonService {
 
     private static final Logger logger = LoggerFactory.getLogger(PersonService.class);
 
+    // Quarter-degree cells are roughly 28 x 17 km in Germany, close to the default search radius
+    private static final double INDEX_CELL_DEGREES = 0.25;
+    private static final int QUERY_CACHE_MAX_ENTRIES = 1000;
+    private static final int CHANGE_LOG_CAPACITY = 10_000;
+    private static final int CHANGES_PAGE_LIMIT = 500;
+    private static final long MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+
     private final PersonRepository repository;
+    private final ImageStore imageStore;
+    private final PhotoReencoder photoReencoder;
+    private final GeoGridIndex<Person> activeIndex = new GeoGridIndex<>(INDEX_CELL_DEGREES,
+            Person::getId, Person::getLastSeenLatitude, Person::getLastSeenLongitude);
+    private final Object activeIndexLock = new Object();
+    private volatile boolean activeIndexLoaded = false;
+    private final Map<Long, Person> activeById = new ConcurrentHashMap<>();
+    // Perceptual photo hashes of the active alerts, keyed to their ids
+    private final BkTree<Long> photoIndex = new BkTree<>();
+
+    // Bumped whenever the active alerts change; seeded from the clock so a restart never reuses a version
+    private final AtomicLong activeVersion = new AtomicLong(System.currentTimeMillis());
+    private final Map<String, CachedResult> queryCache = new ConcurrentHashMap<>();
+    private final Map<Long, Person> personCache = new ConcurrentHashMap<>();
+    private final PersonChangeLog changeLog = new PersonChangeLog(System.currentTimeMillis(), CHANGE_LOG_CAPACITY);
+
+    @Value("${person.duplicates.max-distance:10}")
+    private int duplicateMaxDistance = 10;
 
-    @Value("${upload.dir}")
-    private String uploadDir;
+    @Value("${person.purge.batch-size:500}")
+    private int purgeBatchSize = 500;
 
-    public PersonService(PersonRepository repository) {
+    @Value("${person.purge.max-run-ms:10000}")
+    private long purgeMaxRunMs = 10000;
+
+    private final Counter purgedCounter = Metrics.counter("person.purge.deleted");
+    private final Counter purgeBudgetExhaustedCounter = Metrics.counter("person.purge.budget.exhausted");
+    private final Timer purgeTimer = Metrics.timer("person.purge.duration");
+
+    public PersonService(PersonRepository repository, ImageStore imageStore, PhotoReencoder photoReencoder) {
         this.repository = repository;
+        this.imageStore = imageStore;
+        this.photoReencoder = photoReencoder;
     }
 
     public Person savePerson(String name, MultipartFile image,
                              Double lastSeenLatitude, Double lastSeenLongitude) throws IOException {
         // Manual validation
-        if (name == null || name.trim().isEmpty()) {
-            throw new IllegalArgumentException("Name cannot be blank");
-        }
-
+        validateName(name);
         if (image == null || image.isEmpty()) {
             throw new IllegalArgumentException("Image file cannot be empty");
         }
+        validatePhoto(image.getContentType(), image.getSize());
 
-        String contentType = image.getContentType();
-        if (!List.of("image/jpeg", "image/png").contains(contentType)) {
-            throw new IllegalArgumentException("Only JPEG and PNG images are allowed");
+        try (InputStream in = image.getInputStream()) {
+            return savePersonWithPhoto(name, in, lastSeenLatitude, lastSeenLongitude);
         }
+    }
 
-        if (image.getSize() > 5 * 1024 * 1024) {
-            throw new IllegalArgumentException("Image size must not exceed 5MB");
-        }
-
-        String filename = UUID.randomUUID() + "_" + image.getOriginalFilename();
-        Path path = Paths.get(uploadDir, filename);
-
-        Files.createDirectories(path.getParent());
-        Files.write(path, image.getBytes());
+    /**
+     * Saves an alert whose photo is read from {@code photo}, e.g. a completed resumable upload.
+     * The photo's declared type and size must have passed {@link #validatePhoto}.
+     */
+    public Person savePersonWithPhoto(String name, InputStream photo,
+                                      Double lastSeenLatitude, Double lastSeenLongitude) throws IOException {
+        validateName(name);
+        AtomicReference<PhotoReencoder.Reencoded> reencodedPhoto = new AtomicReference<>();
+        // The declared content type is only a hint; the stored bytes must really be JPEG or PNG.
+        // What is stored is the normalized re-encode, never the camera original.
+        String imageKey = imageStore.put(photo, MAX_IMAGE_BYTES, upload -> {
+            PhotoReencoder.Reencoded reencoded = photoReencoder.reencode(upload);
+            reencodedPhoto.set(reencoded);
+            return reencoded;
+        });
 
         Person person = new Person();
         person.setFullName(name.trim());
-        person.setImagePath(filename);
+        person.setImagePath(imageKey);
+        person.setBlurHash(reencodedPhoto.get().getBlurHash());
+        person.setPhotoHash(reencodedPhoto.get().getPerceptualHash());
         person.setPublishedAt(LocalDateTime.now());
         person.setLastSeenLatitude(lastSeenLatitude);
         person.setLastSeenLongitude(lastSeenLongitude);
         person.setExpiresAt(LocalDateTime.now().plusDays(30));
-        Person saved = repository.save(person);
+        Person saved = null;
+        try {
+            saved = repository.save(person);
+        } finally {
+            imageStore.release(imageKey);
+            if (saved == null) {
+                imageStore.deleteIfUnreferenced(imageKey, repository::countByImagePath);
+            }
+        }
+        synchronized (activeIndexLock) {
+            activeIndex.put(saved);
+            activeById.put(saved.getId(), saved);
+            if (saved.getPhotoHash() != null) {
+                photoIndex.add(saved.getPhotoHash(), saved.getId());
+            }
+            changeLog.append(PersonChangeLog.Type.ADDED, saved.getId(), saved);
+        }
+        personCache.put(saved.getId(), saved);
+        invalidateActiveAlerts();
         logger.info("Saved person: id={}, name={}, publishedAt={}, expiresAt={}",
                 saved.getId(), saved.getFullName(), saved.getPublishedAt(), saved.getExpiresAt());
         return saved;
     }
 
+    public static void validateName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be blank");
+        }
+    }
+
+    public static void validatePhoto(String contentType, long size) {
+        if (!List.of("image/jpeg", "image/png").contains(contentType)) {
+            throw new IllegalArgumentException("Only JPEG and PNG images are allowed");
+        }
+        if (size > MAX_IMAGE_BYTES) {
+            throw new IllegalArgumentException("Image size must not exceed 5MB");
+        }
+    }
+
+    /**
+     * Writes every active alert to {@code generator} as a {@link PersonSummary}, newest first, one
+     * row at a time, and returns how many were written. The read-only transaction keeps the
+     * database cursor open while rows are written and lets Hibernate skip flushing.
+     */
+    @Transactional(readOnly = true)
+    public int writeActiveSummaries(JsonGenerator generator) throws IOException {
+        int count = 0;
+        try (Stream<PersonSummary> summaries = repository.streamNonExpiredSummaries()) {
+            Iterator<PersonSummary> iterator = summaries.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
     public Page<Person> getAll(Pageable pageable) {
-        List<Person> nonExpired = repository.findNonExpired();
-        logger.info("Fetched {} non-expired persons from repository", nonExpired.size());
-        nonExpired.forEach(person -> logger.debug("Person: id={}, name={}, expiresAt={}",
-                person.getId(), person.getFullName(), person.getExpiresAt()));
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), nonExpired.size());
-        List<Person> pagedList = nonExpired.subList(Math.min(start, nonExpired.size()), end);
-        return new PageImpl<>(pagedList, pageable, nonExpired.size());
+        return cached("all:" + pageable, () -> {
+            Page<Person> page = repository.findNonExpired(pageable);
+            logger.info("Fetched {} of {} non-expired persons from repository",
+                    page.getNumberOfElements(), page.getTotalElements());
+            page.forEach(person -> logger.debug("Person: id={}, name={}, expiresAt={}",
+                    person.getId(), person.getFullName(), person.getExpiresAt()));
+            return page;
+        }, Page::getContent);
+    }
+
+    public List<Person> getAllAfter(PageCursor cursor, int size) {
+        String key = "after:" + (cursor == null ? "" : cursor.encode()) + ":" + size;
+        return cached(key, () -> {
+            Pageable limit = PageRequest.of(0, size);
+            List<Person> persons = cursor == null
+                    ? repository.findNonExpiredNewest(limit)
+                    : repository.findNonExpiredBefore(cursor.getPublishedAt(), cursor.getId(), limit);
+            logger.info("Fetched {} non-expired persons after cursor {}", persons.size(),
+                    cursor == null ? null : cursor.getId());
+            return persons;
+        }, persons -> persons);
+    }
+
+    /**
+     * Version of the active alert set. It changes on every publish, purge or externally observed
+     * change, so it can back HTTP validators for anything derived from active alerts.
+     */
+    public long getActiveAlertsVersion() {
+        return activeVersion.get();
+    }
+
+    public List<Person> findNearby(double latitude, double longitude, double radiusKm, int page, int size) {
+        if (activeIndexLoaded) {
+            LocalDateTime now = LocalDateTime.now();
+            List<Person> nearby = activeIndex.withinRadius(latitude, longitude, radiusKm, person -> isActive(person, now))
+                    .stream()
+                    .skip((long) page * size)
+                    .limit(size)
+                    .map(GeoGridIndex.Hit::getItem)
+                    .toList();
+            logger.debug("Served {} nearby persons from the in-memory index", nearby.size());
+            return nearby;
+        }
+        DistanceCalculator.BoundingBox box = DistanceCalculator.boundingBox(latitude, longitude, radiusKm);
+        List<Person> nearby = repository.findNonExpiredWithinRadius(latitude, longitude, radiusKm,
+                box.getMinLatitude(), box.getMaxLatitude(), box.getMinLongitude(), box.getMaxLongitude(),
+                size, (long) page * size);
+        logger.info("Fetched {} non-expired persons within {} km of lat={}, lon={}",
+                nearby.size(), radiusKm, latitude, longitude);
+        return nearby;
+    }
+
+    public List<Person> findInBox(DistanceCalculator.BoundingBox box, int limit) {
+        ensureActiveIndexLoaded();
+        LocalDateTime now = LocalDateTime.now();
+        return activeIndex.withinBox(box, person -> isActive(person, now)).stream()
+                .limit(limit)
+                .toList();
+    }
+
+    public List<Person> findNearest(double latitude, double longitude, int k) {
+        ensureActiveIndexLoaded();
+        LocalDateTime now = LocalDateTime.now();
+        return activeIndex.nearest(latitude, longitude, k, person -> isActive(person, now)).stream()
+                .map(GeoGridIndex.Hit::getItem)
+                .toList();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${person.index.refresh-interval-ms:300000}",
+            initialDelayString = "${person.index.refresh-interval-ms:300000}")
+    public void rebuildActiveIndex() {
+        // Holding the lock across the read keeps a concurrent savePerson from being overwritten by a stale list
+        synchronized (activeIndexLock) {
+            List<Person> active = repository.findNonExpired();
+            activeIndex.replaceAll(active);
+            // Another instance may have published, or alerts may have lapsed, since the last rebuild
+            Map<Long, Person> current = new HashMap<>();
+            active.forEach(person -> current.put(person.getId(), person));
+            List<Long> removed = activeById.keySet().stream().filter(id -> !current.containsKey(id)).toList();
+            List<Person> added = active.stream().filter(person -> !activeById.containsKey(person.getId())).toList();
+            if (activeIndexLoaded) {
+                removed.forEach(id -> changeLog.append(PersonChangeLog.Type.EXPIRED, id, null));
+                added.forEach(person -> changeLog.append(PersonChangeLog.Type.ADDED, person.getId(), person));
+            }
+            activeById.keySet().removeAll(removed);
+            activeById.putAll(current);
+            Map<Long, Long> photoHashes = new HashMap<>();
+            active.stream().filter(person -> person.getPhotoHash() != null)
+                    .forEach(person -> photoHashes.put(person.getId(), person.getPhotoHash()));
+            photoIndex.replaceAll(photoHashes);
+            activeIndexLoaded = true;
+            if (!removed.isEmpty() || !added.isEmpty()) {
+                personCache.clear();
+                invalidateActiveAlerts();
+            }
+            logger.info("Rebuilt in-memory index with {} located active persons", activeIndex.size());
+        }
+    }
+
+    private void ensureActiveIndexLoaded() {
+        if (!activeIndexLoaded) {
+            rebuildActiveIndex();
+        }
+    }
+
+    private void invalidateActiveAlerts() {
+        activeVersion.incrementAndGet();
+        queryCache.clear();
+    }
+
+    /**
+     * Read-through cache keyed by the active-alert version, so a publish or purge makes every
+     * older entry unreachable at once. An entry also lapses when the first alert it contains
+     * expires, since the database would stop returning that alert from then on.
+     */
+    @SuppressWarnings("unchecked")
+    private <R> R cached(String key, Supplier<R> loader, Function<R, List<Person>> contentOf) {
+        String versionedKey = activeVersion.get() + "|" + key;
+        CachedResult entry = queryCache.get(versionedKey);
+        LocalDateTime now = LocalDateTime.now();
+        if (entry != null && (entry.validUntil == null || entry.validUntil.isAfter(now))) {
+            return (R) entry.value;
+        }
+        R loaded = loader.get();
+        LocalDateTime validUntil = contentOf.apply(loaded).stream()
+                .map(Person::getExpiresAt)
+                .filter(Objects::nonNull)
+                .min(LocalDateTime::compareTo)
+                .orElse(null);
+        if (queryCache.size() >= QUERY_CACHE_MAX_ENTRIES) {
+            queryCache.clear();
+        }
+        queryCache.put(versionedKey, new CachedResult(loaded, validUntil));
+        return loaded;
+    }
+
+    private static boolean isActive(Person person, LocalDateTime now) {
+        return person.getExpiresAt() == null || person.getExpiresAt().isAfter(now);
+    }
+
+    /**
+     * Alerts added or expired since the given change cursor. A missing, foreign or outdated cursor
+     * yields a reset with the current cursor, from which the client continues after reloading.
+     */
+    public PersonChanges getChangesSince(String cursor) {
+        long sequence = parseChangeCursor(cursor);
+        List<PersonChangeLog.Change> changes = sequence < 0 ? null : changeLog.since(sequence, CHANGES_PAGE_LIMIT);
+        if (changes == null) {
+            logger.debug("Change cursor {} cannot be resumed, asking client to resync", cursor);
+            return new PersonChanges(changeCursor(changeLog.getLastSequence()), true, false, List.of(), List.of());
+        }
+        // Collapse the window so each alert appears once, in its final state
+        Map<Long, Person> added = new LinkedHashMap<>();
+        Set<Long> expired = new LinkedHashSet<>();
+        for (PersonChangeLog.Change change : changes) {
+            if (change.getType() == PersonChangeLog.Type.ADDED) {
+                expired.remove(change.getPersonId());
+                added.put(change.getPersonId(), change.getPerson());
+            } else {
+                added.remove(change.getPersonId());
+                expired.add(change.getPersonId());
+            }
+        }
+        long next = changes.isEmpty() ? sequence : changes.get(changes.size() - 1).getSequence();
+        return new PersonChanges(changeCursor(next), false, changes.size() == CHANGES_PAGE_LIMIT,
+                new ArrayList<>(added.values()), new ArrayList<>(expired));
+    }
+
+    /**
+     * Registers a non-blocking callback for every future change, together with the change cursor
+     * that resumes right after it.
+     */
+    public void addChangeListener(BiConsumer<String, PersonChangeLog.Change> listener) {
+        changeLog.addListener(change -> listener.accept(changeCursor(change.getSequence()), change));
+    }
+
+    private String changeCursor(long sequence) {
+        return Long.toString(changeLog.getEpoch(), 36) + "." + Long.toString(sequence, 36);
+    }
+
+    private long parseChangeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return -1;
+        }
+        String[] parts = cursor.split("\\.");
+        try {
+            if (parts.length != 2 || Long.parseLong(parts[0], 36) != changeLog.getEpoch()) {
+                return -1;
+            }
+            return Long.parseLong(parts[1], 36);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Active alerts whose photo is within {@code person.duplicates.max-distance} perceptual-hash
+     * bits of the given alert's photo, most similar first, at most {@code limit} of them.
+     */
+    public List<PossibleDuplicate> findPossibleDuplicates(Person person, int limit) {
+        if (person.getPhotoHash() == null) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<PossibleDuplicate> duplicates = new ArrayList<>();
+        for (BkTree.Match<Long> match : photoIndex.search(person.getPhotoHash(), duplicateMaxDistance)) {
+            Person candidate = activeById.get(match.getItem());
+            if (candidate != null && !candidate.getId().equals(person.getId()) && isActive(candidate, now)) {
+                duplicates.add(new PossibleDuplicate(candidate, match.getDistance()));
+                if (duplicates.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Stores the place name looked up for an alert's last-seen coordinates, in the database and in
+     * the cached copies of the alert.
+     */
+    public void updateLocationName(Long id, String locationName) {
+        repository.updateLocationName(id, locationName);
+        Person active = activeById.get(id);
+        if (active != null) {
+            active.setLocationName(locationName);
+        }
+        Person cached = personCache.get(id);
+        if (cached != null) {
+            cached.setLocationName(locationName);
+        }
+        // Listed alerts show the name, so cached pages and their ETags are out of date
+        invalidateActiveAlerts();
     }
 
     public Optional<Person> getPersonById(Long id) {
-        return repository.findById(id);
+        Person cachedPerson = personCache.get(id);
+        if (cachedPerson != null) {
+            return Optional.of(cachedPerson);
+        }
+        Optional<Person> person = repository.findById(id);
+        person.ifPresent(found -> personCache.put(id, found));
+        return person;
     }
 
-    @Scheduled(cron = "0 0 0 * * ?")
+    /**
+     * Purges expired alerts in chunks of {@code person.purge.batch-size} rows, each deleted by a
+     * single statement in its own short transaction, until none are left or the run has used its
+     * {@code person.purge.max-run-ms} budget. Whatever remains is picked up by the next run, which
+     * comes every few minutes, so expired alerts disappear promptly without a nightly I/O spike.
+     */
+    @Scheduled(fixedDelayString = "${person.purge.interval-ms:300000}",
+            initialDelayString = "${person.purge.interval-ms:300000}")
     public void deleteExpiredRecords() {
-        List<Person> expired = repository.findAll().stream()
-                .filter(person -> person.getExpiresAt().isBefore(LocalDateTime.now()))
-                .toList();
-        repository.deleteAll(expired);
-        logger.info("Deleted {} expired records", expired.size());
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(purgeMaxRunMs);
+        int deleted = 0;
+        int batches = 0;
+        boolean more;
+        do {
+            List<Object[]> rows = repository.deleteExpiredBatch(purgeBatchSize);
+            discardExpired(rows);
+            deleted += rows.size();
+            batches++;
+            purgedCounter.increment(rows.size());
+            more = rows.size() == purgeBatchSize;
+        } while (more && System.nanoTime() < deadline);
+        purgeTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        if (more) {
+            purgeBudgetExhaustedCounter.increment();
+            logger.info("Deleted {} expired records in {} batches, stopping at the time budget; the rest follows next run",
+                    deleted, batches);
+        } else {
+            logger.info("Deleted {} expired records in {} batches", deleted, batches);
+        }
+    }
+
+    /**
+     * Cleans up after expired alerts whose rows are gone from the database: deletes their images
+     * and drops them from the in-memory index and caches. Each row is {@code {id, image_path}}.
+     */
+    public void discardExpired(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Long> expiredIds = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            expiredIds.add(((Number) row[0]).longValue());
+            if (row[1] != null) {
+                imageStore.deleteIfUnreferenced((String) row[1], repository::countByImagePath);
+            }
+        }
+        synchronized (activeIndexLock) {
+            activeIndex.removeAll(expiredIds);
+            expiredIds.forEach(id -> {
+                Person expired = activeById.remove(id);
+                if (expired != null && expired.getPhotoHash() != null) {
+                    photoIndex.remove(expired.getPhotoHash(), id);
+                }
+                changeLog.append(PersonChangeLog.Type.EXPIRED, id, null);
+            });
+        }
+        expiredIds.forEach(personCache::remove);
+        invalidateActiveAlerts();
+    }
+
+    private static final class CachedResult {
+        private final Object value;
+        private final LocalDateTime validUntil;
+
+        private CachedResult(Object value, LocalDateTime validUntil) {
+            this.value = value;
+            this.validUntil = validUntil;
+        }
     }
-}
\ No newline at end of file
+}
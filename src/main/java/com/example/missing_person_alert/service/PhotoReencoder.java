@@ -0,0 +1,194 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.util.BlurHash;
+import com.example.missing_person_alert.util.ExifOrientation;
+import com.example.missing_person_alert.util.ImageScaling;
+import com.example.missing_person_alert.util.ImageStreamWriter;
+import com.example.missing_person_alert.util.PerceptualHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalizes uploaded photos before they are stored: decodes them with bounded memory, drops all
+ * metadata (EXIF, GPS, ICC profiles, comments), rotates them upright according to their EXIF
+ * orientation and re-encodes them as progressive JPEG of at most {@code maxEdge} pixels and,
+ * where possible, {@code maxBytes} bytes. While the pixels are at hand it also computes the photo's
+ * BlurHash placeholder and perceptual hash.
+ * <p>
+ * Camera files are read with source subsampling, so a 6000x4000 photo is decoded at a fraction of
+ * its size instead of as a 96 MB raster, and only a few uploads are decoded at the same time.
+ */
+@Service
+public class PhotoReencoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoReencoder.class);
+    // Beyond this, the dimensions in the header are a decompression bomb rather than a photo
+    private static final long MAX_SOURCE_PIXELS = 200_000_000L;
+    private static final float[] QUALITIES = {0.85f, 0.75f, 0.65f, 0.55f};
+    private static final int MIN_EDGE = 320;
+    private static final int BLURHASH_COMPONENTS_X = 4;
+    private static final int BLURHASH_COMPONENTS_Y = 3;
+
+    @Value("${person.photo.max-edge:2048}")
+    private int maxEdge = 2048;
+
+    @Value("${person.photo.max-bytes:524288}")
+    private long maxBytes = 512 * 1024;
+
+    private final Semaphore decodePermits;
+
+    public PhotoReencoder(@Value("${person.photo.max-concurrent-decodes:2}") int maxConcurrentDecodes) {
+        this.decodePermits = new Semaphore(maxConcurrentDecodes, true);
+    }
+
+    /**
+     * Re-encodes the stored {@code upload} into a new temp file next to it. The caller remains
+     * responsible for both files. Throws {@link IllegalArgumentException} if the upload cannot be
+     * decoded.
+     */
+    public Reencoded reencode(ImageStreamWriter.Result upload) throws IOException {
+        long started = System.nanoTime();
+        BufferedImage image;
+        try {
+            decodePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to decode upload", e);
+        }
+        byte[] encoded;
+        String blurHash;
+        long perceptualHash;
+        try {
+            image = decode(upload.getPath());
+            if ("image/jpeg".equals(upload.getContentType())) {
+                try (InputStream in = Files.newInputStream(upload.getPath())) {
+                    image = ImageScaling.orient(image, ExifOrientation.read(in));
+                }
+            }
+            BufferedImage scaled = ImageScaling.scaleDown(image, maxEdge);
+            encoded = encodeWithinBudget(scaled);
+            blurHash = BlurHash.encode(scaled, BLURHASH_COMPONENTS_X, BLURHASH_COMPONENTS_Y);
+            perceptualHash = PerceptualHash.dHash(scaled);
+        } finally {
+            decodePermits.release();
+        }
+        ImageStreamWriter.Result result = ImageStreamWriter.write(new ByteArrayInputStream(encoded),
+                upload.getPath().getParent(), Long.MAX_VALUE);
+        logger.info("Re-encoded upload from {} to {} bytes in {} ms", upload.getSize(), result.getSize(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return new Reencoded(result, blurHash, perceptualHash);
+    }
+
+    private BufferedImage decode(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Image could not be read");
+            }
+            ImageReader reader = readers.next();
+            try {
+                // Metadata is neither needed nor kept, so the reader may skip it
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_SOURCE_PIXELS) {
+                    throw new IllegalArgumentException("Image dimensions are too large");
+                }
+                // Skip whole source pixels while the result stays at least maxEdge on its longer side
+                int subsampling = Math.max(1, Math.max(width, height) / maxEdge);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Image could not be read", e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Lowers the JPEG quality, then the resolution, until the result fits {@code maxBytes}. A
+     * photo that cannot be squeezed under the budget without becoming useless is kept at the
+     * smallest acceptable size.
+     */
+    private byte[] encodeWithinBudget(BufferedImage image) throws IOException {
+        BufferedImage current = image;
+        while (true) {
+            byte[] encoded = null;
+            for (float quality : QUALITIES) {
+                encoded = encode(current, quality);
+                if (encoded.length <= maxBytes) {
+                    return encoded;
+                }
+            }
+            int longerEdge = Math.max(current.getWidth(), current.getHeight());
+            if (longerEdge * 3 / 4 < MIN_EDGE) {
+                logger.warn("Photo still {} bytes at {} px, above the {} byte budget", encoded.length, longerEdge, maxBytes);
+                return encoded;
+            }
+            current = ImageScaling.scaleDown(current, longerEdge * 3 / 4);
+        }
+    }
+
+    private static byte[] encode(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            // Progressive scans render a usable preview on slow connections before the rest arrives
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(imageOut);
+            // No metadata passed: only a bare JFIF header is written
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The re-encoded photo, plus what was learned from its pixels on the way.
+     */
+    public static class Reencoded extends ImageStreamWriter.Result {
+        private final String blurHash;
+        private final long perceptualHash;
+
+        public Reencoded(ImageStreamWriter.Result written, String blurHash, long perceptualHash) {
+            super(written.getPath(), written.getSha256(), written.getContentType(), written.getSize());
+            this.blurHash = blurHash;
+            this.perceptualHash = perceptualHash;
+        }
+
+        public String getBlurHash() {
+            return blurHash;
+        }
+
+        public long getPerceptualHash() {
+            return perceptualHash;
+        }
+    }
+}
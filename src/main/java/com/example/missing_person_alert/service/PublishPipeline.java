@@ -0,0 +1,252 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.entity.Person;
+import com.example.missing_person_alert.firebase.FirebaseService;
+import com.example.missing_person_alert.model.PublishStatus;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes an alert in explicit stages: persist, then notify, derive images and geocode side by
+ * side. Only persisting runs on the request thread, so the officer gets an answer as soon as the
+ * alert is saved; the other stages each run on their own small pool. The notification needs
+ * neither the derivatives nor the place name, so it never waits for image work or Nominatim.
+ * <p>
+ * Backpressure is applied once, at the entrance: at most {@code person.publish.max-in-flight}
+ * publishes may be saved but not yet announced, and {@link #submit} refuses more. The notify
+ * queue has room for all of them, so an admitted alert is always announced. Deriving and
+ * geocoding are best effort: their queues are as long, and when they are full (e.g. while
+ * Nominatim is down) the stage is skipped, as the images are rendered and the place name looked
+ * up on demand anyway. A failed stage is recorded; the publish only counts as failed if the
+ * notification could not be sent.
+ * <p>
+ * Per-stage run time and queue wait are exposed as {@code person.publish.stage} and
+ * {@code person.publish.queue.wait} timers, tagged by stage, and the queue lengths as
+ * {@code person.publish.queue.size} gauges.
+ */
+@Service
+public class PublishPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(PublishPipeline.class);
+    // Finished publishes are kept this long (in count) for their status URL
+    private static final int MAX_RETAINED_STATUSES = 1000;
+
+    public enum Stage {
+        PERSIST(0),
+        NOTIFY(2),
+        DERIVE(2),
+        // GeocodingService spaces requests out to Nominatim's one per second anyway
+        GEOCODE(1);
+
+        private final int threads;
+
+        Stage(int threads) {
+            this.threads = threads;
+        }
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Saves the alert. Runs on the caller's thread and may reject the request.
+     */
+    @FunctionalInterface
+    public interface PersistStep {
+        Person persist() throws IOException;
+    }
+
+    private final ImageDerivativeService imageDerivativeService;
+    private final GeocodingService geocodingService;
+    private final PersonService personService;
+    private final FirebaseService firebaseService;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Map<Stage, ThreadPoolExecutor> executors = new EnumMap<>(Stage.class);
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Stage, Timer> waitTimers = new EnumMap<>(Stage.class);
+    private final Map<Long, PublishStatus> statuses = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PublishStatus> eldest) {
+            return size() > MAX_RETAINED_STATUSES;
+        }
+    };
+
+    public PublishPipeline(ImageDerivativeService imageDerivativeService, GeocodingService geocodingService,
+                           PersonService personService, FirebaseService firebaseService,
+                           @Value("${person.publish.max-in-flight:100}") int maxInFlight) {
+        this.imageDerivativeService = imageDerivativeService;
+        this.geocodingService = geocodingService;
+        this.personService = personService;
+        this.firebaseService = firebaseService;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Metrics.timer("person.publish.stage", "stage", stage.key()));
+            if (stage.threads == 0) {
+                continue;
+            }
+            waitTimers.put(stage, Metrics.timer("person.publish.queue.wait", "stage", stage.key()));
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(stage.threads, stage.threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, maxInFlight)), runnable -> {
+                        Thread thread = new Thread(runnable, "publish-" + stage.key() + "-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+            executors.put(stage, executor);
+            Metrics.gauge("person.publish.queue.size", Tags.of("stage", stage.key()), executor,
+                    pool -> pool.getQueue().size());
+        }
+    }
+
+    /**
+     * Persists the alert on the calling thread and queues the remaining stages. Returns the
+     * publish's status, or {@code null} if the pipeline is full and nothing was saved. Exceptions
+     * of the persist step are passed on.
+     */
+    public PublishStatus submit(PersistStep persist) throws IOException {
+        if (!inFlight.tryAcquire()) {
+            logger.warn("Rejecting publish: {} already in progress", maxInFlight);
+            return null;
+        }
+        Person person;
+        long started = System.nanoTime();
+        try {
+            person = persist.persist();
+        } catch (IOException | RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        long elapsed = System.nanoTime() - started;
+        stageTimers.get(Stage.PERSIST).record(elapsed, TimeUnit.NANOSECONDS);
+        PublishStatus status = new PublishStatus(person.getId());
+        status.stageFinished(Stage.PERSIST.key(), TimeUnit.NANOSECONDS.toMillis(elapsed), null);
+        synchronized (statuses) {
+            statuses.put(person.getId(), status);
+        }
+        Publish publish = new Publish(person, status);
+        enqueue(Stage.NOTIFY, publish);
+        enqueue(Stage.DERIVE, publish);
+        enqueue(Stage.GEOCODE, publish);
+        return status;
+    }
+
+    /**
+     * The status of a recent publish, or {@code null} if it is unknown or too old.
+     */
+    public PublishStatus getStatus(Long personId) {
+        synchronized (statuses) {
+            return statuses.get(personId);
+        }
+    }
+
+    private void enqueue(Stage stage, Publish publish) {
+        long queued = System.nanoTime();
+        try {
+            executors.get(stage).execute(() -> {
+                waitTimers.get(stage).record(System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+                run(stage, publish);
+            });
+        } catch (RejectedExecutionException e) {
+            // For notify only after shutdown: its queue holds every publish that can be in flight
+            logger.warn("Skipped {} of alert id={}: queue full or shut down", stage.key(), publish.person.getId());
+            publish.status.stageFinished(stage.key(), 0, "not run");
+            finished(stage, publish, false);
+        }
+    }
+
+    private void run(Stage stage, Publish publish) {
+        publish.status.stageStarted(stage.key());
+        String error = null;
+        long started = System.nanoTime();
+        try {
+            execute(stage, publish.person);
+        } catch (Exception e) {
+            logger.error("Publish stage {} failed for alert id={}: {}", stage.key(), publish.person.getId(), e.getMessage());
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        long elapsed = System.nanoTime() - started;
+        stageTimers.get(stage).record(elapsed, TimeUnit.NANOSECONDS);
+        publish.status.stageFinished(stage.key(), TimeUnit.NANOSECONDS.toMillis(elapsed), error);
+        finished(stage, publish, error == null);
+    }
+
+    private void finished(Stage stage, Publish publish, boolean succeeded) {
+        if (stage == Stage.NOTIFY) {
+            // Announced: the slot is free even if images or the place name are still being worked on
+            inFlight.release();
+            publish.notified = succeeded;
+        }
+        if (publish.remaining.decrementAndGet() == 0) {
+            publish.status.finish(publish.notified);
+            logger.info("Published alert id={}: {} ms per stage", publish.person.getId(), publish.status.getStageMillis());
+        }
+    }
+
+    private void execute(Stage stage, Person person) throws IOException {
+        switch (stage) {
+            case DERIVE -> imageDerivativeService.generateNow(person.getImagePath());
+            case GEOCODE -> {
+                String locationName = geocodingService.getLocationName(person.getLastSeenLatitude(),
+                        person.getLastSeenLongitude());
+                // Not looked up now; the confirmation page tries again when it is opened
+                if (locationName != null) {
+                    personService.updateLocationName(person.getId(), locationName);
+                }
+            }
+            case NOTIFY -> firebaseService.sendNotification(person, Locale.GERMAN);
+            default -> throw new IllegalStateException("Stage " + stage + " does not run on the pipeline");
+        }
+    }
+
+    /**
+     * One alert on its way through the stages after persisting.
+     */
+    private static final class Publish {
+        private final Person person;
+        private final PublishStatus status;
+        private final AtomicInteger remaining = new AtomicInteger(Stage.values().length - 1);
+        private volatile boolean notified;
+
+        private Publish(Person person, PublishStatus status) {
+            this.person = person;
+            this.status = status;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Notify first, so an alert that was saved is still announced
+        for (ThreadPoolExecutor executor : executors.values()) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+            }
+        }
+    }
+}
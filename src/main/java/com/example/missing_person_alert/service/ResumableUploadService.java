@@ -0,0 +1,249 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.entity.Person;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resumable photo uploads for publishing over weak mobile connections, modelled on the tus
+ * protocol: an upload is created with its length and the alert's details, its bytes are sent in
+ * any number of chunks, each at an explicit offset, and it is then published as a whole.
+ * <p>
+ * Chunks are written straight into a sparse file of the final length at their offset, and the
+ * received byte ranges are tracked, so a dropped connection loses nothing that reached the disk:
+ * the client asks for the offset and resends only what is missing. Chunks may also arrive out of
+ * order or in parallel. Upload state lives in memory; uploads left idle for
+ * {@code person.upload.expire-ms} are discarded with their file.
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableUploadService.class);
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    @Value("${person.upload.max-pending:200}")
+    private int maxPending = 200;
+
+    @Value("${person.upload.expire-ms:86400000}")
+    private long expireMs = 86400000;
+
+    private final PersonService personService;
+    private final Path directory;
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    public ResumableUploadService(PersonService personService, @Value("${upload.dir:uploads}") String uploadDir) {
+        this.personService = personService;
+        this.directory = Paths.get(uploadDir).resolve("resumable");
+    }
+
+    @PostConstruct
+    public void deleteLeftovers() {
+        // Their state was in memory, so uploads from before a restart cannot be resumed
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not clean up resumable uploads in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Starts an upload of {@code length} bytes for a new alert. Returns {@code null} if too many
+     * uploads are pending. Throws {@link IllegalArgumentException} if the alert or photo is invalid.
+     */
+    public Upload create(long length, String contentType, String name,
+                         Double lastSeenLatitude, Double lastSeenLongitude) throws IOException {
+        PersonService.validateName(name);
+        if (length <= 0) {
+            throw new IllegalArgumentException("Image file cannot be empty");
+        }
+        PersonService.validatePhoto(contentType, length);
+        if (uploads.size() >= maxPending) {
+            logger.warn("Rejecting resumable upload: {} pending", uploads.size());
+            return null;
+        }
+        Files.createDirectories(directory);
+        String id = UUID.randomUUID().toString();
+        Path file = directory.resolve(id);
+        // Setting the length without writing leaves a sparse file that chunks fill in at their offset
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(length);
+        }
+        Upload upload = new Upload(id, file, length, name, lastSeenLatitude, lastSeenLongitude);
+        uploads.put(id, upload);
+        logger.info("Created resumable upload {} of {} bytes", id, length);
+        return upload;
+    }
+
+    /**
+     * The upload with the given id, or {@code null} if it does not exist (any more).
+     */
+    public Upload get(String id) {
+        return uploads.get(id);
+    }
+
+    /**
+     * Writes the bytes of {@code chunk} into the upload starting at {@code offset} and returns the
+     * new offset up to which the upload is complete. Bytes are recorded as received as they reach
+     * the file, so they count even if the chunk breaks off with an {@link IOException}.
+     */
+    public long write(Upload upload, long offset, InputStream chunk) throws IOException {
+        if (offset < 0 || offset > upload.length) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside the upload");
+        }
+        upload.touch();
+        byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        long position = offset;
+        try (FileChannel channel = FileChannel.open(upload.file, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = chunk.read(buffer)) != -1) {
+                if (position + read > upload.length) {
+                    throw new IllegalArgumentException("Chunk runs past the upload length of " + upload.length);
+                }
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                long at = position;
+                while (bytes.hasRemaining()) {
+                    at += channel.write(bytes, at);
+                }
+                upload.received(position, position + read);
+                position += read;
+            }
+        }
+        upload.touch();
+        return upload.getOffset();
+    }
+
+    /**
+     * Saves the alert with the completed upload as its photo and discards the upload. If saving
+     * fails the upload is kept, so the client can publish it again without sending the photo
+     * again. Throws {@link IllegalStateException} if bytes are still missing or the upload is
+     * being or has been published.
+     */
+    public Person publish(Upload upload) throws IOException {
+        if (!upload.isComplete()) {
+            throw new IllegalStateException("Upload is incomplete at offset " + upload.getOffset());
+        }
+        if (!upload.publishing.compareAndSet(false, true)) {
+            throw new IllegalStateException("Upload is being published");
+        }
+        if (uploads.get(upload.id) != upload) {
+            throw new IllegalStateException("Upload has already been published");
+        }
+        Person saved;
+        try (InputStream in = Files.newInputStream(upload.file)) {
+            saved = personService.savePersonWithPhoto(upload.name, in, upload.lastSeenLatitude, upload.lastSeenLongitude);
+        } catch (IOException | RuntimeException e) {
+            upload.touch();
+            upload.publishing.set(false);
+            throw e;
+        }
+        uploads.remove(upload.id, upload);
+        try {
+            Files.deleteIfExists(upload.file);
+        } catch (IOException e) {
+            logger.warn("Could not delete published upload {}: {}", upload.file, e.getMessage());
+        }
+        return saved;
+    }
+
+    @Scheduled(fixedDelayString = "${person.upload.cleanup-interval-ms:600000}")
+    public void discardExpired() {
+        long cutoff = System.currentTimeMillis() - expireMs;
+        for (Upload upload : uploads.values()) {
+            if (upload.lastActivity < cutoff && !upload.publishing.get() && uploads.remove(upload.id, upload)) {
+                try {
+                    Files.deleteIfExists(upload.file);
+                } catch (IOException e) {
+                    logger.warn("Could not delete expired upload {}: {}", upload.file, e.getMessage());
+                }
+                logger.info("Discarded resumable upload {} after {} idle ms", upload.id, expireMs);
+            }
+        }
+    }
+
+    /**
+     * A pending upload. Received ranges are merged as they arrive; the offset a client resumes
+     * from is the end of the range starting at 0.
+     */
+    public static class Upload {
+        private final String id;
+        private final Path file;
+        private final long length;
+        private final String name;
+        private final Double lastSeenLatitude;
+        private final Double lastSeenLongitude;
+        // Start -> end (exclusive) of each received, non-adjacent range
+        private final TreeMap<Long, Long> ranges = new TreeMap<>();
+        private volatile long lastActivity = System.currentTimeMillis();
+        // Set while saving and after; keeps a second publish and the cleanup away
+        private final AtomicBoolean publishing = new AtomicBoolean();
+
+        Upload(String id, Path file, long length, String name, Double lastSeenLatitude, Double lastSeenLongitude) {
+            this.id = id;
+            this.file = file;
+            this.length = length;
+            this.name = name;
+            this.lastSeenLatitude = lastSeenLatitude;
+            this.lastSeenLongitude = lastSeenLongitude;
+        }
+
+        synchronized void received(long start, long end) {
+            Map.Entry<Long, Long> before = ranges.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> after;
+            while ((after = ranges.ceilingEntry(start)) != null && after.getKey() <= end) {
+                end = Math.max(end, after.getValue());
+                ranges.remove(after.getKey());
+            }
+            ranges.put(start, end);
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public synchronized long getOffset() {
+            Long end = ranges.get(0L);
+            return end != null ? end : 0;
+        }
+
+        public boolean isComplete() {
+            return getOffset() == length;
+        }
+    }
+}
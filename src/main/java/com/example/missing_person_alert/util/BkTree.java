@@ -0,0 +1,136 @@
+package com.example.missing_person_alert.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Burkhard-Keller tree over 64-bit hashes with Hamming distance, for finding every item whose hash
+ * differs from a query in at most a few bits. The triangle inequality lets a search skip every
+ * subtree whose edge distance is outside {@code [d - radius, d + radius]}, so a small radius
+ * visits a tiny fraction of the nodes.
+ * <p>
+ * Items with identical hashes share a node. Removing an item leaves its node in place as a
+ * routing node; {@link #replaceAll} rebuilds the tree without them. Thread-safe.
+ */
+public class BkTree<T> {
+
+    private Node<T> root;
+    private int size;
+
+    public synchronized void add(long hash, T item) {
+        if (root == null) {
+            root = new Node<>(hash);
+            root.items.add(item);
+            size++;
+            return;
+        }
+        Node<T> node = root;
+        while (true) {
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance == 0) {
+                if (node.items.add(item)) {
+                    size++;
+                }
+                return;
+            }
+            Node<T> child = node.children.get(distance);
+            if (child == null) {
+                child = new Node<>(hash);
+                child.items.add(item);
+                node.children.put(distance, child);
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    public synchronized boolean remove(long hash, T item) {
+        Node<T> node = root;
+        while (node != null) {
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance == 0) {
+                if (node.items.remove(item)) {
+                    size--;
+                    return true;
+                }
+                return false;
+            }
+            node = node.children.get(distance);
+        }
+        return false;
+    }
+
+    /**
+     * Every item within {@code radius} bits of {@code hash}, closest first.
+     */
+    public synchronized List<Match<T>> search(long hash, int radius) {
+        List<Match<T>> matches = new ArrayList<>();
+        if (root == null) {
+            return matches;
+        }
+        Deque<Node<T>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node<T> node = pending.pop();
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance <= radius) {
+                for (T item : node.items) {
+                    matches.add(new Match<>(item, distance));
+                }
+            }
+            for (Map.Entry<Integer, Node<T>> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - distance) <= radius) {
+                    pending.push(child.getValue());
+                }
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::getDistance));
+        return matches;
+    }
+
+    public synchronized void replaceAll(Map<T, Long> hashes) {
+        root = null;
+        size = 0;
+        hashes.forEach((item, hash) -> add(hash, item));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static final class Node<T> {
+        private final long hash;
+        private final Set<T> items = new LinkedHashSet<>(2);
+        private final Map<Integer, Node<T>> children = new HashMap<>(4);
+
+        private Node(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    public static final class Match<T> {
+        private final T item;
+        private final int distance;
+
+        private Match(T item, int distance) {
+            this.item = item;
+            this.distance = distance;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.missing_person_alert.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * In-memory spatial index of circles (an id, a center and a radius) that answers which circles
+ * contain a point.
+ * <p>
+ * Every circle is listed in each geohash cell of its covering set ({@link Geohash#coveringCells}),
+ * so a point query reads the one cell containing the point and checks only the circles listed
+ * there, with a batch haversine over the cell's parallel arrays. Its cost follows the number of
+ * circles near the point, not the size of the index. Circles far larger than a cell are listed in
+ * many cells, so the precision should suit the typical radius.
+ * <p>
+ * Queries share a read lock and run in parallel; adding and removing circles takes the write lock.
+ */
+public class CircleIndex {
+
+    private static final int INITIAL_CELL_CAPACITY = 8;
+
+    private final int precision;
+    private final Map<String, Cell> cells = new HashMap<>();
+    // The cells each circle is listed in, to remove it without scanning the index
+    private final Map<Long, String[]> cellsById = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CircleIndex(int precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * Adds a circle, or moves it if the id is already indexed. Throws
+     * {@link IllegalArgumentException} if the radius takes too many cells of this precision.
+     */
+    public void put(long id, double latitude, double longitude, double radiusKm) {
+        List<String> covering = Geohash.coveringCells(latitude, longitude, radiusKm, precision);
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            String[] listedIn = new String[covering.size()];
+            for (int i = 0; i < listedIn.length; i++) {
+                Cell cell = cells.computeIfAbsent(covering.get(i), Cell::new);
+                cell.add(id, latitude, longitude, radiusKm);
+                // The cell's own key, so a million circles do not keep a million copies of it
+                listedIn[i] = cell.key;
+            }
+            cellsById.put(id, listedIn);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Throws {@link IllegalArgumentException} if {@link #put} would refuse the circle, so it can
+     * be refused before it is stored anywhere else.
+     */
+    public void checkIndexable(double latitude, double longitude, double radiusKm) {
+        Geohash.coveringCells(latitude, longitude, radiusKm, precision);
+    }
+
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return cellsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes the id of every circle containing the point (on its edge included) to
+     * {@code consumer}, each once. The consumer runs under the read lock and must not modify the
+     * index.
+     */
+    public void forEachContaining(double latitude, double longitude, LongConsumer consumer) {
+        String key = Geohash.encode(latitude, longitude, precision);
+        lock.readLock().lock();
+        try {
+            Cell cell = cells.get(key);
+            if (cell == null) {
+                return;
+            }
+            double[] distances = new double[cell.size];
+            DistanceCalculator.calculateDistances(latitude, longitude, cell.latitudes, cell.longitudes,
+                    distances, cell.size);
+            for (int i = 0; i < cell.size; i++) {
+                if (distances[i] <= cell.radii[i]) {
+                    consumer.accept(cell.ids[i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean removeLocked(long id) {
+        String[] listedIn = cellsById.remove(id);
+        if (listedIn == null) {
+            return false;
+        }
+        for (String key : listedIn) {
+            Cell cell = cells.get(key);
+            cell.remove(id);
+            if (cell.size == 0) {
+                cells.remove(key);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The circles listed in one cell, as parallel arrays so a query scans them without touching
+     * an object per circle. Removal moves the last circle into the gap.
+     */
+    private static final class Cell {
+        private final String key;
+        private long[] ids = new long[INITIAL_CELL_CAPACITY];
+        private double[] latitudes = new double[INITIAL_CELL_CAPACITY];
+        private double[] longitudes = new double[INITIAL_CELL_CAPACITY];
+        private double[] radii = new double[INITIAL_CELL_CAPACITY];
+        private int size;
+
+        private Cell(String key) {
+            this.key = key;
+        }
+
+        private void add(long id, double latitude, double longitude, double radiusKm) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                radii = Arrays.copyOf(radii, capacity);
+            }
+            ids[size] = id;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            radii[size] = radiusKm;
+            size++;
+        }
+
+        private void remove(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    size--;
+                    ids[i] = ids[size];
+                    latitudes[i] = latitudes[size];
+                    longitudes[i] = longitudes[size];
+                    radii[i] = radii[size];
+                    return;
+                }
+            }
+        }
+    }
+}
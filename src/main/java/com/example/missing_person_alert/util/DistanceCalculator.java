@@ -3,6 +3,11 @@ package com.example.missing_person_alert.util;
 public class DistanceCalculator {
 
     private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double DEGREES_TO_RADIANS = Math.PI / 180.0;
+
+    // Range inside which the equirectangular error bound below has been verified
+    private static final double APPROXIMATION_MAX_KM = 200.0;
+    private static final double APPROXIMATION_MAX_LATITUDE = 70.0;
 
     public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
         double dLat = Math.toRadians(lat2 - lat1);
@@ -15,4 +20,151 @@ public class DistanceCalculator {
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
         return EARTH_RADIUS_KM * c;
     }
-}
\ No newline at end of file
+
+    /**
+     * Haversine distances in km from one point to {@code length} points given as parallel
+     * latitude/longitude arrays, written to {@code out}. The query point's trigonometry is
+     * computed once and nothing is allocated, so a single call can score tens of thousands of
+     * points.
+     */
+    public static void calculateDistances(double latitude, double longitude,
+                                          double[] latitudes, double[] longitudes, double[] out, int length) {
+        double lat1 = latitude * DEGREES_TO_RADIANS;
+        double lon1 = longitude * DEGREES_TO_RADIANS;
+        double cosLat1 = Math.cos(lat1);
+        for (int i = 0; i < length; i++) {
+            double lat2 = latitudes[i] * DEGREES_TO_RADIANS;
+            double sinHalfDLat = Math.sin((lat2 - lat1) / 2);
+            double sinHalfDLon = Math.sin((longitudes[i] * DEGREES_TO_RADIANS - lon1) / 2);
+            double a = sinHalfDLat * sinHalfDLat + cosLat1 * Math.cos(lat2) * sinHalfDLon * sinHalfDLon;
+            out[i] = 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+        }
+    }
+
+    /**
+     * Equirectangular approximation of {@link #calculateDistances}, scaling longitude by the
+     * cosine of the query latitude only. The loop is plain multiply/add/sqrt with no branches or
+     * trigonometry, which the JIT can auto-vectorize.
+     * <p>
+     * For distances d up to 200 km from a query point between 70&deg;S and 70&deg;N the relative
+     * error stays below {@code (tan|lat| / 4 + d / R) * d / R}, i.e. under 0.5% for 100 km anywhere
+     * in Germany. Outside that range use the exact haversine.
+     */
+    public static void approximateDistances(double latitude, double longitude,
+                                            double[] latitudes, double[] longitudes, double[] out, int length) {
+        double cosLat1 = Math.cos(latitude * DEGREES_TO_RADIANS);
+        double scale = EARTH_RADIUS_KM * DEGREES_TO_RADIANS;
+        for (int i = 0; i < length; i++) {
+            double x = wrapLongitude(longitudes[i] - longitude) * cosLat1;
+            double y = latitudes[i] - latitude;
+            out[i] = scale * Math.sqrt(x * x + y * y);
+        }
+    }
+
+    /**
+     * Writes the positions of the points within {@code radiusKm} of the query point to
+     * {@code outIndices}, their exact distances to the same slots of {@code outDistances}, and
+     * returns how many there are. Points are first screened with the squared equirectangular
+     * distance against a radius widened by the documented error bound, and only the survivors pay
+     * for an exact haversine, so the result is exact.
+     */
+    public static int filterWithinRadius(double latitude, double longitude, double radiusKm,
+                                         double[] latitudes, double[] longitudes, int length,
+                                         int[] outIndices, double[] outDistances) {
+        double lat1 = latitude * DEGREES_TO_RADIANS;
+        double lon1 = longitude * DEGREES_TO_RADIANS;
+        double cosLat1 = Math.cos(lat1);
+        boolean screen = radiusKm <= APPROXIMATION_MAX_KM && Math.abs(latitude) <= APPROXIMATION_MAX_LATITUDE;
+        double angular = radiusKm / EARTH_RADIUS_KM;
+        double margin = 1 + 2 * (Math.abs(Math.tan(lat1)) / 4 + angular) * angular;
+        // Screening threshold in squared degrees, so the hot loop needs no sqrt or trigonometry
+        double limitDegrees = Math.toDegrees(angular) * margin;
+        double limitSquared = limitDegrees * limitDegrees;
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (screen) {
+                double x = wrapLongitude(longitudes[i] - longitude) * cosLat1;
+                double y = latitudes[i] - latitude;
+                if (x * x + y * y > limitSquared) {
+                    continue;
+                }
+            }
+            double lat2 = latitudes[i] * DEGREES_TO_RADIANS;
+            double sinHalfDLat = Math.sin((lat2 - lat1) / 2);
+            double sinHalfDLon = Math.sin((longitudes[i] * DEGREES_TO_RADIANS - lon1) / 2);
+            double a = sinHalfDLat * sinHalfDLat + cosLat1 * Math.cos(lat2) * sinHalfDLon * sinHalfDLon;
+            double distance = 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+            if (distance <= radiusKm) {
+                outIndices[count] = i;
+                outDistances[count] = distance;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Maps a longitude difference into [-180, 180] without branching, so paths across the antimeridian stay short
+    private static double wrapLongitude(double deltaDegrees) {
+        return deltaDegrees - 360.0 * Math.rint(deltaDegrees / 360.0);
+    }
+
+    /**
+     * Smallest latitude/longitude box that contains every point within {@code radiusKm} of the
+     * given center. Boxes touching a pole or crossing the antimeridian widen to all longitudes,
+     * so the box is always a safe prefilter for an exact distance check.
+     */
+    public static BoundingBox boundingBox(double latitude, double longitude, double radiusKm) {
+        double angularRadius = radiusKm / EARTH_RADIUS_KM;
+        double deltaLat = Math.toDegrees(angularRadius);
+        double minLat = latitude - deltaLat;
+        double maxLat = latitude + deltaLat;
+
+        double ratio = Math.sin(angularRadius) / Math.cos(Math.toRadians(latitude));
+        if (minLat <= -90 || maxLat >= 90 || ratio >= 1) {
+            return new BoundingBox(Math.max(minLat, -90), Math.min(maxLat, 90), -180, 180);
+        }
+
+        double deltaLon = Math.toDegrees(Math.asin(ratio));
+        double minLon = longitude - deltaLon;
+        double maxLon = longitude + deltaLon;
+        if (minLon < -180 || maxLon > 180) {
+            return new BoundingBox(minLat, maxLat, -180, 180);
+        }
+        return new BoundingBox(minLat, maxLat, minLon, maxLon);
+    }
+
+    public static class BoundingBox {
+        private final double minLatitude;
+        private final double maxLatitude;
+        private final double minLongitude;
+        private final double maxLongitude;
+
+        public BoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+            this.minLatitude = minLatitude;
+            this.maxLatitude = maxLatitude;
+            this.minLongitude = minLongitude;
+            this.maxLongitude = maxLongitude;
+        }
+
+        public boolean contains(double latitude, double longitude) {
+            return latitude >= minLatitude && latitude <= maxLatitude
+                    && longitude >= minLongitude && longitude <= maxLongitude;
+        }
+
+        public double getMinLatitude() {
+            return minLatitude;
+        }
+
+        public double getMaxLatitude() {
+            return maxLatitude;
+        }
+
+        public double getMinLongitude() {
+            return minLongitude;
+        }
+
+        public double getMaxLongitude() {
+            return maxLongitude;
+        }
+    }
+}
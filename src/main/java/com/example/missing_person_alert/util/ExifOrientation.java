@@ -0,0 +1,96 @@
+package com.example.missing_person_alert.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads the EXIF orientation tag of a JPEG, which cameras set instead of rotating the pixels.
+ * Only the marker segments before the image data are scanned, so this reads a few kilobytes at
+ * most, not the whole file.
+ */
+public class ExifOrientation {
+
+    public static final int UPRIGHT = 1;
+
+    private static final int SOI = 0xD8;
+    private static final int SOS = 0xDA;
+    private static final int APP1 = 0xE1;
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * The orientation (1-8) declared by the JPEG in {@code in}, or {@link #UPRIGHT} if there is
+     * none or the data is not a JPEG.
+     */
+    public static int read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            if (data.readUnsignedByte() != 0xFF || data.readUnsignedByte() != SOI) {
+                return UPRIGHT;
+            }
+            while (true) {
+                int marker = data.readUnsignedByte();
+                if (marker != 0xFF) {
+                    return UPRIGHT;
+                }
+                int type = data.readUnsignedByte();
+                while (type == 0xFF) {
+                    // Fill bytes may pad a marker
+                    type = data.readUnsignedByte();
+                }
+                if (type == SOS) {
+                    return UPRIGHT;
+                }
+                int length = data.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return UPRIGHT;
+                }
+                byte[] segment = new byte[length];
+                data.readFully(segment);
+                if (type == APP1 && startsWithExifHeader(segment)) {
+                    return orientationFromTiff(ByteBuffer.wrap(segment, EXIF_HEADER.length, length - EXIF_HEADER.length).slice());
+                }
+            }
+        } catch (EOFException e) {
+            return UPRIGHT;
+        }
+    }
+
+    private static boolean startsWithExifHeader(byte[] segment) {
+        if (segment.length < EXIF_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < EXIF_HEADER.length; i++) {
+            if (segment[i] != EXIF_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int orientationFromTiff(ByteBuffer tiff) {
+        try {
+            // "II" = little endian, "MM" = big endian
+            tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int ifd = tiff.getInt(4);
+            int entries = tiff.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if ((tiff.getShort(entry) & 0xFFFF) == ORIENTATION_TAG) {
+                    int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                    return orientation >= 1 && orientation <= 8 ? orientation : UPRIGHT;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or corrupt EXIF block
+        }
+        return UPRIGHT;
+    }
+}
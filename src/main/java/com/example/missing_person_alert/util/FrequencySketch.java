@@ -0,0 +1,81 @@
+package com.example.missing_person_alert.util;
+
+/**
+ * Approximate, aging access counts for cache admission (TinyLFU). A count-min sketch: each key
+ * bumps one small saturating counter in each of four rows and its frequency is the smallest of
+ * them, so collisions can only overestimate. Every {@code 10 * width} additions all counters are
+ * halved, so keys that were popular a while ago make room for what is popular now.
+ * <p>
+ * Memory is fixed ({@code 4 * width} bytes) however many distinct keys are seen. Not thread-safe.
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedKeys roughly how many keys the cache it guards can hold
+     */
+    public FrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(16, expectedKeys - 1) << 1);
+        this.counters = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = frequency(hash);
+        if (frequency == MAX_COUNT) {
+            return;
+        }
+        // Conservative update: only the counters at the minimum grow, which limits overestimation
+        for (int row = 0; row < DEPTH; row++) {
+            byte[] counter = counters[row];
+            int index = indexOf(hash, row);
+            if (counter[index] == frequency) {
+                counter[index]++;
+            }
+        }
+        if (++additions == sampleSize) {
+            age();
+        }
+    }
+
+    public int frequency(Object key) {
+        return frequency(spread(key.hashCode()));
+    }
+
+    private int frequency(int hash) {
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters[row][indexOf(hash, row)]);
+        }
+        return min;
+    }
+
+    private void age() {
+        for (byte[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x45D9F3B;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.missing_person_alert.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-memory spatial index that buckets items into fixed-size latitude/longitude grid cells.
+ * <p>
+ * Readers work on an immutable snapshot and never block. Writers are serialized and publish a
+ * new snapshot that shares every untouched cell with the previous one (copy-on-write), which
+ * suits data that is read on every request but written only on publish and expiry.
+ */
+public class GeoGridIndex<T> {
+
+    // Half the earth's circumference: a radius this large covers every point
+    private static final double MAX_RADIUS_KM = 20016.0;
+    private static final double MIN_NEAREST_RADIUS_KM = 10.0;
+
+    private final double cellDegrees;
+    private final ToLongFunction<T> idOf;
+    private final Function<T, Double> latitudeOf;
+    private final Function<T, Double> longitudeOf;
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot = new Snapshot(new HashMap<>(), new HashMap<>());
+
+    public GeoGridIndex(double cellDegrees, ToLongFunction<T> idOf,
+                        Function<T, Double> latitudeOf, Function<T, Double> longitudeOf) {
+        if (cellDegrees <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellDegrees = cellDegrees;
+        this.idOf = idOf;
+        this.latitudeOf = latitudeOf;
+        this.longitudeOf = longitudeOf;
+    }
+
+    /**
+     * Adds or moves an item. Items without coordinates cannot be found by location and are
+     * dropped from the index instead.
+     */
+    public void put(T item) {
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Map<Long, Cell> cells = new HashMap<>(current.cells);
+            Map<Long, Long> cellById = new HashMap<>(current.cellById);
+            removeFrom(cells, cellById, idOf.applyAsLong(item));
+            addTo(cells, cellById, List.of(item));
+            snapshot = new Snapshot(cells, cellById);
+        }
+    }
+
+    public void removeAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            Snapshot current = snapshot;
+            Map<Long, Cell> cells = new HashMap<>(current.cells);
+            Map<Long, Long> cellById = new HashMap<>(current.cellById);
+            for (Long id : ids) {
+                removeFrom(cells, cellById, id);
+            }
+            snapshot = new Snapshot(cells, cellById);
+        }
+    }
+
+    public void replaceAll(Collection<T> items) {
+        Map<Long, Cell> cells = new HashMap<>();
+        Map<Long, Long> cellById = new HashMap<>();
+        addTo(cells, cellById, items);
+        synchronized (writeLock) {
+            snapshot = new Snapshot(cells, cellById);
+        }
+    }
+
+    public int size() {
+        return snapshot.cellById.size();
+    }
+
+    /**
+     * All matching items within {@code radiusKm} of the given point, nearest first.
+     */
+    public List<Hit<T>> withinRadius(double latitude, double longitude, double radiusKm, Predicate<? super T> filter) {
+        DistanceCalculator.BoundingBox box = DistanceCalculator.boundingBox(latitude, longitude, radiusKm);
+        List<Hit<T>> hits = new ArrayList<>();
+        int[] matches = new int[0];
+        double[] distances = new double[0];
+        for (Cell cell : cellsIn(snapshot, box)) {
+            int length = cell.ids.length;
+            if (matches.length < length) {
+                matches = new int[length];
+                distances = new double[length];
+            }
+            int count = DistanceCalculator.filterWithinRadius(latitude, longitude, radiusKm,
+                    cell.latitudes, cell.longitudes, length, matches, distances);
+            for (int m = 0; m < count; m++) {
+                T item = cell.item(matches[m]);
+                if (filter.test(item)) {
+                    hits.add(new Hit<>(item, distances[m]));
+                }
+            }
+        }
+        hits.sort(Comparator.comparingDouble(Hit::getDistanceKm));
+        return hits;
+    }
+
+    public List<T> withinBox(DistanceCalculator.BoundingBox box, Predicate<? super T> filter) {
+        List<T> items = new ArrayList<>();
+        for (Cell cell : cellsIn(snapshot, box)) {
+            for (int i = 0; i < cell.ids.length; i++) {
+                T item = cell.item(i);
+                if (box.contains(cell.latitudes[i], cell.longitudes[i]) && filter.test(item)) {
+                    items.add(item);
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * The {@code k} matching items closest to the given point, nearest first. The search radius
+     * doubles until it holds at least {@code k} hits, so sparse areas cost a few extra passes
+     * rather than a scan of every cell.
+     */
+    public List<Hit<T>> nearest(double latitude, double longitude, int k, Predicate<? super T> filter) {
+        if (k <= 0) {
+            return List.of();
+        }
+        double radiusKm = Math.max(MIN_NEAREST_RADIUS_KM, cellDegrees * 111.0);
+        while (true) {
+            List<Hit<T>> hits = withinRadius(latitude, longitude, radiusKm, filter);
+            if (hits.size() >= k || radiusKm >= MAX_RADIUS_KM) {
+                return hits.size() > k ? new ArrayList<>(hits.subList(0, k)) : hits;
+            }
+            radiusKm = Math.min(radiusKm * 2, MAX_RADIUS_KM);
+        }
+    }
+
+    private Collection<Cell> cellsIn(Snapshot current, DistanceCalculator.BoundingBox box) {
+        long minLat = index(box.getMinLatitude(), 90);
+        long maxLat = index(box.getMaxLatitude(), 90);
+        long minLon = index(box.getMinLongitude(), 180);
+        long maxLon = index(box.getMaxLongitude(), 180);
+        long covered = (maxLat - minLat + 1) * (maxLon - minLon + 1);
+        if (covered >= current.cells.size()) {
+            // Fewer occupied cells than cells in the box: scanning them is cheaper than probing
+            return current.cells.values();
+        }
+        List<Cell> cells = new ArrayList<>();
+        for (long latIndex = minLat; latIndex <= maxLat; latIndex++) {
+            for (long lonIndex = minLon; lonIndex <= maxLon; lonIndex++) {
+                Cell cell = current.cells.get(key(latIndex, lonIndex));
+                if (cell != null) {
+                    cells.add(cell);
+                }
+            }
+        }
+        return cells;
+    }
+
+    private void addTo(Map<Long, Cell> cells, Map<Long, Long> cellById, Collection<T> items) {
+        Map<Long, List<T>> added = new HashMap<>();
+        for (T item : items) {
+            Double latitude = latitudeOf.apply(item);
+            Double longitude = longitudeOf.apply(item);
+            if (latitude == null || longitude == null) {
+                continue;
+            }
+            long cellKey = key(index(latitude, 90), index(longitude, 180));
+            added.computeIfAbsent(cellKey, k -> new ArrayList<>()).add(item);
+            cellById.put(idOf.applyAsLong(item), cellKey);
+        }
+        added.forEach((cellKey, cellItems) -> cells.put(cellKey, Cell.append(cells.get(cellKey), cellItems, this)));
+    }
+
+    private void removeFrom(Map<Long, Cell> cells, Map<Long, Long> cellById, long id) {
+        Long cellKey = cellById.remove(id);
+        if (cellKey == null) {
+            return;
+        }
+        Cell shrunk = cells.get(cellKey).without(id);
+        if (shrunk == null) {
+            cells.remove(cellKey);
+        } else {
+            cells.put(cellKey, shrunk);
+        }
+    }
+
+    private long index(double degrees, double offset) {
+        return (long) Math.floor((degrees + offset) / cellDegrees);
+    }
+
+    private static long key(long latIndex, long lonIndex) {
+        return (latIndex << 32) | (lonIndex & 0xffffffffL);
+    }
+
+    private static final class Snapshot {
+        private final Map<Long, Cell> cells;
+        private final Map<Long, Long> cellById;
+
+        private Snapshot(Map<Long, Cell> cells, Map<Long, Long> cellById) {
+            this.cells = cells;
+            this.cellById = cellById;
+        }
+    }
+
+    /**
+     * Immutable cell contents, stored as parallel arrays so a scan touches contiguous memory.
+     */
+    private static final class Cell {
+        private final long[] ids;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final Object[] items;
+
+        private Cell(long[] ids, double[] latitudes, double[] longitudes, Object[] items) {
+            this.ids = ids;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.items = items;
+        }
+
+        private static <T> Cell append(Cell existing, List<T> added, GeoGridIndex<T> index) {
+            int offset = existing == null ? 0 : existing.ids.length;
+            int length = offset + added.size();
+            long[] ids = existing == null ? new long[length] : Arrays.copyOf(existing.ids, length);
+            double[] latitudes = existing == null ? new double[length] : Arrays.copyOf(existing.latitudes, length);
+            double[] longitudes = existing == null ? new double[length] : Arrays.copyOf(existing.longitudes, length);
+            Object[] items = existing == null ? new Object[length] : Arrays.copyOf(existing.items, length);
+            for (int i = 0; i < added.size(); i++) {
+                T item = added.get(i);
+                ids[offset + i] = index.idOf.applyAsLong(item);
+                latitudes[offset + i] = index.latitudeOf.apply(item);
+                longitudes[offset + i] = index.longitudeOf.apply(item);
+                items[offset + i] = item;
+            }
+            return new Cell(ids, latitudes, longitudes, items);
+        }
+
+        private Cell without(long id) {
+            int position = -1;
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position < 0) {
+                return this;
+            }
+            if (ids.length == 1) {
+                return null;
+            }
+            int length = ids.length - 1;
+            long[] newIds = new long[length];
+            double[] newLatitudes = new double[length];
+            double[] newLongitudes = new double[length];
+            Object[] newItems = new Object[length];
+            for (int i = 0, j = 0; i < ids.length; i++) {
+                if (i == position) {
+                    continue;
+                }
+                newIds[j] = ids[i];
+                newLatitudes[j] = latitudes[i];
+                newLongitudes[j] = longitudes[i];
+                newItems[j] = items[i];
+                j++;
+            }
+            return new Cell(newIds, newLatitudes, newLongitudes, newItems);
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> T item(int i) {
+            return (T) items[i];
+        }
+    }
+
+    public static class Hit<T> {
+        private final T item;
+        private final double distanceKm;
+
+        public Hit(T item, double distanceKm) {
+            this.item = item;
+            this.distanceKm = distanceKm;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.missing_person_alert.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geohash cells: the world split into a grid of {@code 32^precision} cells, each named by a
+ * base32 string whose prefixes name the enclosing coarser cells. A precision of 4 gives cells of
+ * about 24 x 20 km in Germany, 5 gives 5 x 5 km.
+ * <p>
+ * Cells are computed on integer row and column indices, so neighbouring cells share their edges
+ * exactly and a point on an edge belongs to exactly one cell.
+ */
+public final class Geohash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    // Longitudes take 28 and latitudes 27 of 55 bits, which a long holds comfortably
+    public static final int MAX_PRECISION = 11;
+    // A covering this large means the radius does not fit the precision
+    private static final int MAX_COVERING_CELLS = 1024;
+
+    private Geohash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        checkPrecision(precision);
+        return cell(row(latitude, precision), column(longitude, precision), precision);
+    }
+
+    /**
+     * The cells of the given precision that contain at least one point within {@code radiusKm}
+     * of the center, row by row from south-west to north-east. Every cell of the bounding box is
+     * checked against the point in it nearest to the center, so the covering is exact rather
+     * than the box. Throws {@link IllegalArgumentException} if it would take more than
+     * {@value #MAX_COVERING_CELLS} cells.
+     */
+    public static List<String> coveringCells(double latitude, double longitude, double radiusKm, int precision) {
+        checkPrecision(precision);
+        DistanceCalculator.BoundingBox box = DistanceCalculator.boundingBox(latitude, longitude, radiusKm);
+        long firstRow = row(box.getMinLatitude(), precision);
+        long lastRow = row(box.getMaxLatitude(), precision);
+        long firstColumn = column(box.getMinLongitude(), precision);
+        long lastColumn = column(box.getMaxLongitude(), precision);
+        if ((lastRow - firstRow + 1) * (lastColumn - firstColumn + 1) > MAX_COVERING_CELLS) {
+            throw new IllegalArgumentException("A radius of " + radiusKm + " km takes too many cells of precision " + precision);
+        }
+        double rowDegrees = 180.0 / (1L << latitudeBits(precision));
+        double columnDegrees = 360.0 / (1L << longitudeBits(precision));
+        List<String> cells = new ArrayList<>();
+        for (long row = firstRow; row <= lastRow; row++) {
+            double south = -90 + row * rowDegrees;
+            double nearestLatitude = Math.min(Math.max(latitude, south), south + rowDegrees);
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                double west = -180 + column * columnDegrees;
+                double nearestLongitude = Math.min(Math.max(longitude, west), west + columnDegrees);
+                if (DistanceCalculator.calculateDistance(latitude, longitude, nearestLatitude, nearestLongitude) <= radiusKm) {
+                    cells.add(cell(row, column, precision));
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static void checkPrecision(int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 1 and " + MAX_PRECISION);
+        }
+    }
+
+    private static int longitudeBits(int precision) {
+        return (5 * precision + 1) / 2;
+    }
+
+    private static int latitudeBits(int precision) {
+        return 5 * precision / 2;
+    }
+
+    private static long row(double latitude, int precision) {
+        return index((latitude + 90) / 180, latitudeBits(precision));
+    }
+
+    private static long column(double longitude, int precision) {
+        return index((longitude + 180) / 360, longitudeBits(precision));
+    }
+
+    // Clamped so that the north pole and the antimeridian fall into the last cell
+    private static long index(double fraction, int bits) {
+        long cells = 1L << bits;
+        return Math.min(Math.max((long) Math.floor(fraction * cells), 0), cells - 1);
+    }
+
+    // Interleaves the bits of column and row, starting with the column's highest
+    private static String cell(long row, long column, int precision) {
+        int longitudeBit = longitudeBits(precision);
+        int latitudeBit = latitudeBits(precision);
+        char[] hash = new char[precision];
+        for (int i = 0; i < precision; i++) {
+            int value = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                boolean isLongitude = (i * 5 + bit) % 2 == 0;
+                long taken = isLongitude ? (column >>> --longitudeBit) & 1 : (row >>> --latitudeBit) & 1;
+                value = (value << 1) | (int) taken;
+            }
+            hash[i] = BASE32[value];
+        }
+        return new String(hash);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.missing_person_alert.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Copies an uploaded image to disk in fixed-size chunks, so an upload never sits on the heap as a
+ * whole. The same pass hashes the content (SHA-256), identifies the format from its magic bytes
+ * and enforces the size limit. Data goes to a temp file that the caller moves into place
+ * atomically once it knows the final name, so a half-written or rejected upload is never visible.
+ */
+public class ImageStreamWriter {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private ImageStreamWriter() {
+    }
+
+    /**
+     * Streams {@code in} to a new temp file in {@code directory}, which the caller must move or
+     * delete. Throws {@link IllegalArgumentException} if the content is neither JPEG nor PNG or
+     * exceeds {@code maxBytes}; nothing is left on disk in that case.
+     */
+    public static Result write(InputStream in, Path directory, long maxBytes) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(directory, ".upload", ".tmp");
+        boolean complete = false;
+        try {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            byte[] header = new byte[PNG_MAGIC.length];
+            int headerLength = 0;
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    size += read;
+                    if (size > maxBytes) {
+                        throw new IllegalArgumentException("Image size must not exceed " + maxBytes / (1024 * 1024) + "MB");
+                    }
+                    if (headerLength < header.length) {
+                        int copied = Math.min(read, header.length - headerLength);
+                        System.arraycopy(chunk, 0, header, headerLength, copied);
+                        headerLength += copied;
+                    }
+                    digest.update(chunk, 0, read);
+                    buffer.clear().limit(read);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                channel.force(false);
+            }
+            String contentType = sniffContentType(header, headerLength);
+            if (contentType == null) {
+                throw new IllegalArgumentException("Only JPEG and PNG images are allowed");
+            }
+            complete = true;
+            return new Result(temp, HexFormat.of().formatHex(digest.digest()), contentType, size);
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    static String sniffContentType(byte[] header, int length) {
+        if (startsWith(header, length, JPEG_MAGIC)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, PNG_MAGIC)) {
+            return "image/png";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Result {
+        private final Path path;
+        private final String sha256;
+        private final String contentType;
+        private final long size;
+
+        public Result(Path path, String sha256, String contentType, long size) {
+            this.path = path;
+            this.sha256 = sha256;
+            this.contentType = contentType;
+            this.size = size;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.missing_person_alert.util;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * Difference hash (dHash) of an image: shrink to 9x8 grey pixels and record, for each row, whether
+ * brightness rises or falls from one pixel to the next. The 64 bits survive re-encoding, resizing,
+ * mild cropping and colour changes, so two uploads of the same photo end up a few bits apart
+ * (Hamming distance), while unrelated photos differ in about half of them.
+ */
+public class PerceptualHash {
+
+    private static final int WIDTH = 9;
+    private static final int HEIGHT = 8;
+
+    private PerceptualHash() {
+    }
+
+    public static long dHash(BufferedImage image) {
+        // Shrink in steps first, so the final 9x8 pixels average the whole image instead of sampling it
+        BufferedImage reduced = ImageScaling.scaleDown(image, WIDTH * HEIGHT);
+        BufferedImage grey = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = grey.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(reduced, 0, 0, WIDTH, HEIGHT, null);
+        } finally {
+            graphics.dispose();
+        }
+        Raster pixels = grey.getRaster();
+        long hash = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                hash <<= 1;
+                if (pixels.getSample(x, y, 0) < pixels.getSample(x + 1, y, 0)) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+}
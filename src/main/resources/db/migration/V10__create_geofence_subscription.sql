@@ -0,0 +1,15 @@
+-- Areas devices subscribe to: alerts last seen within radius_km of the center are sent to the
+-- token. Loaded into memory by GeofenceRegistry, which matches new alerts against them. Not tied
+-- to fcm_token by a foreign key, because token rows are written in deferred batches; the
+-- subscriptions of removed tokens are pruned periodically.
+CREATE TABLE IF NOT EXISTS geofence_subscription (
+    id         bigserial PRIMARY KEY,
+    token      varchar(1024) NOT NULL,
+    label      varchar(100),
+    latitude   double precision NOT NULL,
+    longitude  double precision NOT NULL,
+    radius_km  double precision NOT NULL,
+    created_at timestamp(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_geofence_subscription_token ON geofence_subscription (token);
@@ -0,0 +1,5 @@
+-- When the row was last written, on the database clock, so each instance can pick up the tokens
+-- other instances registered or changed by reading only the rows written since its last look.
+ALTER TABLE fcm_token ADD COLUMN IF NOT EXISTS updated_at timestamp(6) NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_fcm_token_updated_at ON fcm_token (updated_at);
@@ -0,0 +1,7 @@
+-- Lets every instance follow the subscriptions made and removed on the others by reading only
+-- the rows changed since its last look. A removed subscription keeps its row, marked by
+-- removed_at, for a day so the removal is seen everywhere, and is deleted after that.
+ALTER TABLE geofence_subscription ADD COLUMN IF NOT EXISTS updated_at timestamp(6) NOT NULL DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE geofence_subscription ADD COLUMN IF NOT EXISTS removed_at timestamp(6);
+
+CREATE INDEX IF NOT EXISTS idx_geofence_subscription_updated_at ON geofence_subscription (updated_at);
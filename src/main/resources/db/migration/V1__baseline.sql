@@ -0,0 +1,19 @@
+-- Schema as previously created by Hibernate (ddl-auto=update). IF NOT EXISTS lets databases that
+-- predate the migrations be baselined without changes.
+
+CREATE TABLE IF NOT EXISTS users (
+    id       bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username varchar(255) NOT NULL UNIQUE,
+    password varchar(255) NOT NULL,
+    role     varchar(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS person (
+    id                  bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    full_name           varchar(255) NOT NULL,
+    image_path          varchar(255) NOT NULL,
+    published_at        timestamp(6) NOT NULL,
+    last_seen_latitude  float(53),
+    last_seen_longitude float(53),
+    expires_at          timestamp(6) NOT NULL
+);
@@ -0,0 +1,55 @@
+-- Range-partitions person by expiry month. Queries for active alerts (expires_at > now) are pruned
+-- to the current and upcoming months, so their indexes stay small however long the history grows,
+-- and a month whose alerts have all expired is removed with a single DROP TABLE instead of row
+-- deletes and vacuum. Partitions ahead of time are created by PersonPartitionService.
+
+ALTER TABLE person RENAME TO person_unpartitioned;
+ALTER TABLE person_unpartitioned RENAME CONSTRAINT person_pkey TO person_unpartitioned_pkey;
+ALTER SEQUENCE IF EXISTS person_id_seq RENAME TO person_unpartitioned_id_seq;
+-- Indexes earlier builds created through ddl-auto; they are recreated on the partitioned table
+DROP INDEX IF EXISTS idx_person_published_at_id;
+DROP INDEX IF EXISTS idx_person_last_seen_lat_lon;
+DROP INDEX IF EXISTS idx_person_expires_at;
+
+-- The partition key has to be part of the primary key; ids stay unique through the identity sequence
+CREATE TABLE person (
+    id                  bigint GENERATED BY DEFAULT AS IDENTITY,
+    full_name           varchar(255) NOT NULL,
+    image_path          varchar(255) NOT NULL,
+    published_at        timestamp(6) NOT NULL,
+    last_seen_latitude  float(53),
+    last_seen_longitude float(53),
+    expires_at          timestamp(6) NOT NULL,
+    PRIMARY KEY (id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+DO $$
+DECLARE
+    month_start timestamp := date_trunc('month', least(now()::timestamp,
+            coalesce((SELECT min(expires_at) FROM person_unpartitioned), now()::timestamp)));
+    last_month  timestamp := date_trunc('month', greatest(now()::timestamp + interval '3 months',
+            coalesce((SELECT max(expires_at) FROM person_unpartitioned), now()::timestamp)));
+BEGIN
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF person FOR VALUES FROM (%L) TO (%L)',
+                'person_y' || to_char(month_start, 'YYYY') || 'm' || to_char(month_start, 'MM'),
+                month_start, month_start + interval '1 month');
+        month_start := month_start + interval '1 month';
+    END LOOP;
+END $$;
+
+-- Catches rows outside the pre-created months rather than failing the insert
+CREATE TABLE person_default PARTITION OF person DEFAULT;
+
+INSERT INTO person (id, full_name, image_path, published_at, last_seen_latitude, last_seen_longitude, expires_at)
+SELECT id, full_name, image_path, published_at, last_seen_latitude, last_seen_longitude, expires_at
+FROM person_unpartitioned;
+
+SELECT setval(pg_get_serial_sequence('person', 'id'), coalesce((SELECT max(id) FROM person), 0) + 1, false);
+
+DROP TABLE person_unpartitioned;
+
+-- Partitioned indexes: each partition gets its own, so pruned months are never touched
+CREATE INDEX idx_person_published_at_id ON person (published_at DESC, id DESC);
+CREATE INDEX idx_person_last_seen_lat_lon ON person (last_seen_latitude, last_seen_longitude, expires_at);
+CREATE INDEX idx_person_expires_at ON person (expires_at);
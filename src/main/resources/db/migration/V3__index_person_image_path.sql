@@ -0,0 +1,3 @@
+-- Photos are shared between alerts once stored by content hash; deleting one asks how many
+-- alerts still reference it.
+CREATE INDEX IF NOT EXISTS idx_person_image_path ON person (image_path);
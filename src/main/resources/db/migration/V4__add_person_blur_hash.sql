@@ -0,0 +1,3 @@
+-- BlurHash placeholder of the alert's photo, computed when it is uploaded. Earlier alerts keep
+-- NULL and are shown without a placeholder.
+ALTER TABLE person ADD COLUMN IF NOT EXISTS blur_hash varchar(64);
@@ -0,0 +1,3 @@
+-- 64-bit perceptual hash (dHash) of the alert's photo, used to flag duplicate reports on publish.
+-- Only the in-memory index of active alerts is searched, so no index is needed here.
+ALTER TABLE person ADD COLUMN IF NOT EXISTS photo_hash bigint;
@@ -0,0 +1,3 @@
+-- Place name of the last-seen coordinates, looked up once by the publish pipeline instead of on
+-- every view of the confirmation page. NULL until the lookup has run, and for earlier alerts.
+ALTER TABLE person ADD COLUMN IF NOT EXISTS location_name varchar(255);
@@ -0,0 +1,7 @@
+-- Web push tokens registered for alert notifications. Written in batches by FcmTokenRegistry
+-- with upserts, so registering a known token again only moves last_seen_at.
+CREATE TABLE IF NOT EXISTS fcm_token (
+    token         varchar(1024) PRIMARY KEY,
+    registered_at timestamp(6) NOT NULL,
+    last_seen_at  timestamp(6) NOT NULL
+);
@@ -0,0 +1,6 @@
+-- Delivery health of each FCM token, so tokens of devices that keep failing are first skipped
+-- for a while (quarantined_until) and eventually removed. last_success_at is NULL until the first
+-- delivery.
+ALTER TABLE fcm_token ADD COLUMN IF NOT EXISTS failure_count integer NOT NULL DEFAULT 0;
+ALTER TABLE fcm_token ADD COLUMN IF NOT EXISTS last_success_at timestamp(6);
+ALTER TABLE fcm_token ADD COLUMN IF NOT EXISTS quarantined_until timestamp(6);
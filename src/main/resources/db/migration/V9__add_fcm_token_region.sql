@@ -0,0 +1,3 @@
+-- The geohash cell whose region topic the token is subscribed to, NULL for tokens that receive
+-- every alert through the nationwide fan-out. Coarse on purpose: a cell is about 24 x 20 km.
+ALTER TABLE fcm_token ADD COLUMN IF NOT EXISTS region varchar(12);
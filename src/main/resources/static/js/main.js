@@ -1,5 +1,6 @@
 const apiUrl = '/api/persons';
 let currentPage = 0;
+let nextCursor = null;
 const pageSize = 10;
 let userLocation = null;
 
@@ -81,8 +82,36 @@ document.addEventListener('DOMContentLoaded', async () => {
     if (loadMoreButton) {
         loadMoreButton.addEventListener('click', loadAlerts);
     }
+    if (alertList) {
+        subscribeToAlertStream();
+    }
 });
 
+// Live updates: the browser reconnects on its own and resumes via Last-Event-ID
+function subscribeToAlertStream() {
+    if (!('EventSource' in window)) {
+        return;
+    }
+    const source = new EventSource(`${apiUrl}/stream`);
+    let reloadTimer = null;
+    const reloadFirstPage = () => {
+        clearTimeout(reloadTimer);
+        reloadTimer = setTimeout(() => {
+            currentPage = 0;
+            nextCursor = null;
+            loadAlerts();
+        }, 500);
+    };
+    source.addEventListener('added', (event) => {
+        const person = JSON.parse(event.data);
+        console.log('New alert received:', person.id);
+        reloadFirstPage();
+    });
+    source.addEventListener('expired', reloadFirstPage);
+    source.addEventListener('reset', reloadFirstPage);
+    source.onerror = () => console.warn('Alert stream interrupted, reconnecting...');
+}
+
 async function requestNotificationPermission(registration) {
     try {
         const permission = await Notification.requestPermission();
@@ -93,10 +122,14 @@ async function requestNotificationPermission(registration) {
                 serviceWorkerRegistration: registration
             });
             console.log('FCM Token:', token);
+            // With a location the server subscribes this browser to alerts around it only
+            const payload = userLocation
+                ? { token, latitude: userLocation.latitude, longitude: userLocation.longitude }
+                : { token };
             await fetch('/api/notifications/register', {
                 method: 'POST',
                 headers: { 'Content-Type': 'application/json' },
-                body: JSON.stringify({ token })
+                body: JSON.stringify(payload)
             });
         }
     } catch (error) {
@@ -132,6 +165,9 @@ async function handleFormSubmit(event) {
             body: formData,
         });
 
+        if (response.status === 503) {
+            throw new Error('Zu viele Veröffentlichungen gleichzeitig, bitte in einigen Sekunden erneut versuchen');
+        }
         if (!response.ok) {
             const errorText = await response.text();
             throw new Error(errorText || 'Fehler beim Veröffentlichen');
@@ -157,7 +193,9 @@ async function loadAlerts() {
     }
 
     try {
-        let url = `${apiUrl}?page=${currentPage}&size=${pageSize}`;
+        let url = nextCursor
+            ? `${apiUrl}?cursor=${encodeURIComponent(nextCursor)}&size=${pageSize}`
+            : `${apiUrl}?page=${currentPage}&size=${pageSize}`;
         if (userLocation) {
             url += `&userLatitude=${userLocation.latitude}&userLongitude=${userLocation.longitude}`;
         }
@@ -175,6 +213,7 @@ async function loadAlerts() {
             throw new Error(`HTTP error ${response.status}: ${errorText}`);
         }
 
+        nextCursor = response.headers.get('X-Next-Cursor');
         const alerts = await response.json();
         console.log('Received alerts:', JSON.stringify(alerts, null, 2));
 
@@ -184,33 +223,17 @@ async function loadAlerts() {
                 console.log('No alerts found');
             } else {
                 for (const alert of alerts) {
-                    const imageUrl = `/api/persons/image/${alert.imagePath}`;
-                    let locationName = '';
-                    if (alert.lastSeenLatitude && alert.lastSeenLongitude) {
-                        try {
-                            const response = await fetch(
-                                `https://nominatim.openstreetmap.org/reverse?format=json&lat=${alert.lastSeenLatitude}&lon=${alert.lastSeenLongitude}&zoom=10&addressdetails=1`,
-                                {
-                                    headers: {
-                                        'User-Agent': 'MissingPersonAlertSystem/1.0 (contact: mamocool3@gmail.com)',
-                                    },
-                                }
-                            );
-                            if (!response.ok) {
-                                throw new Error('Failed to fetch location name');
-                            }
-                            const data = await response.json();
-                            locationName = data.display_name || `${alert.lastSeenLatitude}, ${alert.lastSeenLongitude}`;
-                        } catch (error) {
-                            console.error('Error fetching location name:', error.message);
-                            locationName = `${alert.lastSeenLatitude}, ${alert.lastSeenLongitude}`;
-                        }
+                    const imageUrl = `/api/persons/image/${alert.imagePath}?size=list`;
+                    // Looked up once by the server when the alert was published
+                    let locationName = alert.locationName || '';
+                    if (!locationName && alert.lastSeenLatitude && alert.lastSeenLongitude) {
+                        locationName = `${alert.lastSeenLatitude}, ${alert.lastSeenLongitude}`;
                     }
 
                     const card = document.createElement('div');
                     card.className = 'alert-card';
                     card.innerHTML = `
-                        <img src="${imageUrl}" alt="${alert.fullName}" onerror="this.src='/images/placeholder.jpg'; this.alt='Bild nicht verfügbar';" role="img" aria-label="Foto von ${alert.fullName}">
+                        <img src="${imageUrl}" alt="${alert.fullName}" loading="lazy" decoding="async" onerror="this.src='/images/placeholder.jpg'; this.alt='Bild nicht verfügbar';" role="img" aria-label="Foto von ${alert.fullName}">
                         <div>
                             <h3>${alert.fullName}</h3>
                             <p>Veröffentlicht: ${new Date(alert.publishedAt).toLocaleString('de-DE')}</p>
@@ -225,7 +248,8 @@ async function loadAlerts() {
         currentPage++;
         const loadMoreButton = document.getElementById('load-more');
         if (loadMoreButton) {
-            loadMoreButton.style.display = alerts.length === pageSize ? 'block' : 'none';
+            const hasMore = userLocation ? alerts.length === pageSize : nextCursor;
+            loadMoreButton.style.display = hasMore ? 'block' : 'none';
         }
     } catch (error) {
         console.error('Error loading alerts:', error.message);
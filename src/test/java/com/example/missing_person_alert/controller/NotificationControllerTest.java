@@ -1,23 +1,42 @@
 package com.example.missing_person_alert.controller;
 
+import com.example.missing_person_alert.firebase.FcmTokenRegistry;
+import com.example.missing_person_alert.firebase.FirebaseService;
+import com.example.missing_person_alert.firebase.GeofenceRegistry;
+import com.example.missing_person_alert.model.GeofenceSubscription;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.StreamSupport;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class NotificationControllerTest {
 
+    private FcmTokenRegistry tokenRegistry;
+    private GeofenceRegistry geofenceRegistry;
+    private FirebaseService firebaseService;
     private NotificationController notificationController;
 
     @BeforeEach
     void setUp() {
-        notificationController = new NotificationController();
+        tokenRegistry = new FcmTokenRegistry(mock(JdbcTemplate.class), 100);
+        geofenceRegistry = mock(GeofenceRegistry.class);
+        firebaseService = mock(FirebaseService.class);
+        notificationController = new NotificationController(tokenRegistry, geofenceRegistry, firebaseService);
     }
 
     @Test
@@ -31,9 +50,9 @@ class NotificationControllerTest {
         ResponseEntity<Void> response = notificationController.registerToken(payload);
 
         // Assert
-        assertEquals(200, response.getStatusCodeValue());
-        assertTrue(notificationController.getFcmTokens().contains(token));
-        assertEquals(1, notificationController.getFcmTokens().size());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(tokenRegistry.contains(token));
+        assertEquals(1, tokenRegistry.size());
     }
 
     @Test
@@ -48,9 +67,9 @@ class NotificationControllerTest {
         ResponseEntity<Void> response = notificationController.registerToken(payload);
 
         // Assert
-        assertEquals(200, response.getStatusCodeValue());
-        assertEquals(1, notificationController.getFcmTokens().size());
-        assertTrue(notificationController.getFcmTokens().contains(token));
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, tokenRegistry.size());
+        assertTrue(tokenRegistry.contains(token));
     }
 
     @Test
@@ -63,8 +82,8 @@ class NotificationControllerTest {
         ResponseEntity<Void> response = notificationController.registerToken(payload);
 
         // Assert
-        assertEquals(200, response.getStatusCodeValue());
-        assertEquals(0, notificationController.getFcmTokens().size());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(0, tokenRegistry.size());
     }
 
     @Test
@@ -76,10 +95,95 @@ class NotificationControllerTest {
         notificationController.registerToken(payload);
 
         // Act
-        List<String> tokens = notificationController.getFcmTokens();
+        List<String> tokens = StreamSupport.stream(tokenRegistry.tokens().spliterator(), false).toList();
 
         // Assert
         assertEquals(1, tokens.size());
         assertTrue(tokens.contains(token));
     }
-}
\ No newline at end of file
+
+    @Test
+    void subscribesTokenWithLocationToItsRegion() {
+        // Arrange
+        Map<String, String> payload = new HashMap<>();
+        payload.put("token", "test-token-123");
+        payload.put("latitude", "52.52");
+        payload.put("longitude", "13.405");
+
+        // Act
+        ResponseEntity<Void> response = notificationController.registerToken(payload);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(tokenRegistry.contains("test-token-123"));
+        verify(firebaseService).subscribeToRegion("test-token-123", 52.52, 13.405);
+    }
+
+    @Test
+    void rejectsInvalidLocation() {
+        // Arrange
+        Map<String, String> payload = new HashMap<>();
+        payload.put("token", "test-token-123");
+        payload.put("latitude", "152.52");
+        payload.put("longitude", "13.405");
+
+        // Act
+        ResponseEntity<Void> response = notificationController.registerToken(payload);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(0, tokenRegistry.size());
+        verify(firebaseService, never()).subscribeToRegion(anyString(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void subscribesTokenToAnArea() {
+        // Arrange
+        GeofenceSubscription subscription = new GeofenceSubscription(7, "test-token-123", "Home", 52.52, 13.405, 5);
+        when(geofenceRegistry.subscribe("test-token-123", "Home", 52.52, 13.405, 5)).thenReturn(subscription);
+
+        // Act
+        ResponseEntity<GeofenceSubscription> response = notificationController.subscribe(Map.of(
+                "token", "test-token-123", "label", "Home", "latitude", "52.52", "longitude", "13.405", "radiusKm", "5"));
+
+        // Assert
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(subscription, response.getBody());
+        assertTrue(tokenRegistry.contains("test-token-123"));
+        verify(firebaseService).leaveRegion("test-token-123");
+    }
+
+    @Test
+    void answersConflictWhenTheTokenHasTooManyAreas() {
+        // Arrange
+        when(geofenceRegistry.subscribe("test-token-123", null, 52.52, 13.405, 5)).thenReturn(null);
+
+        // Act
+        ResponseEntity<GeofenceSubscription> response = notificationController.subscribe(Map.of(
+                "token", "test-token-123", "latitude", "52.52", "longitude", "13.405", "radiusKm", "5"));
+
+        // Assert
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        verify(firebaseService, never()).leaveRegion(anyString());
+    }
+
+    @Test
+    void rejectsSubscriptionWithoutRadius() {
+        // Act
+        ResponseEntity<GeofenceSubscription> response = notificationController.subscribe(Map.of(
+                "token", "test-token-123", "latitude", "52.52", "longitude", "13.405"));
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void unsubscribesOnlyOwnAreas() {
+        // Arrange
+        when(geofenceRegistry.unsubscribe("test-token-123", 7)).thenReturn(true);
+
+        // Act & Assert
+        assertEquals(HttpStatus.NO_CONTENT, notificationController.unsubscribe(7, "test-token-123").getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, notificationController.unsubscribe(7, "other-token").getStatusCode());
+    }
+}
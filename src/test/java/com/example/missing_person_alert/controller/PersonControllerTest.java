@@ -1,30 +1,53 @@
 package com.example.missing_person_alert.controller;
 
 import com.example.missing_person_alert.entity.Person;
-import com.example.missing_person_alert.firebase.FirebaseService;
 import com.example.missing_person_alert.model.EmergencyAlert;
+import com.example.missing_person_alert.model.PageCursor;
+import com.example.missing_person_alert.model.PersonChanges;
+import com.example.missing_person_alert.model.PersonSummary;
+import com.example.missing_person_alert.model.PossibleDuplicate;
+import com.example.missing_person_alert.model.PublishResponse;
+import com.example.missing_person_alert.model.PublishStatus;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.missing_person_alert.service.AlertStreamService;
 import com.example.missing_person_alert.service.EmergencyAlertService;
+import com.example.missing_person_alert.service.GeocodingService;
+import com.example.missing_person_alert.service.ImageByteCache;
+import com.example.missing_person_alert.service.ImageDeliveryService;
+import com.example.missing_person_alert.service.ImageDerivativeService;
+import com.example.missing_person_alert.service.ImageStore;
 import com.example.missing_person_alert.service.PersonService;
+import com.example.missing_person_alert.service.PublishPipeline;
+import com.example.missing_person_alert.service.ResumableUploadService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.MessageSource;
-import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.ui.Model;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -37,6 +60,8 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
 class PersonControllerTest {
@@ -45,20 +70,39 @@ class PersonControllerTest {
     private PersonService personService;
 
     @Mock
-    private FirebaseService firebaseService;
+    private EmergencyAlertService emergencyAlertService;
 
     @Mock
-    private EmergencyAlertService emergencyAlertService;
+    private AlertStreamService alertStreamService;
+
+    @Mock
+    private ImageDerivativeService imageDerivativeService;
 
     @Mock
     private MessageSource messageSource;
 
     @Mock
-    private RestTemplate restTemplate;
+    private GeocodingService geocodingService;
+
+    @Mock
+    private PublishPipeline publishPipeline;
+
+    @Mock
+    private ResumableUploadService resumableUploadService;
 
     @Mock
     private Model model;
 
+    @Spy
+    private ImageStore imageStore = new ImageStore("uploads");
+
+    @Spy
+    private ImageDeliveryService imageDeliveryService = new ImageDeliveryService(imageStore,
+            new ImageByteCache(imageStore, 1024 * 1024, 64 * 1024));
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
     @InjectMocks
     private PersonController personController;
 
@@ -101,14 +145,128 @@ class PersonControllerTest {
 
         when(personService.savePerson(anyString(), any(), any(), any()))
                 .thenReturn(testPerson);
+        runPersistStep();
 
-        ResponseEntity<Person> response = personController.publishAlert(
+        ResponseEntity<PublishResponse> response = personController.publishAlert(
                 "Test Person", image, 52.52, 13.41);
 
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(testPerson, response.getBody());
+        // Accepted once saved; images and notifications are left to the pipeline
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("/api/persons/publish/1/status", response.getHeaders().getLocation().toString());
+        assertEquals("/api/persons/publish/1/status", response.getBody().getStatusUrl());
+        assertEquals(testPerson, response.getBody().getPerson());
+        assertTrue(response.getBody().getPossibleDuplicates().isEmpty());
         verify(personService).savePerson(eq("Test Person"), any(), eq(52.52), eq(13.41));
-        verify(firebaseService).sendNotification(testPerson, Locale.GERMAN);
+        verifyNoInteractions(imageDerivativeService);
+    }
+
+    @Test
+    void rejectsPublishWhenPipelineIsFull() throws IOException {
+        MockMultipartFile image = new MockMultipartFile(
+                "image", "test.jpg", "image/jpeg", "test image content".getBytes());
+        when(publishPipeline.submit(any())).thenReturn(null);
+
+        ResponseEntity<PublishResponse> response = personController.publishAlert(
+                "Test Person", image, 52.52, 13.41);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("5", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(personService, never()).savePerson(anyString(), any(), any(), any());
+    }
+
+    @Test
+    void createsResumableUpload() throws IOException {
+        ResumableUploadService.Upload upload = mock(ResumableUploadService.Upload.class);
+        when(upload.getId()).thenReturn("abc");
+        when(resumableUploadService.create(300_000, "image/jpeg", "Test Person", 52.52, 13.41)).thenReturn(upload);
+
+        ResponseEntity<Void> response = personController.createUpload(300_000, "Test Person", "image/jpeg", 52.52, 13.41);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals("/api/persons/publish/uploads/abc", response.getHeaders().getLocation().toString());
+        assertEquals("0", response.getHeaders().getFirst("Upload-Offset"));
+    }
+
+    @Test
+    void reportsUploadOffsetForResuming() {
+        ResumableUploadService.Upload upload = mock(ResumableUploadService.Upload.class);
+        when(upload.getOffset()).thenReturn(120_000L);
+        when(upload.getLength()).thenReturn(300_000L);
+        when(resumableUploadService.get("abc")).thenReturn(upload);
+
+        ResponseEntity<Void> response = personController.getUploadOffset("abc");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("120000", response.getHeaders().getFirst("Upload-Offset"));
+        assertEquals("300000", response.getHeaders().getFirst("Upload-Length"));
+    }
+
+    @Test
+    void publishesCompletedUpload() throws IOException {
+        ResumableUploadService.Upload upload = mock(ResumableUploadService.Upload.class);
+        when(resumableUploadService.get("abc")).thenReturn(upload);
+        when(resumableUploadService.publish(upload)).thenReturn(testPerson);
+        runPersistStep();
+
+        ResponseEntity<PublishResponse> response = personController.publishUpload("abc");
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals(testPerson, response.getBody().getPerson());
+    }
+
+    @Test
+    void refusesToPublishIncompleteUpload() throws IOException {
+        ResumableUploadService.Upload upload = mock(ResumableUploadService.Upload.class);
+        when(resumableUploadService.get("abc")).thenReturn(upload);
+        when(resumableUploadService.publish(upload)).thenThrow(new IllegalStateException("Upload is incomplete"));
+        runPersistStep();
+
+        ResponseEntity<PublishResponse> response = personController.publishUpload("abc");
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+
+    @Test
+    void returnsPublishStatus() {
+        PublishStatus status = new PublishStatus(1L);
+        when(publishPipeline.getStatus(1L)).thenReturn(status);
+
+        ResponseEntity<PublishStatus> response = personController.getPublishStatus(1L);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(status, response.getBody());
+    }
+
+    @Test
+    void returnsNotFoundForUnknownPublishStatus() {
+        when(publishPipeline.getStatus(9L)).thenReturn(null);
+
+        ResponseEntity<PublishStatus> response = personController.getPublishStatus(9L);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void reportsPossibleDuplicatesWhenPublishing() throws IOException {
+        MockMultipartFile image = new MockMultipartFile(
+                "image", "test.jpg", "image/jpeg", "test image content".getBytes());
+        Person earlier = new Person();
+        earlier.setId(7L);
+        earlier.setFullName("Test Person");
+        earlier.setImagePath("earlier.jpg");
+        when(personService.savePerson(anyString(), any(), any(), any())).thenReturn(testPerson);
+        when(personService.findPossibleDuplicates(testPerson, 5)).thenReturn(List.of(new PossibleDuplicate(earlier, 2)));
+        runPersistStep();
+
+        ResponseEntity<PublishResponse> response = personController.publishAlert(
+                "Test Person", image, 52.52, 13.41);
+
+        // The alert's own fields stay at the top level, as before
+        JsonNode json = objectMapper.valueToTree(response.getBody());
+        assertEquals(1L, json.get("id").asLong());
+        assertEquals("test.jpg", json.get("imagePath").asText());
+        assertEquals(7L, json.get("possibleDuplicates").get(0).get("person").get("id").asLong());
+        assertEquals(2, json.get("possibleDuplicates").get(0).get("distance").asInt());
     }
 
     @Test
@@ -118,8 +276,9 @@ class PersonControllerTest {
 
         when(personService.savePerson(anyString(), any(), any(), any()))
                 .thenThrow(new IOException("Test error"));
+        runPersistStep();
 
-        ResponseEntity<Person> response = personController.publishAlert(
+        ResponseEntity<PublishResponse> response = personController.publishAlert(
                 "Test Person", image, 52.52, 13.41);
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
@@ -129,6 +288,7 @@ class PersonControllerTest {
     @Test
     void showsAlertConfirmation() {
         when(personService.getPersonById(1L)).thenReturn(Optional.of(testPerson));
+        when(geocodingService.getLocationName(52.52, 13.41)).thenReturn("Berlin, Deutschland");
 
         String viewName = personController.showAlertConfirmation(1L, model);
 
@@ -140,16 +300,167 @@ class PersonControllerTest {
 
     @Test
     void fetchesAllPersons() {
-        Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "publishedAt"));
+        Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "publishedAt", "id"));
         Page<Person> page = new PageImpl<>(Collections.singletonList(testPerson));
 
         when(personService.getAll(pageable)).thenReturn(page);
 
-        ResponseEntity<List<Person>> response = personController.getAllPersons(0, 10, null, null);
+        ResponseEntity<List<PersonSummary>> response = personController.getAllPersons(0, 10, null, null, null, 50.0);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(1, response.getBody().size());
-        assertEquals(testPerson, response.getBody().get(0));
+        assertEquals(testPerson.getId(), response.getBody().get(0).getId());
+        assertEquals(testPerson.getFullName(), response.getBody().get(0).getFullName());
+        assertNull(response.getHeaders().getFirst(PersonController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void returnsNextCursorForFullPage() {
+        Pageable pageable = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "publishedAt", "id"));
+        when(personService.getAll(pageable)).thenReturn(new PageImpl<>(List.of(testPerson)));
+
+        ResponseEntity<List<PersonSummary>> response = personController.getAllPersons(0, 1, null, null, null, 50.0);
+
+        String nextCursor = response.getHeaders().getFirst(PersonController.NEXT_CURSOR_HEADER);
+        assertNotNull(nextCursor);
+        PageCursor decoded = PageCursor.decode(nextCursor);
+        assertEquals(testPerson.getPublishedAt(), decoded.getPublishedAt());
+        assertEquals(testPerson.getId(), decoded.getId());
+    }
+
+    @Test
+    void fetchesPersonsAfterCursor() {
+        String cursor = new PageCursor(testPerson.getPublishedAt(), 5L).encode();
+        when(personService.getAllAfter(argThat(c -> c.getId() == 5L), eq(10)))
+                .thenReturn(List.of(testPerson));
+
+        ResponseEntity<List<PersonSummary>> response = personController.getAllPersons(0, 10, cursor, null, null, 50.0);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(testPerson.getId()), response.getBody().stream().map(PersonSummary::getId).toList());
+        verify(personService, never()).getAll(any());
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        ResponseEntity<List<PersonSummary>> response = personController.getAllPersons(0, 10, "not-a-cursor", null, null, 50.0);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(personService);
+    }
+
+    @Test
+    void returnsSameETagForUnchangedList() {
+        when(personService.getActiveAlertsVersion()).thenReturn(42L);
+        when(personService.getAll(any())).thenReturn(new PageImpl<>(List.of(testPerson)));
+
+        String first = personController.getAllPersons(0, 10, null, null, null, 50.0).getHeaders().getETag();
+        String second = personController.getAllPersons(0, 10, null, null, null, 50.0).getHeaders().getETag();
+
+        assertNotNull(first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void answersMatchingIfNoneMatchWithNotModified() throws Exception {
+        when(personService.getActiveAlertsVersion()).thenReturn(42L);
+        when(personService.getAll(any())).thenReturn(new PageImpl<>(List.of(testPerson)));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(personController).build();
+
+        String eTag = mockMvc.perform(get("/api/persons"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/persons").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void fetchesNearbyPersonsWhenLocationGiven() {
+        when(personService.findNearby(52.5, 13.4, 25.0, 0, 10)).thenReturn(List.of(testPerson));
+
+        ResponseEntity<List<PersonSummary>> response = personController.getAllPersons(0, 10, null, 52.5, 13.4, 25.0);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(testPerson.getId()), response.getBody().stream().map(PersonSummary::getId).toList());
+        verify(personService, never()).getAll(any());
+    }
+
+    @Test
+    void exportsActivePersonsAsJsonArray() throws Exception {
+        when(personService.writeActiveSummaries(any())).thenAnswer(invocation -> {
+            JsonGenerator generator = invocation.getArgument(0);
+            generator.writeObject(PersonSummary.from(testPerson));
+            return 1;
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ResponseEntity<StreamingResponseBody> response = personController.exportPersons();
+        response.getBody().writeTo(out);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JsonNode exported = objectMapper.readTree(out.toByteArray());
+        assertEquals(1, exported.size());
+        assertEquals(1L, exported.get(0).get("id").asLong());
+        assertEquals("Test Person", exported.get(0).get("fullName").asText());
+        assertFalse(exported.get(0).has("expiresAt"));
+    }
+
+    @Test
+    void rejectsNonPositiveRadius() {
+        ResponseEntity<List<PersonSummary>> response = personController.getAllPersons(0, 10, null, 52.5, 13.4, 0);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(personService);
+    }
+
+    @Test
+    void fetchesChangesSinceCursor() {
+        PersonChanges changes = new PersonChanges("next", false, false, List.of(testPerson), List.of(2L));
+        when(personService.getChangesSince("since")).thenReturn(changes);
+
+        ResponseEntity<PersonChanges> response = personController.getChanges("since");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(changes, response.getBody());
+    }
+
+    @Test
+    void opensAlertStreamResumingFromLastEventId() {
+        SseEmitter emitter = new SseEmitter();
+        when(alertStreamService.subscribe("last")).thenReturn(emitter);
+
+        ResponseEntity<SseEmitter> response = personController.streamAlerts("last");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(emitter, response.getBody());
+    }
+
+    @Test
+    void rejectsAlertStreamWhenFull() {
+        when(alertStreamService.subscribe(null)).thenReturn(null);
+
+        ResponseEntity<SseEmitter> response = personController.streamAlerts(null);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+    }
+
+    @Test
+    void fetchesNearestPersons() {
+        when(personService.findNearest(52.5, 13.4, 5)).thenReturn(List.of(testPerson));
+
+        ResponseEntity<List<PersonSummary>> response = personController.getNearestPersons(52.5, 13.4, 5);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(testPerson.getId()), response.getBody().stream().map(PersonSummary::getId).toList());
+    }
+
+    @Test
+    void rejectsInvertedArea() {
+        ResponseEntity<List<PersonSummary>> response = personController.getPersonsInArea(53.0, 52.0, 13.0, 14.0, 100);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(personService);
     }
 
     @Test
@@ -159,15 +470,18 @@ class PersonControllerTest {
         Path testFilePath = Paths.get("uploads", filename);
         Files.createDirectories(testFilePath.getParent());
         Files.write(testFilePath, "test image content".getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
 
         try {
             // Test
-            ResponseEntity<Resource> response = personController.serveImage(filename);
+            personController.serveImage(filename, null, new MockHttpServletRequest("GET", "/"), response);
 
             // Verify
-            assertEquals(HttpStatus.OK, response.getStatusCode());
-            assertNotNull(response.getBody());
-            assertEquals(MediaType.IMAGE_JPEG, response.getHeaders().getContentType());
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertEquals("test image content", response.getContentAsString());
+            assertEquals(MediaType.IMAGE_JPEG_VALUE, response.getContentType());
+            assertEquals("no-cache", response.getHeader(HttpHeaders.CACHE_CONTROL));
+            assertNotNull(response.getHeader(HttpHeaders.ETAG));
         } finally {
             // Clean up
             Files.deleteIfExists(testFilePath);
@@ -175,19 +489,128 @@ class PersonControllerTest {
     }
 
     @Test
-    void returnsNotFoundForMissingImage() {
-        ResponseEntity<Resource> response = personController.serveImage("nonexistent.jpg");
+    void servesContentAddressedImageAsImmutable() throws IOException {
+        String key = "ab".repeat(32) + ".jpg";
+        Path blob = imageStore.resolve(key);
+        Files.createDirectories(blob.getParent());
+        Files.write(blob, "test image content".getBytes());
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + "ab".repeat(32) + "\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
 
-        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        try {
+            personController.serveImage(key, null, request, response);
+
+            assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+            assertEquals(0, response.getContentAsByteArray().length);
+            assertEquals("max-age=31536000, public, immutable", response.getHeader(HttpHeaders.CACHE_CONTROL));
+        } finally {
+            Files.deleteIfExists(blob);
+            Files.deleteIfExists(blob.getParent());
+            Files.deleteIfExists(blob.getParent().getParent());
+        }
+    }
+
+    @Test
+    void servesRequestedImageDerivative() throws IOException {
+        Path derivative = Paths.get("uploads", "test.jpg.thumb.jpg");
+        Files.createDirectories(derivative.getParent());
+        Files.write(derivative, "thumbnail content".getBytes());
+        when(imageDerivativeService.findDerivative("test.jpg", ImageDerivativeService.Size.THUMBNAIL))
+                .thenReturn(derivative);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        try {
+            personController.serveImage("test.jpg", "thumb", new MockHttpServletRequest("GET", "/"), response);
+
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertEquals(MediaType.IMAGE_JPEG_VALUE, response.getContentType());
+            assertEquals("thumbnail content", response.getContentAsString());
+        } finally {
+            Files.deleteIfExists(derivative);
+        }
+    }
+
+    @Test
+    void fallsBackToOriginalWhileDerivativeIsMissing() throws IOException {
+        String key = "cd".repeat(32) + ".jpg";
+        Path original = imageStore.resolve(key);
+        Files.createDirectories(original.getParent());
+        Files.write(original, "test image content".getBytes());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        try {
+            personController.serveImage(key, "list", new MockHttpServletRequest("GET", "/"), response);
+
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            assertEquals("test image content", response.getContentAsString());
+            // The derivative will replace it under this URL, so it must not be cached as immutable
+            assertEquals("no-cache", response.getHeader(HttpHeaders.CACHE_CONTROL));
+            verify(imageDerivativeService).generate(key);
+        } finally {
+            Files.deleteIfExists(original);
+            Files.deleteIfExists(original.getParent());
+            Files.deleteIfExists(original.getParent().getParent());
+        }
+    }
+
+    @Test
+    void rejectsUnknownImageSize() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        personController.serveImage("test.jpg", "huge", new MockHttpServletRequest("GET", "/"), response);
+
+        assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+    }
+
+    @Test
+    void returnsNotFoundForMissingImage() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        personController.serveImage("nonexistent.jpg", null, new MockHttpServletRequest("GET", "/"), response);
+
+        assertEquals(HttpStatus.NOT_FOUND.value(), response.getStatus());
     }
 
     @Test
     void handlesLocationNameInConfirmation() {
         when(personService.getPersonById(1L)).thenReturn(Optional.of(testPerson));
+        when(geocodingService.getLocationName(52.52, 13.41)).thenReturn("Berlin, Deutschland");
 
         String viewName = personController.showAlertConfirmation(1L, model);
 
         assertEquals("alert-confirmation", viewName);
         verify(model).addAttribute(eq("locationName"), anyString());
+        verify(personService).updateLocationName(1L, "Berlin, Deutschland");
+    }
+
+    @Test
+    void showsCoordinatesWhenTheLocationNameCannotBeLookedUp() {
+        when(personService.getPersonById(1L)).thenReturn(Optional.of(testPerson));
+        when(geocodingService.getLocationName(52.52, 13.41)).thenReturn(null);
+
+        personController.showAlertConfirmation(1L, model);
+
+        verify(model).addAttribute("locationName", String.format("Lat: %f, Lon: %f", 52.52, 13.41));
+        verify(personService, never()).updateLocationName(anyLong(), anyString());
+    }
+
+    @Test
+    void usesStoredLocationNameInConfirmation() {
+        testPerson.setLocationName("Berlin, Deutschland");
+        when(personService.getPersonById(1L)).thenReturn(Optional.of(testPerson));
+
+        personController.showAlertConfirmation(1L, model);
+
+        verify(model).addAttribute("locationName", "Berlin, Deutschland");
+        verifyNoInteractions(geocodingService);
+    }
+
+    private void runPersistStep() throws IOException {
+        // Like the real pipeline, persist on the calling thread
+        when(publishPipeline.submit(any())).thenAnswer(invocation -> {
+            Person saved = invocation.<PublishPipeline.PersistStep>getArgument(0).persist();
+            return new PublishStatus(saved.getId());
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,247 @@
+package com.example.missing_person_alert.firebase;
+
+import com.google.firebase.messaging.MessagingErrorCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FcmTokenRegistryTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Captor
+    private ArgumentCaptor<Collection<Object[]>> batches;
+
+    private FcmTokenRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new FcmTokenRegistry(jdbcTemplate, 3);
+    }
+
+    @Test
+    void registersInMemoryAndWritesInOneBatch() {
+        // Arrange
+        registry.register("token-1");
+        registry.register("token-2");
+        verifyNoInteractions(jdbcTemplate);
+
+        // Act
+        registry.flush();
+
+        // Assert
+        assertTrue(registry.contains("token-1"));
+        assertEquals(List.of(Set.of("token-1", "token-2")), writtenBatches());
+    }
+
+    @Test
+    void doesNotWriteAKnownTokenAgain() {
+        // Arrange
+        assertTrue(registry.register("token-1"));
+        registry.flush();
+
+        // Act
+        boolean added = registry.register("token-1");
+        registry.flush();
+
+        // Assert
+        assertFalse(added);
+        assertEquals(1, registry.size());
+        assertEquals(1, writtenBatches().size());
+    }
+
+    @Test
+    void flushesInTheBackgroundWhenTooManyWritesArePending() {
+        // Act
+        for (int i = 0; i < 3; i++) {
+            registry.register("token-" + i);
+        }
+
+        // Assert
+        verify(jdbcTemplate, timeout(5000)).batchUpdate(startsWith("INSERT"), batches.capture(), anyInt(),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<Object[]>>any());
+        assertEquals(Set.of("token-0", "token-1", "token-2"), batches.getValue().stream()
+                .map(row -> (String) row[0])
+                .collect(Collectors.toSet()));
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    void retriesAFailedWriteOnTheNextFlush() {
+        // Arrange
+        when(jdbcTemplate.batchUpdate(anyString(), ArgumentMatchers.<Collection<Object[]>>any(), anyInt(),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<Object[]>>any()))
+                .thenThrow(new DataAccessResourceFailureException("database down"))
+                .thenReturn(new int[][]{{1}});
+        registry.register("token-1");
+        registry.flush();
+
+        // Act
+        registry.flush();
+
+        // Assert
+        assertTrue(registry.contains("token-1"));
+        assertEquals(List.of(Set.of("token-1"), Set.of("token-1")), writtenBatches());
+    }
+
+    @Test
+    void loadsStoredTokens() throws Exception {
+        // Arrange
+        ResultSet nationwide = mock(ResultSet.class);
+        when(nationwide.getString(1)).thenReturn("stored-token");
+        when(nationwide.getString(6)).thenReturn(null);
+        ResultSet regional = mock(ResultSet.class);
+        when(regional.getString(1)).thenReturn("regional-token");
+        when(regional.getString(6)).thenReturn("u33d");
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(nationwide);
+            invocation.<RowCallbackHandler>getArgument(1).processRow(regional);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT token"), any(RowCallbackHandler.class));
+
+        // Act
+        registry.load();
+
+        // Assert
+        assertTrue(registry.contains("stored-token"));
+        assertEquals("u33d", registry.regionOf("regional-token"));
+        // Regional tokens get their alerts through the region topic
+        assertEquals(List.of("stored-token"), sendable());
+    }
+
+    @Test
+    void picksUpTokensWrittenByOtherInstances() throws Exception {
+        // Arrange
+        registry.register("local-token");
+        ResultSet elsewhere = mock(ResultSet.class);
+        when(elsewhere.getString(1)).thenReturn("remote-token");
+        when(elsewhere.getString(6)).thenReturn("u33d");
+        when(elsewhere.getTimestamp(7)).thenReturn(new Timestamp(System.currentTimeMillis()));
+        ResultSet stale = mock(ResultSet.class);
+        when(stale.getString(1)).thenReturn("local-token");
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(elsewhere);
+            invocation.<RowCallbackHandler>getArgument(1).processRow(stale);
+            return null;
+        }).when(jdbcTemplate).query(contains("WHERE updated_at > ?"), any(RowCallbackHandler.class), any(Object[].class));
+
+        // Act
+        registry.reload();
+
+        // Assert
+        assertEquals("u33d", registry.regionOf("remote-token"));
+        // Not written yet, so the local state wins over the row
+        assertEquals(List.of("local-token"), sendable());
+    }
+
+    @Test
+    void removesTokensFcmDeclaresDead() {
+        // Arrange
+        registry.register("token-1");
+        registry.register("token-2");
+        registry.flush();
+
+        // Act
+        registry.recordResults(List.of("token-1", "token-2"),
+                List.of(new MulticastResult.Failure("token-1", MessagingErrorCode.UNREGISTERED, "gone")));
+        registry.flush();
+
+        // Assert
+        assertFalse(registry.contains("token-1"));
+        assertEquals(List.of("token-2"), sendable());
+        verify(jdbcTemplate).batchUpdate(eq("DELETE FROM fcm_token WHERE token = ?"), eq(List.of("token-1")), eq(1),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<String>>any());
+    }
+
+    @Test
+    void quarantinesTokensAfterRepeatedTransientFailures() {
+        // Arrange
+        registry.register("token-1");
+        List<MulticastResult.Failure> unavailable =
+                List.of(new MulticastResult.Failure("token-1", MessagingErrorCode.UNAVAILABLE, "try later"));
+
+        // Act
+        registry.recordResults(List.of("token-1"), unavailable);
+        registry.recordResults(List.of("token-1"), unavailable);
+        List<String> afterTwo = sendable();
+        registry.recordResults(List.of("token-1"), unavailable);
+
+        // Assert
+        assertEquals(List.of("token-1"), afterTwo);
+        assertEquals(List.of(), sendable());
+        assertTrue(registry.contains("token-1"));
+    }
+
+    @Test
+    void successClearsTheFailureCount() {
+        // Arrange
+        registry.register("token-1");
+        List<MulticastResult.Failure> unavailable =
+                List.of(new MulticastResult.Failure("token-1", MessagingErrorCode.UNAVAILABLE, "try later"));
+        registry.recordResults(List.of("token-1"), unavailable);
+        registry.recordResults(List.of("token-1"), unavailable);
+
+        // Act
+        registry.recordResults(List.of("token-1"), List.of());
+        registry.recordResults(List.of("token-1"), unavailable);
+
+        // Assert
+        assertEquals(List.of("token-1"), sendable());
+    }
+
+    @Test
+    void keepsTokensWhenTheSenderIsAtFault() {
+        // Arrange
+        registry.register("token-1");
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            registry.recordResults(List.of("token-1"),
+                    List.of(new MulticastResult.Failure("token-1", MessagingErrorCode.THIRD_PARTY_AUTH_ERROR, "bad key")));
+        }
+
+        // Assert
+        assertEquals(List.of("token-1"), sendable());
+    }
+
+    private List<String> sendable() {
+        return StreamSupport.stream(registry.tokens().spliterator(), false).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Set<String>> writtenBatches() {
+        verify(jdbcTemplate, atLeast(0)).batchUpdate(startsWith("INSERT"), batches.capture(), anyInt(),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<Object[]>>any());
+        return batches.getAllValues().stream()
+                .map(rows -> rows.stream().map(row -> (String) row[0]).collect(Collectors.toSet()))
+                .toList();
+    }
+}
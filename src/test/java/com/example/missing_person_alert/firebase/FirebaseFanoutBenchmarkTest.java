@@ -0,0 +1,74 @@
+package com.example.missing_person_alert.firebase;
+
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.Notification;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures fan-out throughput against a local FCM stub that answers each request after a fixed
+ * round trip, as the real endpoint would. Run with {@code FCM_BENCHMARK=true ./gradlew test
+ * --tests '*FirebaseFanoutBenchmarkTest'}; the result is printed.
+ */
+@EnabledIfEnvironmentVariable(named = "FCM_BENCHMARK", matches = "true")
+class FirebaseFanoutBenchmarkTest {
+
+    private static final int TOKENS = 100_000;
+    private static final long ROUND_TRIP_MS = 150;
+
+    @Test
+    void measuresTokensPerSecond() {
+        List<String> tokens = IntStream.range(0, TOKENS).mapToObj(i -> "token-" + i).toList();
+        for (int threads : new int[]{1, 4, 8, 16}) {
+            FcmTokenRegistry tokenRegistry = new FcmTokenRegistry(new JdbcTemplate(), 10_000);
+            FirebaseService service = new FirebaseService(tokenRegistry,
+                    new GeofenceRegistry(new JdbcTemplate(), tokenRegistry, 4),
+                    new StaticMessageSource(), new StubSender(), threads);
+            try {
+                // Warm-up, then the measured run
+                service.sendToTokens(tokens.subList(0, 5000), Notification.builder().build());
+                FanoutResult result = service.sendToTokens(tokens, Notification.builder().build());
+
+                assertEquals(TOKENS, result.getDelivered());
+                System.out.printf("%2d threads: %d tokens in %d ms, %.0f tokens/s%n", threads, TOKENS,
+                        result.getElapsedMillis(), TOKENS * 1000.0 / Math.max(1, result.getElapsedMillis()));
+            } finally {
+                service.shutdown();
+            }
+        }
+    }
+
+    private static class StubSender implements FcmSender {
+        @Override
+        public String send(Message message) {
+            return "projects/stub/messages/0";
+        }
+
+        @Override
+        public MulticastResult sendMulticast(List<String> tokens, Notification notification) {
+            try {
+                Thread.sleep(ROUND_TRIP_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new MulticastResult(tokens.size(), List.of());
+        }
+
+        @Override
+        public boolean subscribeToTopic(String token, String topic) {
+            return true;
+        }
+
+        @Override
+        public boolean unsubscribeFromTopic(String token, String topic) {
+            return true;
+        }
+    }
+}
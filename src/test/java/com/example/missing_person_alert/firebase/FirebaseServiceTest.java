@@ -0,0 +1,284 @@
+package com.example.missing_person_alert.firebase;
+
+import com.example.missing_person_alert.entity.Person;
+import com.example.missing_person_alert.util.Geohash;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.Notification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.MessageSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FirebaseServiceTest {
+
+    @Mock
+    private MessageSource messageSource;
+
+    @Mock
+    private FcmSender fcmSender;
+
+    private FcmTokenRegistry tokenRegistry;
+    private GeofenceRegistry geofenceRegistry;
+    private FirebaseService firebaseService;
+    private Person person;
+
+    @BeforeEach
+    void setUp() {
+        tokenRegistry = new FcmTokenRegistry(mock(JdbcTemplate.class), 10_000);
+        JdbcTemplate geofenceJdbc = mock(JdbcTemplate.class);
+        AtomicLong ids = new AtomicLong();
+        lenient().when(geofenceJdbc.queryForObject(anyString(), eq(Long.class), any(Object[].class)))
+                .thenAnswer(invocation -> ids.incrementAndGet());
+        geofenceRegistry = new GeofenceRegistry(geofenceJdbc, tokenRegistry, 4);
+        firebaseService = new FirebaseService(tokenRegistry, geofenceRegistry, messageSource, fcmSender, 4);
+        person = new Person();
+        person.setId(1L);
+        person.setFullName("Test Person");
+    }
+
+    @AfterEach
+    void tearDown() {
+        firebaseService.shutdown();
+    }
+
+    @Test
+    void sendsTokensInMulticastBatchesOfFiveHundred() throws Exception {
+        // Arrange
+        registerTokens(1234);
+        firebaseService.setFirebaseInitialized(true);
+        when(messageSource.getMessage(any(), any(), any(Locale.class))).thenReturn("text");
+        List<Integer> batchSizes = new ArrayList<>();
+        when(fcmSender.sendMulticast(any(), any())).thenAnswer(invocation -> {
+            List<String> tokens = invocation.getArgument(0);
+            synchronized (batchSizes) {
+                batchSizes.add(tokens.size());
+            }
+            return new MulticastResult(tokens.size(), List.of());
+        });
+
+        // Act
+        FanoutResult result = firebaseService.sendNotification(person, Locale.GERMAN);
+
+        // Assert
+        assertEquals(3, result.getBatches());
+        assertEquals(1234, result.getDelivered());
+        assertEquals(0, result.getFailed());
+        assertEquals(List.of(234, 500, 500), batchSizes.stream().sorted().toList());
+        verify(fcmSender).send(any());
+    }
+
+    @Test
+    void accountsForFailedTokensAndFailedBatches() throws Exception {
+        // Arrange
+        List<String> tokens = IntStream.range(0, 1000).mapToObj(i -> "token-" + i).toList();
+        when(fcmSender.sendMulticast(any(), any())).thenAnswer(invocation -> {
+            List<String> batch = invocation.getArgument(0);
+            if (batch.get(0).equals("token-0")) {
+                return new MulticastResult(batch.size(), List.of(
+                        new MulticastResult.Failure("token-3", MessagingErrorCode.UNREGISTERED, "gone")));
+            }
+            throw new IllegalStateException("FCM unavailable");
+        });
+
+        // Act
+        FanoutResult result = firebaseService.sendToTokens(tokens, Notification.builder().build());
+
+        // Assert
+        assertEquals(2, result.getBatches());
+        assertEquals(1, result.getFailedBatches());
+        assertEquals(499, result.getDelivered());
+        assertEquals(501, result.getFailed());
+    }
+
+    @Test
+    void prunesTokensReportedDead() throws Exception {
+        // Arrange
+        registerTokens(3);
+        when(fcmSender.sendMulticast(any(), any())).thenReturn(new MulticastResult(3, List.of(
+                new MulticastResult.Failure("token-1", MessagingErrorCode.UNREGISTERED, "gone"))));
+
+        // Act
+        FanoutResult result = firebaseService.sendToTokens(tokenRegistry.tokens(), Notification.builder().build());
+
+        // Assert
+        assertEquals(2, result.getDelivered());
+        assertFalse(tokenRegistry.contains("token-1"));
+        assertEquals(2, tokenRegistry.size());
+    }
+
+    @Test
+    void sendsLocatedAlertsToTheRegionTopicsAroundThem() throws Exception {
+        // Arrange
+        person.setLastSeenLatitude(52.52);
+        person.setLastSeenLongitude(13.405);
+
+        firebaseService.setFirebaseInitialized(true);
+        when(messageSource.getMessage(any(), any(), any(Locale.class))).thenReturn("text");
+
+        // Act
+        List<String> topics = firebaseService.alertTopics(person);
+        firebaseService.sendNotification(person, Locale.GERMAN);
+
+        // Assert
+        assertTrue(topics.contains("region_" + Geohash.encode(52.52, 13.405, 4)));
+        assertFalse(topics.contains("region_" + Geohash.encode(48.14, 11.58, 4)));
+        // Still for app versions without regions
+        assertEquals("Germany_Alerts", topics.get(0));
+        assertFalse(topics.contains("alerts_without_location"));
+        // Up to five topics per message, in a condition
+        verify(fcmSender, times((topics.size() + 4) / 5)).send(any());
+    }
+
+    @Test
+    void stopsSendingLocatedAlertsNationwideAfterTheMigration() {
+        // Arrange
+        ReflectionTestUtils.setField(firebaseService, "legacyTopicUntil", LocalDate.now().minusDays(1).toString());
+        person.setLastSeenLatitude(52.52);
+        person.setLastSeenLongitude(13.405);
+
+        // Act
+        List<String> topics = firebaseService.alertTopics(person);
+
+        // Assert
+        assertTrue(topics.stream().allMatch(topic -> topic.startsWith("region_")));
+    }
+
+    @Test
+    void sendsAlertsWithoutLocationNationwide() {
+        assertEquals(List.of("Germany_Alerts", "alerts_without_location"), firebaseService.alertTopics(person));
+        ReflectionTestUtils.setField(firebaseService, "legacyTopicUntil", LocalDate.now().minusDays(1).toString());
+        assertEquals(List.of("Germany_Alerts", "alerts_without_location"), firebaseService.alertTopics(person));
+    }
+
+    @Test
+    void movesATokenBetweenRegionTopics() throws Exception {
+        // Arrange
+        firebaseService.setFirebaseInitialized(true);
+        tokenRegistry.register("token-1");
+        tokenRegistry.register("token-2");
+        when(fcmSender.subscribeToTopic(eq("token-1"), any())).thenReturn(true);
+        String berlin = Geohash.encode(52.52, 13.405, 4);
+        String munich = Geohash.encode(48.14, 11.58, 4);
+
+        // Act
+        assertTrue(firebaseService.subscribeToRegion("token-1", 52.52, 13.405));
+        assertTrue(firebaseService.subscribeToRegion("token-1", 52.52, 13.405));
+        assertTrue(firebaseService.subscribeToRegion("token-1", 48.14, 11.58));
+
+        // Assert
+        assertEquals(munich, tokenRegistry.regionOf("token-1"));
+        verify(fcmSender).subscribeToTopic("token-1", "region_" + berlin);
+        verify(fcmSender).subscribeToTopic("token-1", "region_" + munich);
+        verify(fcmSender).unsubscribeFromTopic("token-1", "region_" + berlin);
+        // Once, on entering the first region
+        verify(fcmSender).subscribeToTopic("token-1", "alerts_without_location");
+        // Only tokens without a region are fanned out to directly
+        assertEquals(List.of("token-2"), StreamSupport.stream(tokenRegistry.tokens().spliterator(), false).toList());
+    }
+
+    @Test
+    void leavesBothTopicsForGeofences() throws Exception {
+        // Arrange
+        firebaseService.setFirebaseInitialized(true);
+        tokenRegistry.register("token-1");
+        when(fcmSender.subscribeToTopic(eq("token-1"), any())).thenReturn(true);
+        when(fcmSender.unsubscribeFromTopic(eq("token-1"), any())).thenReturn(true);
+        firebaseService.subscribeToRegion("token-1", 52.52, 13.405);
+
+        // Act
+        boolean left = firebaseService.leaveRegion("token-1");
+
+        // Assert
+        assertTrue(left);
+        assertNull(tokenRegistry.regionOf("token-1"));
+        verify(fcmSender).unsubscribeFromTopic("token-1", "region_" + Geohash.encode(52.52, 13.405, 4));
+        verify(fcmSender).unsubscribeFromTopic("token-1", "alerts_without_location");
+    }
+
+    @Test
+    void keepsTheNationwideFanoutWhenSubscribingFails() throws Exception {
+        // Arrange
+        firebaseService.setFirebaseInitialized(true);
+        tokenRegistry.register("token-1");
+        when(fcmSender.subscribeToTopic(any(), any())).thenReturn(false);
+
+        // Act
+        boolean subscribed = firebaseService.subscribeToRegion("token-1", 52.52, 13.405);
+
+        // Assert
+        assertFalse(subscribed);
+        assertNull(tokenRegistry.regionOf("token-1"));
+        assertEquals(List.of("token-1"), StreamSupport.stream(tokenRegistry.tokens().spliterator(), false).toList());
+    }
+
+    @Test
+    void sendsToTheTokensWhoseGeofencesContainTheAlertOnly() {
+        // Arrange
+        registerTokens(3);
+        geofenceRegistry.subscribe("token-0", "Home", 52.52, 13.405, 5);
+        geofenceRegistry.subscribe("token-1", "School", 48.14, 11.58, 5);
+        person.setLastSeenLatitude(52.521);
+        person.setLastSeenLongitude(13.41);
+
+        // Act
+        List<String> recipients = StreamSupport.stream(firebaseService.recipients(person).spliterator(), false).toList();
+
+        // Assert: token-2 has no areas and gets every alert, token-1's area is elsewhere
+        assertEquals(List.of("token-0", "token-2"), recipients);
+    }
+
+    @Test
+    void doesNotSubscribeGeofencedTokensToARegion() {
+        // Arrange
+        firebaseService.setFirebaseInitialized(true);
+        tokenRegistry.register("token-1");
+        geofenceRegistry.subscribe("token-1", "Home", 52.52, 13.405, 5);
+
+        // Act
+        boolean subscribed = firebaseService.subscribeToRegion("token-1", 52.52, 13.405);
+
+        // Assert
+        assertFalse(subscribed);
+        assertNull(tokenRegistry.regionOf("token-1"));
+        verifyNoInteractions(fcmSender);
+    }
+
+    @Test
+    void skipsNotificationWhenFirebaseIsNotInitialized() {
+        // Arrange
+        registerTokens(10);
+
+        // Act
+        FanoutResult result = firebaseService.sendNotification(person, Locale.GERMAN);
+
+        // Assert
+        assertEquals(0, result.getBatches());
+        verifyNoInteractions(fcmSender);
+    }
+
+    private void registerTokens(int count) {
+        for (int i = 0; i < count; i++) {
+            tokenRegistry.register("token-" + i);
+        }
+    }
+}
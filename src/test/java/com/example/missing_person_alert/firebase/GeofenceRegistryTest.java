@@ -0,0 +1,208 @@
+package com.example.missing_person_alert.firebase;
+
+import com.example.missing_person_alert.model.GeofenceSubscription;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GeofenceRegistryTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private FcmTokenRegistry tokenRegistry;
+    private GeofenceRegistry geofenceRegistry;
+
+    @BeforeEach
+    void setUp() {
+        tokenRegistry = new FcmTokenRegistry(mock(JdbcTemplate.class), 10_000);
+        geofenceRegistry = new GeofenceRegistry(jdbcTemplate, tokenRegistry, 4);
+        tokenRegistry.register("home-token");
+        tokenRegistry.register("commuter-token");
+    }
+
+    @Test
+    void matchesEveryTokenWhoseAreaContainsThePoint() {
+        // Arrange
+        generateIds();
+        geofenceRegistry.subscribe("home-token", "Home", 52.52, 13.405, 5);
+        geofenceRegistry.subscribe("commuter-token", "Work", 52.50, 13.45, 10);
+        geofenceRegistry.subscribe("commuter-token", "School", 52.53, 13.41, 3);
+
+        // Act
+        Set<String> nearHome = geofenceRegistry.tokensContaining(52.521, 13.41);
+        Set<String> inMunich = geofenceRegistry.tokensContaining(48.14, 11.58);
+
+        // Assert
+        assertEquals(Set.of("home-token", "commuter-token"), nearHome);
+        assertEquals(Set.of(), inMunich);
+    }
+
+    @Test
+    void skipsTokensThatAreNoLongerRegistered() {
+        // Arrange
+        generateIds();
+        geofenceRegistry.subscribe("home-token", "Home", 52.52, 13.405, 5);
+        tokenRegistry.remove("home-token");
+
+        // Act
+        Set<String> tokens = geofenceRegistry.tokensContaining(52.52, 13.405);
+        geofenceRegistry.pruneOrphans();
+
+        // Assert
+        assertEquals(Set.of(), tokens);
+        assertEquals(0, geofenceRegistry.size());
+        verify(jdbcTemplate).update(contains("SET removed_at = CURRENT_TIMESTAMP"), eq("home-token"));
+    }
+
+    @Test
+    void limitsSubscriptionsPerToken() {
+        // Arrange
+        generateIds();
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(geofenceRegistry.subscribe("home-token", "Area " + i, 52.52, 13.405, 1 + i));
+        }
+
+        // Act
+        GeofenceSubscription rejected = geofenceRegistry.subscribe("home-token", "Area 10", 52.52, 13.405, 1);
+
+        // Assert
+        assertNull(rejected);
+        assertEquals(10, geofenceRegistry.subscriptionsOf("home-token").size());
+    }
+
+    @Test
+    void rejectsInvalidAreasAndUnknownTokens() {
+        assertThrows(IllegalArgumentException.class, () -> geofenceRegistry.subscribe("unknown", null, 52.52, 13.405, 5));
+        assertThrows(IllegalArgumentException.class, () -> geofenceRegistry.subscribe("home-token", null, 52.52, 13.405, 500));
+        assertThrows(IllegalArgumentException.class, () -> geofenceRegistry.subscribe("home-token", null, 95, 13.405, 5));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void rejectsAreasTheIndexCannotHoldBeforeStoringThem() {
+        // Arrange: 50 km takes far more than 1024 cells of precision 6
+        GeofenceRegistry fine = new GeofenceRegistry(jdbcTemplate, tokenRegistry, 6);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> fine.subscribe("home-token", null, 52.52, 13.405, 50));
+        assertEquals(0, fine.size());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void skipsStoredAreasTheIndexCannotHold() throws Exception {
+        // Arrange
+        GeofenceRegistry fine = new GeofenceRegistry(jdbcTemplate, tokenRegistry, 6);
+        ResultSet large = storedArea(1L, "home-token", 50);
+        ResultSet small = storedArea(2L, "home-token", 1);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(large);
+            invocation.<RowCallbackHandler>getArgument(1).processRow(small);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT id"), any(RowCallbackHandler.class));
+
+        // Act
+        fine.load();
+
+        // Assert
+        assertEquals(1, fine.size());
+        assertEquals(Set.of("home-token"), fine.tokensContaining(52.52, 13.405));
+    }
+
+    @Test
+    void onlyTheOwningTokenMayUnsubscribe() {
+        // Arrange
+        generateIds();
+        GeofenceSubscription home = geofenceRegistry.subscribe("home-token", "Home", 52.52, 13.405, 5);
+
+        // Act
+        boolean byOther = geofenceRegistry.unsubscribe("commuter-token", home.getId());
+        boolean byOwner = geofenceRegistry.unsubscribe("home-token", home.getId());
+
+        // Assert
+        assertFalse(byOther);
+        assertTrue(byOwner);
+        assertFalse(geofenceRegistry.hasSubscriptions("home-token"));
+        assertEquals(List.of(), geofenceRegistry.subscriptionsOf("home-token"));
+        assertEquals(Set.of(), geofenceRegistry.tokensContaining(52.52, 13.405));
+    }
+
+    @Test
+    void followsSubscriptionsAddedAndRemovedOnOtherInstances() throws Exception {
+        // Arrange
+        ResultSet home = storedArea(1L, "home-token", 5);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(home);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT id"), any(RowCallbackHandler.class));
+        geofenceRegistry.load();
+        ResultSet commute = storedArea(2L, "commuter-token", 5);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        ResultSet homeRemoved = mock(ResultSet.class);
+        when(homeRemoved.getLong(1)).thenReturn(1L);
+        when(homeRemoved.getTimestamp(7)).thenReturn(now);
+        when(homeRemoved.getTimestamp(8)).thenReturn(now);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(commute);
+            invocation.<RowCallbackHandler>getArgument(1).processRow(homeRemoved);
+            return null;
+        }).when(jdbcTemplate).query(contains("WHERE updated_at > ?"), any(RowCallbackHandler.class), any(Object[].class));
+
+        // Act
+        geofenceRegistry.reload();
+
+        // Assert
+        assertEquals(1, geofenceRegistry.size());
+        assertFalse(geofenceRegistry.hasSubscriptions("home-token"));
+        assertEquals(Set.of("commuter-token"), geofenceRegistry.tokensContaining(52.52, 13.405));
+    }
+
+    @Test
+    void removesSubscriptionsNotYetReloadedFromTheDatabase() {
+        // Arrange
+        when(jdbcTemplate.update(contains("SET removed_at = CURRENT_TIMESTAMP"), eq(7L), eq("home-token"))).thenReturn(1);
+
+        // Act
+        boolean byOwner = geofenceRegistry.unsubscribe("home-token", 7L);
+        boolean byOther = geofenceRegistry.unsubscribe("commuter-token", 7L);
+
+        // Assert
+        assertTrue(byOwner);
+        assertFalse(byOther);
+    }
+
+    private static ResultSet storedArea(long id, String token, double radiusKm) throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong(1)).thenReturn(id);
+        when(row.getString(2)).thenReturn(token);
+        when(row.getDouble(4)).thenReturn(52.52);
+        when(row.getDouble(5)).thenReturn(13.405);
+        when(row.getDouble(6)).thenReturn(radiusKm);
+        return row;
+    }
+
+    private void generateIds() {
+        AtomicLong ids = new AtomicLong();
+        when(jdbcTemplate.queryForObject(startsWith("INSERT"), eq(Long.class), any(Object[].class)))
+                .thenAnswer(invocation -> ids.incrementAndGet());
+    }
+}
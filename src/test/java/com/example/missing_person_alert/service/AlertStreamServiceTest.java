@@ -0,0 +1,176 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.repository.PersonRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AlertStreamServiceTest {
+
+    @Mock
+    private PersonRepository personRepository;
+
+    private PersonService personService;
+    private AlertStreamService alertStreamService;
+    private final List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+    private boolean failSends;
+
+    @BeforeEach
+    void setUp() {
+        personService = new PersonService(personRepository, new ImageStore("test-uploads"), new PhotoReencoder(1));
+        alertStreamService = new AlertStreamService(personService) {
+            @Override
+            protected SseEmitter createEmitter(long timeout) {
+                RecordingEmitter emitter = new RecordingEmitter(failSends);
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        alertStreamService.shutdown();
+    }
+
+    @Test
+    void pushesExpiredAlertsToSubscribers() throws InterruptedException {
+        // Arrange
+        alertStreamService.subscribe(null);
+        expireAlert(3L);
+
+        // Act
+        String events = awaitEvents(emitters.get(0), 1);
+
+        // Assert
+        assertTrue(events.contains("event:expired"));
+        assertTrue(events.contains("data:3"));
+        assertTrue(events.contains("id:" + personService.getChangesSince(null).getCursor()));
+    }
+
+    @Test
+    void replaysChangesAfterLastEventId() throws InterruptedException {
+        // Arrange
+        String cursor = personService.getChangesSince(null).getCursor();
+        expireAlert(4L);
+
+        // Act
+        alertStreamService.subscribe(cursor);
+        String events = awaitEvents(emitters.get(0), 1);
+
+        // Assert
+        assertTrue(events.contains("event:expired"));
+        assertTrue(events.contains("data:4"));
+        assertTrue(events.contains("id:" + personService.getChangesSince(null).getCursor()));
+    }
+
+    @Test
+    void sendsResetForUnknownLastEventId() throws InterruptedException {
+        // Act
+        alertStreamService.subscribe("abc.1");
+        String events = awaitEvents(emitters.get(0), 1);
+
+        // Assert
+        assertTrue(events.contains("event:reset"));
+    }
+
+    @Test
+    void sendsResetInsteadOfReplayingMoreThanTheBufferHolds() throws InterruptedException {
+        // Arrange
+        String cursor = personService.getChangesSince(null).getCursor();
+        List<Object[]> expired = LongStream.rangeClosed(1, 100)
+                .mapToObj(id -> new Object[]{id, "expired.jpg"})
+                .toList();
+        when(personRepository.deleteExpiredBatch(anyInt())).thenReturn(expired);
+        personService.deleteExpiredRecords();
+
+        // Act
+        alertStreamService.subscribe(cursor);
+        String events = awaitEvents(emitters.get(0), 1);
+
+        // Assert
+        assertEquals(1, emitters.get(0).events.size());
+        assertTrue(events.contains("event:reset"));
+        assertTrue(events.contains("id:" + personService.getChangesSince(null).getCursor()));
+        assertEquals(1, alertStreamService.getSubscriberCount());
+    }
+
+    @Test
+    void rejectsSubscribersBeyondConnectionLimit() {
+        // Arrange
+        ReflectionTestUtils.setField(alertStreamService, "maxConnections", 1);
+
+        // Act
+        SseEmitter first = alertStreamService.subscribe(null);
+        SseEmitter second = alertStreamService.subscribe(null);
+
+        // Assert
+        assertNotNull(first);
+        assertNull(second);
+        assertEquals(1, alertStreamService.getSubscriberCount());
+    }
+
+    @Test
+    void dropsSubscriberWhenWriteFails() throws InterruptedException {
+        // Arrange
+        failSends = true;
+        alertStreamService.subscribe(null);
+
+        // Act
+        alertStreamService.sendHeartbeats();
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 5000;
+        while (alertStreamService.getSubscriberCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, alertStreamService.getSubscriberCount());
+    }
+
+    private void expireAlert(Long id) {
+        when(personRepository.deleteExpiredBatch(anyInt())).thenReturn(List.<Object[]>of(new Object[]{id, "expired.jpg"}));
+        personService.deleteExpiredRecords();
+    }
+
+    private static String awaitEvents(RecordingEmitter emitter, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emitter.events.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(emitter.events.size() >= count, "Expected " + count + " events");
+        return String.join("", emitter.events);
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final boolean fail;
+
+        private RecordingEmitter(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (fail) {
+                throw new IOException("Broken pipe");
+            }
+            events.add(builder.build().stream()
+                    .map(part -> String.valueOf(part.getData()))
+                    .collect(Collectors.joining()));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.missing_person_alert.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageByteCacheTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private ImageByteCache imageByteCache;
+
+    @BeforeEach
+    void setUp() {
+        // Room for exactly two 100-byte photos
+        imageByteCache = new ImageByteCache(new ImageStore(uploadDir.toString()), 200, 150);
+    }
+
+    @Test
+    void servesCachedBytesOffHeap() throws IOException {
+        // Arrange
+        Path file = photo("a.jpg", (byte) 1);
+
+        // Act
+        ByteBuffer loaded = imageByteCache.getOrLoad(file, 100);
+        Files.delete(file);
+        ByteBuffer cached = imageByteCache.getOrLoad(file, 100);
+
+        // Assert
+        assertNotNull(loaded);
+        assertTrue(cached.isDirect());
+        assertTrue(cached.isReadOnly());
+        assertEquals(100, cached.remaining());
+        assertEquals(1, cached.get(99));
+        assertEquals(100, imageByteCache.getUsedBytes());
+    }
+
+    @Test
+    void skipsFilesAboveEntryLimit() throws IOException {
+        Path file = Files.write(uploadDir.resolve("big.jpg"), new byte[160]);
+
+        assertNull(imageByteCache.getOrLoad(file, 160));
+        assertEquals(0, imageByteCache.getUsedBytes());
+    }
+
+    @Test
+    void rejectsNewcomerLessFrequentThanVictim() throws IOException {
+        // Arrange
+        Path hot = photo("hot.jpg", (byte) 1);
+        Path warm = photo("warm.jpg", (byte) 2);
+        Path oneOff = photo("once.jpg", (byte) 3);
+        for (int i = 0; i < 3; i++) {
+            imageByteCache.getOrLoad(hot, 100);
+            imageByteCache.getOrLoad(warm, 100);
+        }
+
+        // Act
+        imageByteCache.getOrLoad(oneOff, 100);
+
+        // Assert: the one-off request did not displace either hot entry
+        Files.delete(hot);
+        Files.delete(warm);
+        assertNotNull(imageByteCache.getOrLoad(hot, 100));
+        assertNotNull(imageByteCache.getOrLoad(warm, 100));
+    }
+
+    @Test
+    void admitsNewcomerMoreFrequentThanVictim() throws IOException {
+        // Arrange
+        Path first = photo("first.jpg", (byte) 1);
+        Path second = photo("second.jpg", (byte) 2);
+        Path rising = photo("rising.jpg", (byte) 3);
+        imageByteCache.getOrLoad(first, 100);
+        imageByteCache.getOrLoad(second, 100);
+        for (int i = 0; i < 3; i++) {
+            imageByteCache.getOrLoad(rising, 100);
+        }
+
+        // Act: the least recently used entry made room
+        Files.delete(rising);
+        Files.delete(first);
+        ByteBuffer cached = imageByteCache.getOrLoad(rising, 100);
+
+        // Assert
+        assertNotNull(cached);
+        assertEquals(3, cached.get(0));
+        assertNull(imageByteCache.getOrLoad(first, 100));
+        assertEquals(200, imageByteCache.getUsedBytes());
+    }
+
+    @Test
+    void dropsEntryWhenPhotoIsDeleted() throws IOException {
+        // Arrange
+        ImageStore imageStore = new ImageStore(uploadDir.toString());
+        imageByteCache = new ImageByteCache(imageStore, 200, 150);
+        Path file = photo("legacy.jpg", (byte) 1);
+        imageByteCache.getOrLoad(file, 100);
+
+        // Act
+        imageStore.deleteIfUnreferenced("legacy.jpg", key -> 0);
+
+        // Assert
+        assertEquals(0, imageByteCache.getUsedBytes());
+        assertNull(imageByteCache.getOrLoad(file, 100));
+    }
+
+    private Path photo(String name, byte fill) throws IOException {
+        byte[] content = new byte[100];
+        Arrays.fill(content, fill);
+        return Files.write(uploadDir.resolve(name), content);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.missing_person_alert.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageDeliveryServiceTest {
+
+    private static final String ETAG = "\"0123abcd\"";
+
+    @TempDir
+    Path uploadDir;
+
+    private ImageDeliveryService imageDeliveryService;
+    private Path file;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ImageStore imageStore = new ImageStore(uploadDir.toString());
+        imageDeliveryService = new ImageDeliveryService(imageStore, new ImageByteCache(imageStore, 1024 * 1024, 1024 * 1024));
+        content = new byte[100 * 1024];
+        new Random(7).nextBytes(content);
+        file = Files.write(uploadDir.resolve("photo.jpg"), content);
+    }
+
+    @Test
+    void servesWholeFileWithValidators() throws IOException {
+        // Arrange
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        boolean served = imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), get(), response);
+
+        // Assert
+        assertTrue(served);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+        assertEquals(content.length, response.getContentLengthLong());
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    void answersMatchingValidatorsWithNotModified() throws IOException {
+        // Arrange
+        MockHttpServletRequest byEtag = get();
+        byEtag.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + ETAG);
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), get(), first);
+        MockHttpServletRequest byDate = get();
+        byDate.addHeader(HttpHeaders.IF_MODIFIED_SINCE, first.getHeader(HttpHeaders.LAST_MODIFIED));
+
+        // Act
+        MockHttpServletResponse etagResponse = new MockHttpServletResponse();
+        imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), byEtag, etagResponse);
+        MockHttpServletResponse dateResponse = new MockHttpServletResponse();
+        imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), byDate, dateResponse);
+
+        // Assert
+        assertEquals(304, etagResponse.getStatus());
+        assertEquals(0, etagResponse.getContentAsByteArray().length);
+        assertEquals(304, dateResponse.getStatus());
+    }
+
+    @Test
+    void servesSingleByteRange() throws IOException {
+        // Arrange
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), request, response);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-19/" + content.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        byte[] expected = new byte[10];
+        System.arraycopy(content, 10, expected, 0, 10);
+        assertArrayEquals(expected, response.getContentAsByteArray());
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws IOException {
+        // Arrange
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=" + content.length + "-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), request, response);
+
+        // Assert
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + content.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void ignoresRangeForChangedRepresentation() throws IOException {
+        // Arrange
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), request, response);
+
+        // Assert
+        assertEquals(200, response.getStatus());
+        assertEquals(content.length, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void servesRepeatRequestsFromCache() throws IOException {
+        // Arrange
+        imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), get(), new MockHttpServletResponse());
+        Files.delete(file);
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, "bytes=-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), request, response);
+
+        // Assert
+        assertEquals(206, response.getStatus());
+        byte[] expected = new byte[5];
+        System.arraycopy(content, content.length - 5, expected, 0, 5);
+        assertArrayEquals(expected, response.getContentAsByteArray());
+    }
+
+    @Test
+    void handsLargeFilesToSendfile() throws IOException {
+        // Arrange
+        ImageStore imageStore = new ImageStore(uploadDir.toString());
+        imageDeliveryService = new ImageDeliveryService(imageStore, new ImageByteCache(imageStore, 0, 0));
+        MockHttpServletRequest request = get();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // Act
+        imageDeliveryService.serve(file, ETAG, CacheControl.noCache(), request, response);
+
+        // Assert
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(0L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) content.length, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void reportsMissingFile() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(imageDeliveryService.serve(uploadDir.resolve("missing.jpg"), null, CacheControl.noCache(), get(), response));
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/api/persons/image/photo.jpg");
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.missing_person_alert.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageDerivativeServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private ImageDerivativeService imageDerivativeService;
+
+    @BeforeEach
+    void setUp() {
+        imageDerivativeService = new ImageDerivativeService(new ImageStore(uploadDir.toString()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageDerivativeService.shutdown();
+    }
+
+    @Test
+    void rendersEverySizeNextToOriginal() throws IOException {
+        // Arrange
+        ImageIO.write(new BufferedImage(2000, 1500, BufferedImage.TYPE_INT_RGB), "png",
+                uploadDir.resolve("photo.png").toFile());
+
+        // Act
+        imageDerivativeService.generateNow("photo.png");
+
+        // Assert
+        for (ImageDerivativeService.Size size : ImageDerivativeService.Size.values()) {
+            Path derivative = imageDerivativeService.findDerivative("photo.png", size);
+            assertNotNull(derivative, "Missing " + size);
+            BufferedImage rendered = ImageIO.read(derivative.toFile());
+            assertEquals(size.getMaxEdge(), rendered.getWidth());
+            assertEquals(Math.round(size.getMaxEdge() * 0.75), rendered.getHeight());
+        }
+    }
+
+    @Test
+    void neverUpscalesSmallImages() throws IOException {
+        // Arrange
+        ImageIO.write(new BufferedImage(100, 80, BufferedImage.TYPE_INT_ARGB), "png",
+                uploadDir.resolve("small.png").toFile());
+
+        // Act
+        imageDerivativeService.generateNow("small.png");
+
+        // Assert
+        BufferedImage detail = ImageIO.read(
+                imageDerivativeService.findDerivative("small.png", ImageDerivativeService.Size.DETAIL).toFile());
+        assertEquals(100, detail.getWidth());
+        assertEquals(80, detail.getHeight());
+    }
+
+    @Test
+    void rendersInBackground() throws Exception {
+        // Arrange
+        ImageIO.write(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), "jpg",
+                uploadDir.resolve("async.jpg").toFile());
+
+        // Act
+        boolean queued = imageDerivativeService.generate("async.jpg");
+
+        // Assert
+        assertTrue(queued);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (imageDerivativeService.findDerivative("async.jpg", ImageDerivativeService.Size.THUMBNAIL) == null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotNull(imageDerivativeService.findDerivative("async.jpg", ImageDerivativeService.Size.THUMBNAIL));
+    }
+
+    @Test
+    void reportsMissingDerivative() {
+        assertNull(imageDerivativeService.findDerivative("missing.jpg", ImageDerivativeService.Size.LIST));
+        assertFalse(Files.exists(uploadDir.resolve("missing.jpg.list.jpg")));
+    }
+
+    @Test
+    void parsesSizeKeys() {
+        assertEquals(ImageDerivativeService.Size.THUMBNAIL, ImageDerivativeService.Size.fromKey("THUMB"));
+        assertNull(ImageDerivativeService.Size.fromKey("huge"));
+    }
+}
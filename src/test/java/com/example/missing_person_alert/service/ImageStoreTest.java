@@ -0,0 +1,81 @@
+package com.example.missing_person_alert.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageStoreTest {
+
+    private static final byte[] JPEG_CONTENT = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 1, 2, 3};
+
+    @TempDir
+    Path uploadDir;
+
+    private ImageStore imageStore;
+
+    @BeforeEach
+    void setUp() {
+        imageStore = new ImageStore(uploadDir.toString());
+    }
+
+    @Test
+    void storesIdenticalUploadsOnce() throws IOException {
+        // Act
+        String first = imageStore.put(new ByteArrayInputStream(JPEG_CONTENT), 1024);
+        String second = imageStore.put(new ByteArrayInputStream(JPEG_CONTENT), 1024);
+
+        // Assert
+        assertEquals(first, second);
+        assertTrue(first.matches("[0-9a-f]{64}\\.jpg"));
+        Path blob = imageStore.resolve(first);
+        assertEquals(uploadDir.resolve(first.substring(0, 2)).resolve(first.substring(2, 4)).resolve(first), blob);
+        assertArrayEquals(JPEG_CONTENT, Files.readAllBytes(blob));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void resolvesLegacyKeysFlat() {
+        assertEquals(uploadDir.resolve("1234_photo.jpg"), imageStore.resolve("1234_photo.jpg"));
+        assertEquals(uploadDir.resolve("1234_photo.jpg"), imageStore.resolve("/uploads/1234_photo.jpg"));
+    }
+
+    @Test
+    void keepsPhotoWhilePendingOrReferenced() throws IOException {
+        // Arrange
+        String key = imageStore.put(new ByteArrayInputStream(JPEG_CONTENT), 1024);
+
+        // Act & Assert
+        assertFalse(imageStore.deleteIfUnreferenced(key, k -> 0));
+        imageStore.release(key);
+        assertFalse(imageStore.deleteIfUnreferenced(key, k -> 1));
+        assertTrue(Files.exists(imageStore.resolve(key)));
+    }
+
+    @Test
+    void deletesPhotoAndDerivativesWhenUnreferenced() throws IOException {
+        // Arrange
+        String key = imageStore.put(new ByteArrayInputStream(JPEG_CONTENT), 1024);
+        imageStore.release(key);
+        Path blob = imageStore.resolve(key);
+        Files.write(blob.resolveSibling(ImageDerivativeService.Size.THUMBNAIL.fileNameFor(key)), JPEG_CONTENT);
+
+        // Act
+        boolean deleted = imageStore.deleteIfUnreferenced(key, k -> 0);
+
+        // Assert
+        assertTrue(deleted);
+        assertEquals(0, countFiles());
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
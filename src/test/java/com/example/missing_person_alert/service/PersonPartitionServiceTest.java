@@ -0,0 +1,92 @@
+package com.example.missing_person_alert.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PersonPartitionServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PersonService personService;
+
+    @InjectMocks
+    private PersonPartitionService partitionService;
+
+    @Test
+    void createsUpcomingPartitionsAndDropsPastOnes() {
+        // Arrange
+        List<Object[]> leftovers = List.<Object[]>of(new Object[]{7L, "old.jpg"});
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("person_y2026m08", "person_y2026m10", "person_y2026m12", "person_default"));
+        when(jdbcTemplate.query(eq("SELECT id, image_path FROM person_y2026m08"), ArgumentMatchers.<RowMapper<Object[]>>any()))
+                .thenReturn(leftovers);
+
+        // Act
+        partitionService.maintainPartitions(YearMonth.of(2026, 10));
+
+        // Assert
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS person_y2026m10 PARTITION OF person " +
+                "FOR VALUES FROM ('2026-10-01') TO ('2026-11-01')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS person_y2027m01 PARTITION OF person " +
+                "FOR VALUES FROM ('2027-01-01') TO ('2027-02-01')");
+        verify(jdbcTemplate, times(4)).execute(startsWith("CREATE TABLE"));
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS person_y2026m08");
+        verify(jdbcTemplate, times(1)).execute(startsWith("DROP TABLE"));
+        verify(personService).discardExpired(leftovers);
+    }
+
+    @Test
+    void keepsGoingWhenAPartitionCannotBeDropped() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("person_y2026m08", "person_y2026m09"));
+        when(jdbcTemplate.query(eq("SELECT id, image_path FROM person_y2026m08"), ArgumentMatchers.<RowMapper<Object[]>>any()))
+                .thenThrow(new BadSqlGrammarException("select", "SELECT", new SQLException("relation does not exist")));
+        when(jdbcTemplate.query(eq("SELECT id, image_path FROM person_y2026m09"), ArgumentMatchers.<RowMapper<Object[]>>any()))
+                .thenReturn(List.of());
+
+        // Act
+        partitionService.maintainPartitions(YearMonth.of(2026, 10));
+
+        // Assert
+        verify(jdbcTemplate, never()).execute("DROP TABLE IF EXISTS person_y2026m08");
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS person_y2026m09");
+        verify(personService).discardExpired(List.of());
+    }
+
+    @Test
+    void survivesAFailingPartitionListing() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        // Act
+        partitionService.maintainPartitions(YearMonth.of(2026, 10));
+
+        // Assert
+        verify(jdbcTemplate, never()).execute(startsWith("DROP TABLE"));
+        verifyNoInteractions(personService);
+    }
+
+    @Test
+    void namesPartitionsByMonth() {
+        assertEquals("person_y2027m03", PersonPartitionService.partitionName(YearMonth.of(2027, 3)));
+    }
+}
@@ -1,31 +1,45 @@
 package com.example.missing_person_alert.service;
 
 import com.example.missing_person_alert.entity.Person;
+import com.example.missing_person_alert.model.PageCursor;
+import com.example.missing_person_alert.model.PersonChanges;
+import com.example.missing_person_alert.model.PersonSummary;
+import com.example.missing_person_alert.model.PossibleDuplicate;
 import com.example.missing_person_alert.repository.PersonRepository;
-import org.junit.jupiter.api.BeforeEach;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,15 +48,30 @@ class PersonServiceTest {
     @Mock
     private PersonRepository personRepository;
 
+    @Spy
+    private ImageStore imageStore = new ImageStore("test-uploads");
+
+    @Spy
+    private PhotoReencoder photoReencoder = new PhotoReencoder(1);
+
     @InjectMocks
     private PersonService personService;
 
     private final String uploadDir = "test-uploads";
 
-    @BeforeEach
-    void setUp() {
-        // Set the upload directory via reflection
-        ReflectionTestUtils.setField(personService, "uploadDir", uploadDir);
+    private static final byte[] JPEG_CONTENT = jpeg(64, 48);
+
+    @AfterEach
+    void tearDown() throws IOException {
+        // Clean up: delete stored photos, including the shard directories
+        Path dirPath = Paths.get(uploadDir);
+        if (Files.isDirectory(dirPath)) {
+            try (Stream<Path> paths = Files.walk(dirPath)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
     }
 
     @Test
@@ -53,7 +82,7 @@ class PersonServiceTest {
                 "image",
                 "test.jpg",
                 "image/jpeg",
-                "test image content".getBytes()
+                JPEG_CONTENT
         );
         Double latitude = 48.137154;
         Double longitude = 11.576124;
@@ -67,7 +96,11 @@ class PersonServiceTest {
         savedPerson.setLastSeenLatitude(latitude);
         savedPerson.setLastSeenLongitude(longitude);
 
-        when(personRepository.save(any(Person.class))).thenReturn(savedPerson);
+        when(personRepository.save(any(Person.class))).thenAnswer(invocation -> {
+            savedPerson.setImagePath(invocation.<Person>getArgument(0).getImagePath());
+            savedPerson.setBlurHash(invocation.<Person>getArgument(0).getBlurHash());
+            return savedPerson;
+        });
 
         // Act
         Person result = personService.savePerson(name, image, latitude, longitude);
@@ -75,7 +108,9 @@ class PersonServiceTest {
         // Assert
         assertNotNull(result, "Saved person should not be null");
         assertEquals(name, result.getFullName());
-        assertTrue(result.getImagePath().endsWith("test.jpg"));
+        assertTrue(result.getImagePath().matches("[0-9a-f]{64}\\.jpg"));
+        assertEquals(28, result.getBlurHash().length());
+        assertTrue(Files.exists(imageStore.resolve(result.getImagePath())));
         assertEquals(latitude, result.getLastSeenLatitude());
         assertEquals(longitude, result.getLastSeenLongitude());
         assertNotNull(result.getPublishedAt());
@@ -83,21 +118,78 @@ class PersonServiceTest {
 
         // Verify repository interaction
         verify(personRepository, times(1)).save(any(Person.class));
+    }
 
-        // Clean up: Delete the created file and directory
-        Path filePath = Paths.get(uploadDir, result.getImagePath());
-        Files.deleteIfExists(filePath);
-        Path dirPath = Paths.get(uploadDir);
-        if (Files.exists(dirPath) && Files.isDirectory(dirPath)) {
-            // Ensure directory is empty before deleting
-            try (var stream = Files.list(dirPath)) {
-                if (!stream.findAny().isPresent()) {
-                    Files.deleteIfExists(dirPath);
-                }
-            }
+    @Test
+    void flagsRepublishedPhotoAsPossibleDuplicate() throws IOException {
+        // Arrange
+        AtomicLong ids = new AtomicLong();
+        when(personRepository.save(any(Person.class))).thenAnswer(invocation -> {
+            Person person = invocation.getArgument(0);
+            person.setId(ids.incrementAndGet());
+            return person;
+        });
+        Person first = personService.savePerson("Tobi Ta",
+                new MockMultipartFile("image", "a.jpg", "image/jpeg", JPEG_CONTENT), null, null);
+
+        // Act
+        Person second = personService.savePerson("Tobi T.",
+                new MockMultipartFile("image", "b.jpg", "image/jpeg", JPEG_CONTENT), null, null);
+        List<PossibleDuplicate> duplicates = personService.findPossibleDuplicates(second, 5);
+
+        // Assert
+        assertEquals(1, duplicates.size());
+        assertEquals(first.getId(), duplicates.get(0).getPerson().getId());
+        assertEquals(0, duplicates.get(0).getDistance());
+        assertTrue(personService.findPossibleDuplicates(first, 5).stream()
+                .noneMatch(duplicate -> duplicate.getPerson().getId().equals(first.getId())));
+    }
+
+    @Test
+    void removesStoredPhotoWhenSaveFails() throws IOException {
+        // Arrange
+        MockMultipartFile image = new MockMultipartFile("image", "test.jpg", "image/jpeg", JPEG_CONTENT);
+        when(personRepository.save(any(Person.class))).thenThrow(new IllegalStateException("Database down"));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> personService.savePerson("Tobi Ta", image, null, null));
+        try (Stream<Path> files = Files.walk(Paths.get(uploadDir))) {
+            assertEquals(0, files.filter(Files::isRegularFile).count());
         }
     }
 
+    @Test
+    void rejectsImageThatCannotBeDecoded() {
+        // Arrange: JPEG magic bytes, but no image behind them
+        MockMultipartFile truncated = new MockMultipartFile("image", "test.jpg", "image/jpeg",
+                new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 't', 'e', 's', 't'});
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> personService.savePerson("Tobi Ta", truncated, null, null));
+        assertEquals("Image could not be read", exception.getMessage());
+        verify(personRepository, never()).save(any(Person.class));
+    }
+
+    @Test
+    void rejectsImageWhoseContentIsNotAnImage() {
+        // Arrange
+        MockMultipartFile disguised = new MockMultipartFile(
+                "image",
+                "test.jpg",
+                "image/jpeg",
+                "<html>not an image</html>".getBytes()
+        );
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> personService.savePerson("Tobi Ta", disguised, null, null)
+        );
+        assertEquals("Only JPEG and PNG images are allowed", exception.getMessage());
+        verify(personRepository, never()).save(any(Person.class));
+    }
+
     @Test
     void rejectsNullName() {
         // Arrange
@@ -196,10 +288,9 @@ class PersonServiceTest {
         person2.setPublishedAt(LocalDateTime.now());
         person2.setExpiresAt(LocalDateTime.now().plusDays(1));
 
-        List<Person> nonExpired = Arrays.asList(person1, person2);
-        when(personRepository.findNonExpired()).thenReturn(nonExpired);
-
         Pageable pageable = PageRequest.of(0, 1);
+        when(personRepository.findNonExpired(pageable))
+                .thenReturn(new PageImpl<>(List.of(person1), pageable, 2));
 
         // Act
         Page<Person> result = personService.getAll(pageable);
@@ -209,14 +300,15 @@ class PersonServiceTest {
         assertEquals(1, result.getContent().size(), "Should return 1 person per page");
         assertEquals(2, result.getTotalElements(), "Total elements should be 2");
         assertEquals(person1, result.getContent().get(0), "First person should match");
-        verify(personRepository, times(1)).findNonExpired();
+        verify(personRepository, times(1)).findNonExpired(pageable);
+        verify(personRepository, never()).findNonExpired();
     }
 
     @Test
     void returnsEmptyPageForNoNonExpiredPersons() {
         // Arrange
-        when(personRepository.findNonExpired()).thenReturn(Collections.emptyList());
         Pageable pageable = PageRequest.of(0, 10);
+        when(personRepository.findNonExpired(pageable)).thenReturn(Page.empty(pageable));
 
         // Act
         Page<Person> result = personService.getAll(pageable);
@@ -225,9 +317,252 @@ class PersonServiceTest {
         assertNotNull(result, "Page should not be null");
         assertTrue(result.getContent().isEmpty(), "Page content should be empty");
         assertEquals(0, result.getTotalElements(), "Total elements should be 0");
+        verify(personRepository, times(1)).findNonExpired(pageable);
+    }
+
+    @Test
+    void servesRepeatedPageFromCacheUntilAlertsChange() throws IOException {
+        // Arrange
+        Person person = new Person();
+        person.setId(1L);
+        person.setExpiresAt(LocalDateTime.now().plusDays(1));
+        Pageable pageable = PageRequest.of(0, 10);
+        when(personRepository.findNonExpired(pageable)).thenReturn(new PageImpl<>(List.of(person), pageable, 1));
+        when(personRepository.save(any(Person.class))).thenAnswer(invocation -> {
+            Person saved = invocation.getArgument(0);
+            saved.setId(2L);
+            return saved;
+        });
+
+        // Act
+        personService.getAll(pageable);
+        personService.getAll(pageable);
+        long versionBefore = personService.getActiveAlertsVersion();
+        Person saved = personService.savePerson("Tobi Ta",
+                new MockMultipartFile("image", "test.jpg", "image/jpeg", JPEG_CONTENT), null, null);
+        personService.getAll(pageable);
+
+        // Assert
+        assertNotEquals(versionBefore, personService.getActiveAlertsVersion());
+        verify(personRepository, times(2)).findNonExpired(pageable);
+    }
+
+    @Test
+    void storingALocationNameInvalidatesCachedPages() {
+        // Arrange
+        Person person = new Person();
+        person.setId(1L);
+        person.setExpiresAt(LocalDateTime.now().plusDays(1));
+        Pageable pageable = PageRequest.of(0, 10);
+        when(personRepository.findNonExpired(pageable)).thenReturn(new PageImpl<>(List.of(person), pageable, 1));
+        personService.getAll(pageable);
+        long versionBefore = personService.getActiveAlertsVersion();
+
+        // Act
+        personService.updateLocationName(1L, "Berlin, Deutschland");
+        personService.getAll(pageable);
+
+        // Assert
+        verify(personRepository).updateLocationName(1L, "Berlin, Deutschland");
+        assertNotEquals(versionBefore, personService.getActiveAlertsVersion());
+        verify(personRepository, times(2)).findNonExpired(pageable);
+    }
+
+    @Test
+    void reloadsCachedPageOnceAnAlertInItExpires() {
+        // Arrange
+        Person expiring = new Person();
+        expiring.setId(1L);
+        expiring.setExpiresAt(LocalDateTime.now().minusSeconds(1));
+        Pageable pageable = PageRequest.of(0, 10);
+        when(personRepository.findNonExpired(pageable)).thenReturn(new PageImpl<>(List.of(expiring), pageable, 1));
+
+        // Act
+        personService.getAll(pageable);
+        personService.getAll(pageable);
+
+        // Assert
+        verify(personRepository, times(2)).findNonExpired(pageable);
+    }
+
+    @Test
+    void fetchesFirstKeysetPageWithoutCursor() {
+        // Arrange
+        Person person = new Person();
+        person.setId(3L);
+        person.setPublishedAt(LocalDateTime.now());
+        when(personRepository.findNonExpiredNewest(PageRequest.of(0, 5))).thenReturn(List.of(person));
+
+        // Act
+        List<Person> result = personService.getAllAfter(null, 5);
+
+        // Assert
+        assertEquals(List.of(person), result);
+        verify(personRepository, never()).findNonExpiredBefore(any(), any(), any());
+    }
+
+    @Test
+    void fetchesKeysetPageAfterCursor() {
+        // Arrange
+        LocalDateTime publishedAt = LocalDateTime.of(2025, 5, 1, 12, 0);
+        Person older = new Person();
+        older.setId(1L);
+        older.setPublishedAt(publishedAt.minusHours(1));
+        when(personRepository.findNonExpiredBefore(publishedAt, 7L, PageRequest.of(0, 5)))
+                .thenReturn(List.of(older));
+
+        // Act
+        List<Person> result = personService.getAllAfter(new PageCursor(publishedAt, 7L), 5);
+
+        // Assert
+        assertEquals(List.of(older), result);
+        verify(personRepository, never()).findNonExpiredNewest(any());
+    }
+
+    @Test
+    void findsNearbyPersonsWithBoundingBoxPrefilter() {
+        // Arrange
+        Person nearby = new Person();
+        nearby.setId(4L);
+        when(personRepository.findNonExpiredWithinRadius(eq(52.52), eq(13.405), eq(50.0),
+                anyDouble(), anyDouble(), anyDouble(), anyDouble(), eq(10), eq(20L)))
+                .thenReturn(List.of(nearby));
+
+        // Act
+        List<Person> result = personService.findNearby(52.52, 13.405, 50.0, 2, 10);
+
+        // Assert
+        assertEquals(List.of(nearby), result);
+        verify(personRepository).findNonExpiredWithinRadius(eq(52.52), eq(13.405), eq(50.0),
+                doubleThat(minLat -> minLat < 52.52 - 0.44 && minLat > 52.52 - 0.46),
+                doubleThat(maxLat -> maxLat > 52.52 + 0.44 && maxLat < 52.52 + 0.46),
+                doubleThat(minLon -> minLon < 13.405 - 0.73 && minLon > 13.405 - 0.75),
+                doubleThat(maxLon -> maxLon > 13.405 + 0.73 && maxLon < 13.405 + 0.75),
+                eq(10), eq(20L));
+    }
+
+    @Test
+    void servesNearbyPersonsFromLoadedIndex() {
+        // Arrange
+        Person active = new Person();
+        active.setId(5L);
+        active.setLastSeenLatitude(52.52);
+        active.setLastSeenLongitude(13.40);
+        active.setExpiresAt(LocalDateTime.now().plusDays(1));
+
+        Person lapsed = new Person();
+        lapsed.setId(6L);
+        lapsed.setLastSeenLatitude(52.53);
+        lapsed.setLastSeenLongitude(13.41);
+        lapsed.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+
+        when(personRepository.findNonExpired()).thenReturn(List.of(active, lapsed));
+        personService.rebuildActiveIndex();
+
+        // Act
+        List<Person> result = personService.findNearby(52.52, 13.405, 50.0, 0, 10);
+
+        // Assert
+        assertEquals(List.of(active), result);
+        verify(personRepository, never()).findNonExpiredWithinRadius(anyDouble(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt(), anyLong());
+    }
+
+    @Test
+    void loadsIndexOnFirstNearestQuery() {
+        // Arrange
+        Person active = new Person();
+        active.setId(7L);
+        active.setLastSeenLatitude(48.14);
+        active.setLastSeenLongitude(11.58);
+        active.setExpiresAt(LocalDateTime.now().plusDays(1));
+        when(personRepository.findNonExpired()).thenReturn(List.of(active));
+
+        // Act
+        List<Person> result = personService.findNearest(52.52, 13.405, 3);
+
+        // Assert
+        assertEquals(List.of(active), result);
         verify(personRepository, times(1)).findNonExpired();
     }
 
+    @Test
+    void resetsChangeFeedWithoutCursor() {
+        // Act
+        PersonChanges changes = personService.getChangesSince(null);
+
+        // Assert
+        assertTrue(changes.isReset());
+        assertNotNull(changes.getCursor());
+        assertTrue(changes.getAdded().isEmpty());
+    }
+
+    @Test
+    void reportsAddedAndExpiredAlertsSinceCursor() throws IOException {
+        // Arrange
+        when(personRepository.save(any(Person.class))).thenAnswer(invocation -> {
+            Person saved = invocation.getArgument(0);
+            saved.setId(9L);
+            return saved;
+        });
+        when(personRepository.deleteExpiredBatch(anyInt())).thenReturn(List.<Object[]>of(new Object[]{3L, "expired.jpg"}));
+        String cursor = personService.getChangesSince(null).getCursor();
+
+        // Act
+        Person saved = personService.savePerson("Tobi Ta",
+                new MockMultipartFile("image", "test.jpg", "image/jpeg", JPEG_CONTENT), null, null);
+        personService.deleteExpiredRecords();
+        PersonChanges changes = personService.getChangesSince(cursor);
+        PersonChanges nothingNew = personService.getChangesSince(changes.getCursor());
+
+        // Assert
+        assertFalse(changes.isReset());
+        assertEquals(List.of(saved), changes.getAdded());
+        assertEquals(List.of(3L), changes.getExpired());
+        assertFalse(nothingNew.isReset());
+        assertTrue(nothingNew.getAdded().isEmpty());
+        assertTrue(nothingNew.getExpired().isEmpty());
+    }
+
+    @Test
+    void resetsChangeFeedForForeignCursor() {
+        // Act
+        PersonChanges changes = personService.getChangesSince("abc.1");
+
+        // Assert
+        assertTrue(changes.isReset());
+    }
+
+    @Test
+    void writesActiveSummariesOneByOne() throws IOException {
+        // Arrange
+        LocalDateTime publishedAt = LocalDateTime.of(2026, 10, 1, 12, 0);
+        when(personRepository.streamNonExpiredSummaries()).thenReturn(Stream.of(
+                new PersonSummary(2L, "Tobi Ta", "b.jpg", "LEHV6nWB2yk8pyo0adR*.7kCMdnj", publishedAt, 52.5, 13.4,
+                        "Berlin, Deutschland"),
+                new PersonSummary(1L, "Mamo Ma", "a.jpg", null, publishedAt.minusDays(1), null, null, null)));
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        StringWriter json = new StringWriter();
+
+        // Act
+        int count;
+        try (JsonGenerator generator = objectMapper.createGenerator(json)) {
+            generator.writeStartArray();
+            count = personService.writeActiveSummaries(generator);
+            generator.writeEndArray();
+        }
+
+        // Assert
+        assertEquals(2, count);
+        JsonNode written = objectMapper.readTree(json.toString());
+        assertEquals(2L, written.get(0).get("id").asLong());
+        assertEquals("2026-10-01T12:00:00", written.get(0).get("publishedAt").asText());
+        assertEquals("LEHV6nWB2yk8pyo0adR*.7kCMdnj", written.get(0).get("blurHash").asText());
+        assertEquals("Berlin, Deutschland", written.get(0).get("locationName").asText());
+        assertEquals("Mamo Ma", written.get(1).get("fullName").asText());
+    }
+
     @Test
     void findsPersonById() {
         // Arrange
@@ -249,6 +584,22 @@ class PersonServiceTest {
         verify(personRepository, times(1)).findById(1L);
     }
 
+    @Test
+    void servesRepeatedPersonLookupFromCache() {
+        // Arrange
+        Person person = new Person();
+        person.setId(1L);
+        when(personRepository.findById(1L)).thenReturn(Optional.of(person));
+
+        // Act
+        personService.getPersonById(1L);
+        Optional<Person> result = personService.getPersonById(1L);
+
+        // Assert
+        assertEquals(Optional.of(person), result);
+        verify(personRepository, times(1)).findById(1L);
+    }
+
     @Test
     void returnsEmptyForUnknownPersonId() {
         // Arrange
@@ -263,60 +614,62 @@ class PersonServiceTest {
     }
 
     @Test
-    void deletesExpiredRecords() {
+    void deletesExpiredRecordsInBatches() throws IOException {
         // Arrange
-        Person expiredPerson = new Person();
-        expiredPerson.setId(1L);
-        expiredPerson.setFullName("Tobi Ta");
-        expiredPerson.setImagePath("/uploads/1f1a2340-681f-4325-bab7-790bd807fa39_2.jpg");
-        expiredPerson.setPublishedAt(LocalDateTime.now().minusDays(31));
-        expiredPerson.setExpiresAt(LocalDateTime.now().minusDays(1));
-
-        Person nonExpiredPerson = new Person();
-        nonExpiredPerson.setId(2L);
-        nonExpiredPerson.setFullName("Tobi Ta");
-        nonExpiredPerson.setImagePath("/uploads/2f2a2340-681f-4325-bab7-790bd807fa39_3.jpg");
-        nonExpiredPerson.setPublishedAt(LocalDateTime.now());
-        nonExpiredPerson.setExpiresAt(LocalDateTime.now().plusDays(1));
-
-        List<Person> allPersons = Arrays.asList(expiredPerson, nonExpiredPerson);
-        when(personRepository.findAll()).thenReturn(allPersons);
-        doNothing().when(personRepository).deleteAll(anyIterable());
+        ReflectionTestUtils.setField(personService, "purgeBatchSize", 2);
+        Path image = Paths.get(uploadDir, "expired_2.jpg");
+        Files.createDirectories(image.getParent());
+        Files.write(image, "test image content".getBytes());
+        when(personRepository.deleteExpiredBatch(2))
+                .thenReturn(List.of(new Object[]{1L, "/uploads/expired_1.jpg"}, new Object[]{2L, "expired_2.jpg"}))
+                .thenReturn(List.<Object[]>of(new Object[]{3L, "expired_3.jpg"}));
+        String cursor = personService.getChangesSince(null).getCursor();
 
         // Act
         personService.deleteExpiredRecords();
 
         // Assert
-        verify(personRepository, times(1)).findAll();
-        verify(personRepository, times(1)).deleteAll(argThat(iterable -> {
-            List<Person> deletedPersons = StreamSupport.stream(iterable.spliterator(), false)
-                    .collect(Collectors.toList());
-            return deletedPersons.size() == 1 && deletedPersons.contains(expiredPerson);
-        }));
+        verify(personRepository, times(2)).deleteExpiredBatch(2);
+        verify(personRepository, never()).findAll();
+        assertFalse(Files.exists(image));
+        assertEquals(List.of(1L, 2L, 3L), personService.getChangesSince(cursor).getExpired());
     }
 
     @Test
-    void skipsDeletionForNoExpiredRecords() {
+    void stopsPurgeAtTimeBudget() {
         // Arrange
-        Person nonExpiredPerson = new Person();
-        nonExpiredPerson.setId(1L);
-        nonExpiredPerson.setFullName("Tobi Ta");
-        nonExpiredPerson.setImagePath("/uploads/1f1a2340-681f-4325-bab7-790bd807fa39_2.jpg");
-        nonExpiredPerson.setPublishedAt(LocalDateTime.now());
-        nonExpiredPerson.setExpiresAt(LocalDateTime.now().plusDays(1));
+        ReflectionTestUtils.setField(personService, "purgeBatchSize", 1);
+        ReflectionTestUtils.setField(personService, "purgeMaxRunMs", 0L);
+        when(personRepository.deleteExpiredBatch(1)).thenReturn(List.<Object[]>of(new Object[]{1L, "expired_1.jpg"}));
+
+        // Act
+        personService.deleteExpiredRecords();
 
-        when(personRepository.findAll()).thenReturn(Arrays.asList(nonExpiredPerson));
-        doNothing().when(personRepository).deleteAll(anyIterable());
+        // Assert
+        verify(personRepository, times(1)).deleteExpiredBatch(1);
+    }
+
+    @Test
+    void skipsDeletionForNoExpiredRecords() {
+        // Arrange
+        when(personRepository.deleteExpiredBatch(anyInt())).thenReturn(List.of());
+        String cursor = personService.getChangesSince(null).getCursor();
 
         // Act
         personService.deleteExpiredRecords();
 
         // Assert
-        verify(personRepository, times(1)).findAll();
-        verify(personRepository, times(1)).deleteAll(argThat(iterable -> {
-            List<Person> deletedPersons = StreamSupport.stream(iterable.spliterator(), false)
-                    .collect(Collectors.toList());
-            return deletedPersons.isEmpty();
-        }));
+        verify(personRepository, times(1)).deleteExpiredBatch(anyInt());
+        assertTrue(personService.getChangesSince(cursor).getExpired().isEmpty());
+    }
+
+    private static byte[] jpeg(int width, int height) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.util.ImageStreamWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhotoReencoderTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private PhotoReencoder photoReencoder;
+
+    @BeforeEach
+    void setUp() {
+        photoReencoder = new PhotoReencoder(1);
+    }
+
+    @Test
+    void downscalesToMaxEdgeAsJpeg() throws IOException {
+        // Arrange
+        ReflectionTestUtils.setField(photoReencoder, "maxEdge", 256);
+        ImageStreamWriter.Result upload = upload(encode(new BufferedImage(1200, 900, BufferedImage.TYPE_INT_ARGB), "png"));
+
+        // Act
+        ImageStreamWriter.Result result = photoReencoder.reencode(upload);
+
+        // Assert
+        assertEquals("image/jpeg", result.getContentType());
+        assertEquals(uploadDir, result.getPath().getParent());
+        BufferedImage stored = ImageIO.read(result.getPath().toFile());
+        assertEquals(256, stored.getWidth());
+        assertEquals(192, stored.getHeight());
+    }
+
+    @Test
+    void rotatesUprightAndDropsExif() throws IOException {
+        // Arrange: a landscape raster the camera marked as "rotate 90 degrees clockwise"
+        byte[] jpeg = encode(new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB), "jpg");
+        // SOI, then APP1 "Exif" with a big-endian TIFF block holding only orientation = 6
+        byte[] exif = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1, 0, 34, 'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 42, 0, 0, 0, 8, 0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, 6, 0, 0, 0, 0, 0, 0};
+        byte[] withExif = new byte[exif.length + jpeg.length - 2];
+        System.arraycopy(exif, 0, withExif, 0, exif.length);
+        System.arraycopy(jpeg, 2, withExif, exif.length, jpeg.length - 2);
+
+        // Act
+        ImageStreamWriter.Result result = photoReencoder.reencode(upload(withExif));
+
+        // Assert
+        byte[] stored = Files.readAllBytes(result.getPath());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(stored));
+        assertEquals(20, image.getWidth());
+        assertEquals(40, image.getHeight());
+        assertFalse(new String(stored, StandardCharsets.ISO_8859_1).contains("Exif"));
+    }
+
+    @Test
+    void lowersQualityAndSizeToFitBudget() throws IOException {
+        // Arrange: noise compresses badly, so quality alone is not enough
+        ReflectionTestUtils.setField(photoReencoder, "maxBytes", 40_000L);
+        BufferedImage noise = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(3);
+        for (int y = 0; y < noise.getHeight(); y++) {
+            for (int x = 0; x < noise.getWidth(); x++) {
+                noise.setRGB(x, y, random.nextInt());
+            }
+        }
+        ImageStreamWriter.Result upload = upload(encode(noise, "png"));
+
+        // Act
+        ImageStreamWriter.Result result = photoReencoder.reencode(upload);
+
+        // Assert
+        assertTrue(result.getSize() <= 40_000, "Got " + result.getSize() + " bytes");
+        assertTrue(ImageIO.read(result.getPath().toFile()).getWidth() < 1024);
+    }
+
+    @Test
+    void rejectsUndecodableUpload() throws IOException {
+        byte[] truncated = Arrays.copyOf(encode(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "png"), 20);
+        ImageStreamWriter.Result upload = upload(truncated);
+
+        assertThrows(IllegalArgumentException.class, () -> photoReencoder.reencode(upload));
+    }
+
+    private ImageStreamWriter.Result upload(byte[] content) throws IOException {
+        return ImageStreamWriter.write(new ByteArrayInputStream(content), uploadDir, Long.MAX_VALUE);
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.entity.Person;
+import com.example.missing_person_alert.firebase.FirebaseService;
+import com.example.missing_person_alert.model.PublishStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PublishPipelineTest {
+
+    @Mock
+    private ImageDerivativeService imageDerivativeService;
+
+    @Mock
+    private GeocodingService geocodingService;
+
+    @Mock
+    private PersonService personService;
+
+    @Mock
+    private FirebaseService firebaseService;
+
+    private PublishPipeline pipeline;
+    private Person person;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new PublishPipeline(imageDerivativeService, geocodingService, personService, firebaseService, 1);
+        person = new Person();
+        person.setId(1L);
+        person.setFullName("Test Person");
+        person.setImagePath("test.jpg");
+        person.setLastSeenLatitude(52.52);
+        person.setLastSeenLongitude(13.41);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void runsEveryStageAfterPersisting() throws Exception {
+        // Arrange
+        when(geocodingService.getLocationName(52.52, 13.41)).thenReturn("Berlin, Deutschland");
+
+        // Act
+        PublishStatus status = pipeline.submit(() -> person);
+        awaitFinished(status);
+
+        // Assert
+        assertEquals(PublishStatus.State.COMPLETED, status.getState());
+        assertEquals("persist", status.getStageMillis().keySet().iterator().next());
+        assertEquals(Set.of("persist", "notify", "derive", "geocode"), status.getStageMillis().keySet());
+        assertTrue(status.getErrors().isEmpty());
+        assertTrue(status.getRunningStages().isEmpty());
+        assertSame(status, pipeline.getStatus(1L));
+        verify(imageDerivativeService).generateNow("test.jpg");
+        verify(personService).updateLocationName(1L, "Berlin, Deutschland");
+        verify(firebaseService).sendNotification(person, Locale.GERMAN);
+    }
+
+    @Test
+    void notifiesWithoutWaitingForASlowGeocoder() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        when(geocodingService.getLocationName(52.52, 13.41)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "Berlin, Deutschland";
+        });
+
+        // Act
+        PublishStatus status = pipeline.submit(() -> person);
+        verify(firebaseService, timeout(5000)).sendNotification(person, Locale.GERMAN);
+        // Announced, so the only slot is free again although geocoding still runs
+        PublishStatus next = pipeline.submit(() -> person);
+        release.countDown();
+        awaitFinished(status);
+
+        // Assert
+        assertNotNull(next);
+        assertEquals(PublishStatus.State.COMPLETED, status.getState());
+        verify(personService, timeout(5000).times(2)).updateLocationName(1L, "Berlin, Deutschland");
+    }
+
+    @Test
+    void doesNotStoreALocationNameThatCouldNotBeLookedUp() throws Exception {
+        // Arrange
+        when(geocodingService.getLocationName(52.52, 13.41)).thenReturn(null);
+
+        // Act
+        PublishStatus status = pipeline.submit(() -> person);
+        awaitFinished(status);
+
+        // Assert
+        assertEquals(PublishStatus.State.COMPLETED, status.getState());
+        verify(personService, never()).updateLocationName(anyLong(), anyString());
+    }
+
+    @Test
+    void completesEvenIfDerivingFails() throws Exception {
+        // Arrange
+        doThrow(new IOException("disk full")).when(imageDerivativeService).generateNow("test.jpg");
+
+        // Act
+        PublishStatus status = pipeline.submit(() -> person);
+        awaitFinished(status);
+
+        // Assert
+        assertEquals(PublishStatus.State.COMPLETED, status.getState());
+        assertEquals(List.of("derive: disk full"), status.getErrors());
+        verify(firebaseService).sendNotification(person, Locale.GERMAN);
+    }
+
+    @Test
+    void rejectsPublishesBeyondTheLimitWithoutPersisting() throws Exception {
+        // Arrange
+        CountDownLatch notifying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            notifying.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(firebaseService).sendNotification(person, Locale.GERMAN);
+        PublishStatus first = pipeline.submit(() -> person);
+        assertTrue(notifying.await(5, TimeUnit.SECONDS));
+
+        // Act
+        PublishStatus rejected = pipeline.submit(() -> fail("must not persist when full"));
+        release.countDown();
+        awaitFinished(first);
+        PublishStatus next = pipeline.submit(() -> person);
+
+        // Assert
+        assertNull(rejected);
+        assertNotNull(next);
+    }
+
+    @Test
+    void freesItsSlotWhenPersistingFails() throws Exception {
+        // Act
+        assertThrows(IllegalArgumentException.class, () -> pipeline.submit(() -> {
+            throw new IllegalArgumentException("Image could not be read");
+        }));
+        PublishStatus next = pipeline.submit(() -> person);
+
+        // Assert
+        assertNotNull(next);
+        verifyNoInteractions(personService);
+    }
+
+    private static void awaitFinished(PublishStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (status.getState() != PublishStatus.State.COMPLETED && status.getState() != PublishStatus.State.FAILED
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.missing_person_alert.service;
+
+import com.example.missing_person_alert.entity.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResumableUploadServiceTest {
+
+    private static final Path UPLOAD_DIR = Paths.get("test-uploads");
+
+    @Mock
+    private PersonService personService;
+
+    private ResumableUploadService uploadService;
+    private final byte[] photo = new byte[200_000];
+
+    @BeforeEach
+    void setUp() {
+        uploadService = new ResumableUploadService(personService, UPLOAD_DIR.toString());
+        for (int i = 0; i < photo.length; i++) {
+            photo[i] = (byte) (i * 31);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(UPLOAD_DIR);
+    }
+
+    @Test
+    void resumesAfterABrokenChunkFromTheLastByteReceived() throws IOException {
+        // Arrange
+        ResumableUploadService.Upload upload = uploadService.create(photo.length, "image/jpeg", "Test Person", 52.52, 13.41);
+
+        // Act: the connection drops after 100000 bytes of the first chunk
+        assertThrows(IOException.class, () -> uploadService.write(upload, 0, breakingAfter(100_000)));
+        long offset = upload.getOffset();
+        long completed = uploadService.write(upload, offset, slice(offset, photo.length));
+
+        // Assert
+        assertEquals(100_000, offset);
+        assertEquals(photo.length, completed);
+        assertTrue(upload.isComplete());
+    }
+
+    @Test
+    void acceptsChunksOutOfOrder() throws IOException {
+        // Arrange
+        ResumableUploadService.Upload upload = uploadService.create(photo.length, "image/png", "Test Person", null, null);
+
+        // Act
+        long afterSecond = uploadService.write(upload, 120_000, slice(120_000, photo.length));
+        long afterFirst = uploadService.write(upload, 0, slice(0, 120_000));
+
+        // Assert
+        assertEquals(0, afterSecond);
+        assertEquals(photo.length, afterFirst);
+    }
+
+    @Test
+    void publishesTheAssembledPhotoAndDiscardsTheUpload() throws IOException {
+        // Arrange
+        ResumableUploadService.Upload upload = uploadService.create(photo.length, "image/jpeg", "Test Person", 52.52, 13.41);
+        uploadService.write(upload, 100_000, slice(100_000, photo.length));
+        uploadService.write(upload, 0, slice(0, 100_000));
+        AtomicReference<byte[]> published = new AtomicReference<>();
+        Person saved = new Person();
+        when(personService.savePersonWithPhoto(eq("Test Person"), any(), eq(52.52), eq(13.41))).thenAnswer(invocation -> {
+            published.set(invocation.<InputStream>getArgument(1).readAllBytes());
+            return saved;
+        });
+
+        // Act
+        Person result = uploadService.publish(upload);
+
+        // Assert
+        assertSame(saved, result);
+        assertArrayEquals(photo, published.get());
+        assertNull(uploadService.get(upload.getId()));
+        try (var files = Files.list(UPLOAD_DIR.resolve("resumable"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void keepsTheUploadWhenSavingFails() throws IOException {
+        // Arrange
+        ResumableUploadService.Upload upload = uploadService.create(photo.length, "image/jpeg", "Test Person", null, null);
+        uploadService.write(upload, 0, slice(0, photo.length));
+        Person saved = new Person();
+        when(personService.savePersonWithPhoto(eq("Test Person"), any(), isNull(), isNull()))
+                .thenThrow(new IOException("storage unavailable"))
+                .thenReturn(saved);
+
+        // Act
+        assertThrows(IOException.class, () -> uploadService.publish(upload));
+        ResumableUploadService.Upload kept = uploadService.get(upload.getId());
+        Person result = uploadService.publish(kept);
+
+        // Assert
+        assertSame(upload, kept);
+        assertSame(saved, result);
+        assertNull(uploadService.get(upload.getId()));
+        assertThrows(IllegalStateException.class, () -> uploadService.publish(upload));
+    }
+
+    @Test
+    void refusesToPublishAnIncompleteUpload() throws IOException {
+        // Arrange
+        ResumableUploadService.Upload upload = uploadService.create(photo.length, "image/jpeg", "Test Person", null, null);
+        uploadService.write(upload, 0, slice(0, 1000));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> uploadService.publish(upload));
+        assertSame(upload, uploadService.get(upload.getId()));
+        verifyNoInteractions(personService);
+    }
+
+    @Test
+    void rejectsChunksBeyondTheDeclaredLength() throws IOException {
+        // Arrange
+        ResumableUploadService.Upload upload = uploadService.create(1000, "image/jpeg", "Test Person", null, null);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> uploadService.write(upload, 500, slice(0, 1000)));
+        assertThrows(IllegalArgumentException.class, () -> uploadService.write(upload, 1001, slice(0, 1)));
+    }
+
+    @Test
+    void rejectsOversizedOrUnsupportedPhotosUpFront() {
+        assertThrows(IllegalArgumentException.class,
+                () -> uploadService.create(6 * 1024 * 1024, "image/jpeg", "Test Person", null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> uploadService.create(1000, "image/gif", "Test Person", null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> uploadService.create(1000, "image/jpeg", " ", null, null));
+    }
+
+    private InputStream slice(long from, long to) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(photo, (int) from, (int) to));
+    }
+
+    private InputStream breakingAfter(int bytes) {
+        return new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (position == bytes) {
+                    throw new IOException("Connection reset");
+                }
+                return photo[position++] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                if (position == bytes) {
+                    throw new IOException("Connection reset");
+                }
+                int count = Math.min(len, bytes - position);
+                System.arraycopy(photo, position, buffer, off, count);
+                position += count;
+                return count;
+            }
+        };
+    }
+}
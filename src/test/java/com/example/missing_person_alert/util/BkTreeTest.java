@@ -0,0 +1,72 @@
+package com.example.missing_person_alert.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BkTreeTest {
+
+    private BkTree<Long> tree;
+
+    @BeforeEach
+    void setUp() {
+        tree = new BkTree<>();
+        tree.add(0b0000L, 1L);
+        tree.add(0b0001L, 2L);
+        tree.add(0b0111L, 3L);
+        tree.add(0xFFFFL, 4L);
+    }
+
+    @Test
+    void findsItemsWithinRadiusClosestFirst() {
+        List<BkTree.Match<Long>> matches = tree.search(0b0011L, 1);
+
+        assertEquals(2, matches.size());
+        assertEquals(1, matches.get(0).getDistance());
+        assertEquals(1, matches.get(1).getDistance());
+        assertTrue(List.of(2L, 3L).containsAll(matches.stream().map(BkTree.Match::getItem).toList()));
+    }
+
+    @Test
+    void keepsItemsWithIdenticalHashes() {
+        tree.add(0b0001L, 5L);
+
+        List<BkTree.Match<Long>> matches = tree.search(0b0001L, 0);
+
+        assertEquals(List.of(2L, 5L), matches.stream().map(BkTree.Match::getItem).toList());
+        assertEquals(5, tree.size());
+    }
+
+    @Test
+    void removesItemsButKeepsRoutingThroughTheirNode() {
+        assertTrue(tree.remove(0b0000L, 1L));
+        assertFalse(tree.remove(0b0000L, 1L));
+
+        assertTrue(tree.search(0b0000L, 0).isEmpty());
+        assertEquals(3L, tree.search(0b0111L, 0).get(0).getItem());
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    void matchesBruteForceOnRandomHashes() {
+        Random random = new Random(11);
+        Map<Long, Long> hashes = new HashMap<>();
+        for (long id = 0; id < 2000; id++) {
+            hashes.put(id, random.nextLong());
+        }
+        tree.replaceAll(hashes);
+        long query = hashes.get(42L) ^ 0b1011L;
+
+        List<Long> found = tree.search(query, 12).stream().map(BkTree.Match::getItem).sorted().toList();
+
+        List<Long> expected = hashes.entrySet().stream()
+                .filter(entry -> Long.bitCount(entry.getValue() ^ query) <= 12)
+                .map(Map.Entry::getKey).sorted().toList();
+        assertEquals(expected, found);
+        assertTrue(found.contains(42L));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.missing_person_alert.util;
+
+import org.junit.jupiter.api.Test;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlurHashTest {
+
+    @Test
+    void encodesFlatImageAsAverageColourOnly() {
+        BufferedImage white = solid(400, 300, Color.WHITE);
+
+        String hash = BlurHash.encode(white, 4, 3);
+
+        // Size flag "L" (4x3), one character of AC amplitude, four of average colour (white), 11 AC pairs
+        assertEquals(28, hash.length());
+        assertEquals('L', hash.charAt(0));
+        assertEquals("TSUA", hash.substring(2, 6));
+    }
+
+    @Test
+    void capturesColourDistribution() {
+        BufferedImage split = solid(400, 300, Color.BLUE);
+        Graphics2D graphics = split.createGraphics();
+        graphics.setColor(Color.YELLOW);
+        graphics.fillRect(0, 0, 200, 300);
+        graphics.dispose();
+
+        String hash = BlurHash.encode(split, 4, 3);
+        String mirrored = BlurHash.encode(mirror(split), 4, 3);
+
+        assertEquals(28, hash.length());
+        assertNotEquals('0', hash.charAt(1));
+        assertNotEquals(hash, mirrored);
+        // Same average colour either way
+        assertEquals(hash.substring(2, 6), mirrored.substring(2, 6));
+    }
+
+    @Test
+    void rejectsInvalidComponentCounts() {
+        assertThrows(IllegalArgumentException.class, () -> BlurHash.encode(solid(10, 10, Color.RED), 0, 3));
+        assertThrows(IllegalArgumentException.class, () -> BlurHash.encode(solid(10, 10, Color.RED), 4, 10));
+    }
+
+    private static BufferedImage solid(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static BufferedImage mirror(BufferedImage source) {
+        BufferedImage mirrored = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                mirrored.setRGB(source.getWidth() - 1 - x, y, source.getRGB(x, y));
+            }
+        }
+        return mirrored;
+    }
+}
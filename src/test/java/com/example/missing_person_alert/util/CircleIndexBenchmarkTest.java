@@ -0,0 +1,43 @@
+package com.example.missing_person_alert.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures geofence matching with millions of subscriptions spread over Germany, with radii from
+ * 0.5 to 20 km. Run with {@code GEOFENCE_BENCHMARK=true ./gradlew test --tests
+ * '*CircleIndexBenchmarkTest'} and enough heap (about 1.5 GB); the result is printed.
+ */
+@EnabledIfEnvironmentVariable(named = "GEOFENCE_BENCHMARK", matches = "true")
+class CircleIndexBenchmarkTest {
+
+    private static final int CIRCLES = 2_000_000;
+    private static final int QUERIES = 1000;
+
+    @Test
+    void measuresMatchesPerAlert() {
+        CircleIndex index = new CircleIndex(4);
+        Random random = new Random(5);
+        long started = System.nanoTime();
+        for (int i = 0; i < CIRCLES; i++) {
+            index.put(i, 47.5 + random.nextDouble() * 7, 6 + random.nextDouble() * 9, 0.5 + random.nextDouble() * 19.5);
+        }
+        System.out.printf("Indexed %d circles in %d ms%n", CIRCLES,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        LongAdder matches = new LongAdder();
+        long slowest = 0;
+        started = System.nanoTime();
+        for (int query = 0; query < QUERIES; query++) {
+            long queryStarted = System.nanoTime();
+            index.forEachContaining(47.5 + random.nextDouble() * 7, 6 + random.nextDouble() * 9, id -> matches.increment());
+            slowest = Math.max(slowest, System.nanoTime() - queryStarted);
+        }
+        System.out.printf("%d alerts matched %d subscriptions, %.2f ms per alert, slowest %.2f ms%n", QUERIES,
+                matches.sum(), (System.nanoTime() - started) / 1e6 / QUERIES, slowest / 1e6);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.missing_person_alert.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircleIndexTest {
+
+    private static final int CIRCLES = 20_000;
+
+    @Test
+    void findsExactlyTheCirclesContainingAPoint() {
+        CircleIndex index = new CircleIndex(4);
+        Random random = new Random(4);
+        double[][] circles = new double[CIRCLES][];
+        for (int i = 0; i < CIRCLES; i++) {
+            circles[i] = new double[]{47.5 + random.nextDouble() * 7, 6 + random.nextDouble() * 9, 0.5 + random.nextDouble() * 30};
+            index.put(i, circles[i][0], circles[i][1], circles[i][2]);
+        }
+
+        for (int query = 0; query < 500; query++) {
+            double latitude = 47.5 + random.nextDouble() * 7;
+            double longitude = 6 + random.nextDouble() * 9;
+            Set<Long> expected = new HashSet<>();
+            for (int i = 0; i < CIRCLES; i++) {
+                if (DistanceCalculator.calculateDistance(latitude, longitude, circles[i][0], circles[i][1]) <= circles[i][2]) {
+                    expected.add((long) i);
+                }
+            }
+            List<Long> found = new ArrayList<>();
+            index.forEachContaining(latitude, longitude, found::add);
+
+            assertEquals(expected, new HashSet<>(found));
+            assertEquals(expected.size(), found.size(), "each circle once");
+        }
+    }
+
+    @Test
+    void removesAndMovesCircles() {
+        CircleIndex index = new CircleIndex(4);
+        index.put(1, 52.52, 13.405, 5);
+        index.put(2, 52.52, 13.405, 5);
+
+        assertTrue(index.remove(2));
+        assertFalse(index.remove(2));
+        // Moved from Berlin to Munich
+        index.put(1, 48.14, 11.58, 5);
+
+        assertEquals(1, index.size());
+        assertEquals(List.of(), containing(index, 52.52, 13.405));
+        assertEquals(List.of(1L), containing(index, 48.14, 11.58));
+    }
+
+    private static List<Long> containing(CircleIndex index, double latitude, double longitude) {
+        List<Long> ids = new ArrayList<>();
+        index.forEachContaining(latitude, longitude, ids::add);
+        return ids;
+    }
+}
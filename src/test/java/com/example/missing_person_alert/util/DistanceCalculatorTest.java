@@ -0,0 +1,98 @@
+package com.example.missing_person_alert.util;
+
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceCalculatorTest {
+
+    private static final int POINTS = 10_000;
+
+    @Test
+    void batchDistancesMatchScalarHaversine() {
+        double[] latitudes = new double[POINTS];
+        double[] longitudes = new double[POINTS];
+        fillAroundGermany(latitudes, longitudes, new Random(1));
+        double[] distances = new double[POINTS];
+
+        DistanceCalculator.calculateDistances(52.52, 13.405, latitudes, longitudes, distances, POINTS);
+
+        for (int i = 0; i < POINTS; i++) {
+            assertEquals(DistanceCalculator.calculateDistance(52.52, 13.405, latitudes[i], longitudes[i]),
+                    distances[i], 1e-6);
+        }
+    }
+
+    @Test
+    void approximateDistancesStayWithinDocumentedBound() {
+        double[] latitudes = new double[POINTS];
+        double[] longitudes = new double[POINTS];
+        fillAroundGermany(latitudes, longitudes, new Random(2));
+        double[] approximate = new double[POINTS];
+
+        DistanceCalculator.approximateDistances(50.0, 10.0, latitudes, longitudes, approximate, POINTS);
+
+        double tan = Math.abs(Math.tan(Math.toRadians(50.0)));
+        for (int i = 0; i < POINTS; i++) {
+            double exact = DistanceCalculator.calculateDistance(50.0, 10.0, latitudes[i], longitudes[i]);
+            if (exact > 0.01 && exact <= 200) {
+                double angular = exact / 6371.0;
+                double bound = (tan / 4 + angular) * angular;
+                assertTrue(Math.abs(approximate[i] - exact) / exact <= bound,
+                        "Approximation outside documented bound at index " + i);
+            }
+        }
+    }
+
+    @Test
+    void filterWithinRadiusIsExact() {
+        double[] latitudes = new double[POINTS];
+        double[] longitudes = new double[POINTS];
+        fillAroundGermany(latitudes, longitudes, new Random(3));
+        int[] matches = new int[POINTS];
+        double[] distances = new double[POINTS];
+
+        int count = DistanceCalculator.filterWithinRadius(51.0, 10.0, 120.0,
+                latitudes, longitudes, POINTS, matches, distances);
+
+        int expected = 0;
+        for (int i = 0; i < POINTS; i++) {
+            if (DistanceCalculator.calculateDistance(51.0, 10.0, latitudes[i], longitudes[i]) <= 120.0) {
+                expected++;
+            }
+        }
+        assertEquals(expected, count);
+        for (int m = 0; m < count; m++) {
+            assertTrue(distances[m] <= 120.0);
+        }
+    }
+
+    @Test
+    void filterWithinRadiusWrapsAroundAntimeridian() {
+        double[] latitudes = {10.0, 10.0};
+        double[] longitudes = {-179.9, 170.0};
+        int[] matches = new int[2];
+        double[] distances = new double[2];
+
+        int count = DistanceCalculator.filterWithinRadius(10.0, 179.9, 50.0, latitudes, longitudes, 2, matches, distances);
+
+        assertEquals(1, count);
+        assertEquals(0, matches[0]);
+    }
+
+    @Test
+    void boundingBoxWidensAcrossAntimeridian() {
+        DistanceCalculator.BoundingBox box = DistanceCalculator.boundingBox(10.0, 179.9, 50.0);
+
+        assertEquals(-180, box.getMinLongitude());
+        assertEquals(180, box.getMaxLongitude());
+        assertTrue(box.contains(10.0, -179.9));
+    }
+
+    private static void fillAroundGermany(double[] latitudes, double[] longitudes, Random random) {
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = 47.3 + random.nextDouble() * 7.8;
+            longitudes[i] = 5.9 + random.nextDouble() * 9.1;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.missing_person_alert.util;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExifOrientationTest {
+
+    @Test
+    void readsBigEndianOrientation() throws IOException {
+        assertEquals(6, ExifOrientation.read(new ByteArrayInputStream(jpegWithOrientation(6, false))));
+    }
+
+    @Test
+    void readsLittleEndianOrientation() throws IOException {
+        assertEquals(8, ExifOrientation.read(new ByteArrayInputStream(jpegWithOrientation(8, true))));
+    }
+
+    @Test
+    void defaultsToUprightWithoutExif() throws IOException {
+        byte[] bare = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xDA, 0, 2};
+        assertEquals(ExifOrientation.UPRIGHT, ExifOrientation.read(new ByteArrayInputStream(bare)));
+        assertEquals(ExifOrientation.UPRIGHT, ExifOrientation.read(new ByteArrayInputStream("not a jpeg".getBytes())));
+    }
+
+    /**
+     * SOI followed by an APP1 segment whose TIFF block holds a single orientation entry.
+     */
+    private static byte[] jpegWithOrientation(int orientation, boolean littleEndian) {
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        if (littleEndian) {
+            tiff.writeBytes(new byte[]{'I', 'I', 42, 0, 8, 0, 0, 0, 1, 0,
+                    0x12, 0x01, 3, 0, 1, 0, 0, 0, (byte) orientation, 0, 0, 0, 0, 0, 0, 0});
+        } else {
+            tiff.writeBytes(new byte[]{'M', 'M', 0, 42, 0, 0, 0, 8, 0, 1,
+                    0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0, 0, 0, 0, 0});
+        }
+        byte[] payload = tiff.toByteArray();
+        int length = 2 + 6 + payload.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length});
+        out.writeBytes(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+}
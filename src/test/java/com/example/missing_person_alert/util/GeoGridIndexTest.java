@@ -0,0 +1,83 @@
+package com.example.missing_person_alert.util;
+
+import com.example.missing_person_alert.entity.Person;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoGridIndexTest {
+
+    private GeoGridIndex<Person> index;
+
+    private final Person berlin = person(1L, 52.5200, 13.4050);
+    private final Person potsdam = person(2L, 52.3906, 13.0645);
+    private final Person munich = person(3L, 48.1372, 11.5756);
+
+    @BeforeEach
+    void setUp() {
+        index = new GeoGridIndex<>(0.25, Person::getId, Person::getLastSeenLatitude, Person::getLastSeenLongitude);
+        index.replaceAll(List.of(berlin, potsdam, munich));
+    }
+
+    @Test
+    void findsItemsWithinRadiusNearestFirst() {
+        List<GeoGridIndex.Hit<Person>> hits = index.withinRadius(52.50, 13.40, 50.0, person -> true);
+
+        assertEquals(2, hits.size());
+        assertEquals(berlin, hits.get(0).getItem());
+        assertEquals(potsdam, hits.get(1).getItem());
+        assertTrue(hits.get(0).getDistanceKm() < hits.get(1).getDistanceKm());
+    }
+
+    @Test
+    void appliesFilterToRadiusHits() {
+        List<GeoGridIndex.Hit<Person>> hits = index.withinRadius(52.50, 13.40, 50.0, person -> person.getId() != 1L);
+
+        assertEquals(1, hits.size());
+        assertEquals(potsdam, hits.get(0).getItem());
+    }
+
+    @Test
+    void findsItemsInBox() {
+        List<Person> items = index.withinBox(new DistanceCalculator.BoundingBox(47.0, 50.0, 10.0, 12.0), person -> true);
+
+        assertEquals(List.of(munich), items);
+    }
+
+    @Test
+    void findsNearestBeyondInitialRadius() {
+        List<GeoGridIndex.Hit<Person>> hits = index.nearest(48.0, 11.0, 2, person -> true);
+
+        assertEquals(2, hits.size());
+        assertEquals(munich, hits.get(0).getItem());
+        assertEquals(potsdam, hits.get(1).getItem());
+    }
+
+    @Test
+    void movesAndRemovesItems() {
+        Person movedBerlin = person(1L, 48.14, 11.58);
+        index.put(movedBerlin);
+        index.removeAll(List.of(3L));
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(movedBerlin), index.withinBox(new DistanceCalculator.BoundingBox(47.0, 50.0, 10.0, 12.0), person -> true));
+        assertTrue(index.withinRadius(52.52, 13.405, 5.0, person -> true).isEmpty());
+    }
+
+    @Test
+    void dropsItemsWithoutCoordinates() {
+        index.put(person(1L, null, null));
+
+        assertEquals(2, index.size());
+        assertTrue(index.withinRadius(52.52, 13.405, 5.0, person -> true).isEmpty());
+    }
+
+    private static Person person(Long id, Double latitude, Double longitude) {
+        Person person = new Person();
+        person.setId(id);
+        person.setLastSeenLatitude(latitude);
+        person.setLastSeenLongitude(longitude);
+        return person;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.missing_person_alert.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeohashTest {
+
+    @Test
+    void encodesTheReferencePoint() {
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+        assertEquals("u4pr", Geohash.encode(57.64911, 10.40744, 4));
+    }
+
+    @Test
+    void encodesTheEdgesOfTheWorld() {
+        assertEquals("0000", Geohash.encode(-90, -180, 4));
+        assertEquals("zzzz", Geohash.encode(90, 180, 4));
+    }
+
+    @Test
+    void coveringContainsTheCellOfEveryPointWithinTheRadius() {
+        List<String> cells = Geohash.coveringCells(52.52, 13.405, 25, 4);
+        Random random = new Random(3);
+
+        for (int i = 0; i < 10_000; i++) {
+            double latitude = 52.52 + (random.nextDouble() - 0.5);
+            double longitude = 13.405 + (random.nextDouble() - 0.5) * 1.5;
+            if (DistanceCalculator.calculateDistance(52.52, 13.405, latitude, longitude) <= 25) {
+                assertTrue(cells.contains(Geohash.encode(latitude, longitude, 4)), latitude + "," + longitude);
+            }
+        }
+    }
+
+    @Test
+    void coveringLeavesOutCellsBeyondTheRadius() {
+        List<String> cells = Geohash.coveringCells(52.52, 13.405, 25, 4);
+
+        assertTrue(cells.contains(Geohash.encode(52.52, 13.405, 4)));
+        // Leipzig is about 150 km away
+        assertFalse(cells.contains(Geohash.encode(51.34, 12.37, 4)));
+        assertTrue(cells.size() < 30, "covering has " + cells.size() + " cells");
+    }
+
+    @Test
+    void rejectsCoveringsThatTakeTooManyCells() {
+        assertThrows(IllegalArgumentException.class, () -> Geohash.coveringCells(52.52, 13.405, 500, 6));
+        assertThrows(IllegalArgumentException.class, () -> Geohash.encode(52.52, 13.405, 12));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.missing_person_alert.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageStreamWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesContentWithDigestAndSniffedType() throws Exception {
+        byte[] content = new byte[300 * 1024];
+        new Random(1).nextBytes(content);
+        System.arraycopy(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}, 0, content, 0, 8);
+        ImageStreamWriter.Result result = ImageStreamWriter.write(new ByteArrayInputStream(content), directory, 5 * 1024 * 1024);
+
+        assertEquals(directory, result.getPath().getParent());
+        assertArrayEquals(content, Files.readAllBytes(result.getPath()));
+        assertEquals("image/png", result.getContentType());
+        assertEquals(content.length, result.getSize());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)), result.getSha256());
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void rejectsUnknownFormatWithoutLeavingFiles() throws IOException {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> ImageStreamWriter.write(new ByteArrayInputStream("GIF89a".getBytes()), directory, 1024));
+
+        assertEquals("Only JPEG and PNG images are allowed", exception.getMessage());
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void rejectsOversizedStreamWithoutLeavingFiles() throws IOException {
+        byte[] content = new byte[2 * 1024 * 1024 + 1];
+        content[0] = (byte) 0xFF;
+        content[1] = (byte) 0xD8;
+        content[2] = (byte) 0xFF;
+        assertThrows(IllegalArgumentException.class,
+                () -> ImageStreamWriter.write(new ByteArrayInputStream(content), directory, 2 * 1024 * 1024));
+
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    void sniffsJpegFromFirstBytes() {
+        assertEquals("image/jpeg", ImageStreamWriter.sniffContentType(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, 3));
+        assertNull(ImageStreamWriter.sniffContentType(new byte[]{(byte) 0xFF, (byte) 0xD8}, 2));
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.missing_person_alert.util;
+
+import org.junit.jupiter.api.Test;
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PerceptualHashTest {
+
+    @Test
+    void survivesResizingAndReencoding() throws IOException {
+        BufferedImage original = scene(800, 600, false);
+        BufferedImage copy = ImageIO.read(new ByteArrayInputStream(jpeg(ImageScaling.scaleDown(original, 300))));
+
+        int distance = Long.bitCount(PerceptualHash.dHash(original) ^ PerceptualHash.dHash(copy));
+
+        assertTrue(distance <= 4, "Distance " + distance);
+    }
+
+    @Test
+    void separatesDifferentPictures() {
+        long first = PerceptualHash.dHash(scene(800, 600, false));
+        long second = PerceptualHash.dHash(scene(800, 600, true));
+
+        assertTrue(Long.bitCount(first ^ second) > 20);
+    }
+
+    private static BufferedImage scene(int width, int height, boolean flipped) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, flipped ? Color.WHITE : Color.BLACK,
+                width, height, flipped ? Color.BLACK : Color.WHITE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.RED);
+        graphics.fillOval(flipped ? width / 2 : width / 8, height / 4, width / 3, height / 2);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] jpeg(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}